@@ -6,6 +6,18 @@ import ar.edu.itba.ss.time_driven_simulation.models.Particle;
 import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
 import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
 import ar.edu.itba.ss.time_driven_simulation.services.*;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.AdaptiveStep;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.LaunchCache;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.LaunchResult;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.LaunchSearch;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.LaunchSweep;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.SweepJournal;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.SweepSpec;
+import ar.edu.itba.ss.time_driven_simulation.services.sweep.TopLaunches;
+import ar.edu.itba.ss.time_driven_simulation.core.benchmarks.GearBenchmarks;
+import ar.edu.itba.ss.time_driven_simulation.core.benchmarks.GravityBenchmarks;
+import ar.edu.itba.ss.time_driven_simulation.core.benchmarks.IntegratorBenchmarks;
 import ar.edu.itba.ss.time_driven_simulation.core.systems.oscillator.GearOscillatorSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,14 +30,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
 
 import static ar.edu.itba.ss.time_driven_simulation.core.Main.EXIT_CODE.*;
-import static java.lang.Math.cos;
-import static java.lang.Math.sin;
-import static java.lang.Math.sqrt;
 
 public class Main {
   private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
@@ -37,6 +47,9 @@ public class Main {
   private static final String OVITO_FILE = "graphics.xyz";
   private static final String SS_REPORT_FILE = "ss_report.dat";
   private static final String SS_MIN_DISTANCE_FILE = "ss_min_distance_";
+  private static final String SWEEP_RESULTS_FILE = "sweep_results.dat";
+  private static final String SEARCH_RESULTS_FILE = "search_results.dat";
+  private static final String SWEEP_JOURNAL_FILE = "sweep_journal.dat";
 
   // Real Constants
   private static final int HOURS_PER_DAY = 24;
@@ -50,6 +63,7 @@ public class Main {
   private static final double SOLAR_SYSTEM_W = 1e12;
   private static final double DAYS_TO_TAKE_OFF = 755;
   private static final double SHIP_TAKE_OFF_V0 = 15 * KM_TO_M;
+  private static final int EPHEMERIS_SAMPLE_STEPS = 10;
   // To use default, that is, tangential angle Earth-Sun, use 'null'
 //  private static final Vector2D SHIP_TAKE_OFF_ANGLE = null;
   // To use own angle, make your own vector. X and Y components will be used for vx and vy respectively
@@ -67,11 +81,22 @@ public class Main {
           "     generates an output/static.dat file with the desired parameters.\n" +
           "* osc <path/to/static.dat> <type> <dt>\n" +
           "     runs the cushioned-oscillator simulation and saves snapshots of the system in <output.dat>.\n" +
-          "     <type> can be 'analytic', 'verlet', 'beeman', 'gear'.\n" +
+          "     <type> can be 'analytic', 'verlet', 'beeman', 'gear' (of order 5) or 'gear<order>', from 2 to 6.\n" +
           "* toMars <dt> <ft> <days_to_take_off> <ship_take_off_v0> (<ship_take_off_angle_x> <ship_take_off_angle_y>)\n" +
           "     Simulation of a space ship taking off from Earth with Mars as destination." +
           "     <dt> is the delta time represented with each iteration, in seconds." +
           "     <ft> is the final time that the system will be simulated.\n" +
+          "     <dt> can also be <min_dt>:<max_dt>(:<eta>) to pick each step adaptively within those bounds,\n" +
+          "     as a fraction <eta> (0.003 by default) of the shortest timescale of the system, with time-symmetric\n" +
+          "     leapfrog steps: long steps during cruise and short ones close to a planet.\n" +
+          "     With block:<min_dt>:<max_dt>(:<eta>), each body takes its own steps, of <max_dt> / 2^level, and\n" +
+          "     the steps run on each level are reported.\n" +
+          "     With <integrator>:<dt>, the fixed <dt> is run with 'leapfrog' (velocity Verlet), 'forest-ruth' (4th\n" +
+          "     order), 'yoshida6' or 'yoshida8' instead of position Verlet; see 'bench sym' for their errors.\n" +
+          "     With wh:<dt>, orbits around the Sun are drifted exactly (Wisdom-Holman), which allows steps of\n" +
+          "     days while the ship is far from the planets; see 'bench wh'.\n" +
+          "     With gear<order>:<dt>, the bodies are run through the Gear Predictor Corrector of that order, from\n" +
+          "     2 to 6; see 'bench sym' and 'bench gear' for the error and cost of each order.\n" +
           "     <days_to_take_off> are the days to take off since the initial conditions.\n" +
           "     <ship_take_off_v0> initial velocity's module of the ship.\n" +
           "     Optional Arguments: \n" +
@@ -83,6 +108,17 @@ public class Main {
           "     Simulation of a space ship taking off from Mars with Earth as destination." +
           "     <dt> is the delta time represented with each iteration, in seconds." +
           "     <ft> is the final time that the system will be simulated.\n" +
+          "     <dt> can also be <min_dt>:<max_dt>(:<eta>) to pick each step adaptively within those bounds,\n" +
+          "     as a fraction <eta> (0.003 by default) of the shortest timescale of the system, with time-symmetric\n" +
+          "     leapfrog steps: long steps during cruise and short ones close to a planet.\n" +
+          "     With block:<min_dt>:<max_dt>(:<eta>), each body takes its own steps, of <max_dt> / 2^level, and\n" +
+          "     the steps run on each level are reported.\n" +
+          "     With <integrator>:<dt>, the fixed <dt> is run with 'leapfrog' (velocity Verlet), 'forest-ruth' (4th\n" +
+          "     order), 'yoshida6' or 'yoshida8' instead of position Verlet; see 'bench sym' for their errors.\n" +
+          "     With wh:<dt>, orbits around the Sun are drifted exactly (Wisdom-Holman), which allows steps of\n" +
+          "     days while the ship is far from the planets; see 'bench wh'.\n" +
+          "     With gear<order>:<dt>, the bodies are run through the Gear Predictor Corrector of that order, from\n" +
+          "     2 to 6; see 'bench sym' and 'bench gear' for the error and cost of each order.\n" +
           "     <days_to_take_off> are the days to take off since the initial conditions.\n" +
           "     <ship_take_off_v0> initial velocity's module of the ship.\n" +
           "     Optional Arguments: \n" +
@@ -90,9 +126,51 @@ public class Main {
           "       <ship_take_off_angle_y> initial velocity's angle of the ship in y direction.\n" +
           "     Only The Sun, Earth, Mars and the spaceship are represented.\n" +
           "     **Note** A 'static.dat' file is generated automatically, although not needed.\n" +
+          "* min (<path/to/sweep.spec>)\n" +
+          "     Sweeps take off days, speeds and angles looking for the closest approach to a target planet.\n" +
+          "     Each launch is appended to output/sweep_results.dat as soon as it finishes.\n" +
+          "     The spec file has one '<key>: <value>' line per parameter; missing ones take their default:\n" +
+          "       dt: 100                    ft: 31536000               target: MARS (or EARTH)\n" +
+          "       days: 0 100 366            speed: 10000 1000 11000    angle: 50 30 100 (<min> <step> <max>)\n" +
+          "       mode: full (or restricted, where planets are integrated once and runs only integrate the ship)\n" +
+          "       threads: <all the available processors>\n" +
+          "       prune: true (or false; aborts the flights that can no longer get closer than the best one,\n" +
+          "              so their min_distance is only exact when below the best one)\n" +
+          "       integrator: verlet (or any other <integrator> of toMars' fixed <dt>, e.g. yoshida6, wh or gear5)\n" +
+          "       batch: 1 (launches of the same day flown at once as massless ships of a single system;\n" +
+          "              only with the verlet integrator)\n" +
+          "       cache: <path/to/cache> (launches stored there are not run again; new ones are added)\n" +
+          "       reports: 10                rank: distance (or time, i.e. the earliest arrivals to the target first)\n" +
+          "     Finished launches are journaled to output/sweep_journal.dat until the reports are written,\n" +
+          "     so a sweep that died is resumed when run again with the same spec.\n" +
+          "* search (<path/to/sweep.spec>)\n" +
+          "     Runs the spec's grid and refines its best launch with the Nelder-Mead method, within the spec's ranges,\n" +
+          "     until the target is reached or 'evaluations: <n>' (300 by default) launches were run.\n" +
+          "     Each launch is appended to output/search_results.dat; the best one is saved as a report.\n" +
           "* gen ovito <path/to/static.dat> <path/to/output.dat>: \n"+
           "     generates an output/graphics.xyz file (for Ovito) with the result of the simulation\n " +
-          "     (<output.dat>) generated with the static file.\n";
+          "     (<output.dat>) generated with the static file.\n" +
+          "* bench bh <theta>\n" +
+          "     Barnes-Hut force evaluation time from 10^3 to 10^6 bodies, with its error against the direct sum.\n" +
+          "     <theta> is the opening angle of the Barnes-Hut approximation.\n" +
+          "* bench fmm <order>\n" +
+          "     Fast multipole error against the direct sum for orders 2 to 2*<order>, and its force evaluation time\n" +
+          "     from 10^3 to 10^6 bodies with expansions of order <order>.\n" +
+          "* bench par <parallelism>\n" +
+          "     Verlet step time of the serial engine against the parallel one with <parallelism> threads.\n" +
+          "* bench sym <days>\n" +
+          "     Position error of the ship and of Earth after a flight of <days> days, for each integrator and dt,\n" +
+          "     against Yoshida's 8th order integrator with a dt of 10 seconds, with its force evaluations and time.\n" +
+          "* bench wh <years>\n" +
+          "     Energy error and Earth's position error of the Sun, Earth and Mars after <years> years, for position\n" +
+          "     Verlet, the leapfrog and Wisdom-Holman with steps from 100 seconds to 8 days.\n" +
+          "* bench gear <particles>\n" +
+          "     Step time of the map-based Gear Predictor Corrector of order 5 against the flat one, with loops and\n" +
+          "     with unrolled kernels, over <particles> damped oscillators; then, for each order from 2 to 6, its\n" +
+          "     step time and its error against the analytic oscillator for dt from 10^-2 to 10^-4 seconds.\n" +
+          "* bench gearpar <parallelism>\n" +
+          "     Gear step time of the serial implementation against the parallel one with <parallelism> threads,\n" +
+          "     over asteroid disks under their mutual gravity.\n";
 
 
   // Exit Codes
@@ -139,13 +217,20 @@ public class Main {
         toEarth(args);
         break;
       case "min":
-        minimumDistance();
+        minimumDistance(args);
+        break;
+      case "search":
+        launchSearch(args);
         break;
 
       case "int":
         integration(args);
         break;
 
+      case "bench":
+        benchmark(args);
+        break;
+
       default:
         System.out.println("[FAIL] - Invalid argument. Try 'help' for more information.");
         exit(BAD_ARGUMENT);
@@ -155,6 +240,76 @@ public class Main {
     System.out.println("[DONE]");
   }
 
+  private static void benchmark(final String[] args) {
+    if (args.length < 2) {
+      System.out.println("[FAIL] - No benchmark specified. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+
+    switch (args[1]) {
+      case "bh":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        GravityBenchmarks.barnesHutScaling(parseAsDouble(args[2], "<theta>"));
+        break;
+
+      case "fmm":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        GravityBenchmarks.fastMultipoleReport((int) parseAsDouble(args[2], "<order>"));
+        break;
+
+      case "par":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        GravityBenchmarks.parallelScaling((int) parseAsDouble(args[2], "<parallelism>"));
+        break;
+
+      case "sym":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        IntegratorBenchmarks.symplecticErrors(parseAsDouble(args[2], "<days>"));
+        break;
+
+      case "wh":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        IntegratorBenchmarks.wisdomHolmanErrors(parseAsDouble(args[2], "<years>"));
+        break;
+
+      case "gear":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        GearBenchmarks.kernels((int) parseAsDouble(args[2], "<particles>"));
+        break;
+
+      case "gearpar":
+        if (args.length != 3) {
+          System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+          exit(BAD_N_ARGUMENTS);
+        }
+        GearBenchmarks.parallelScaling((int) parseAsDouble(args[2], "<parallelism>"));
+        break;
+
+      default:
+        System.out.println("[FAIL] - Invalid argument. Try 'help' for more information.");
+        exit(BAD_ARGUMENT);
+        break;
+    }
+  }
+
   private static void integration(final String[] args) {
     if (args.length != 3) {
       System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
@@ -212,132 +367,298 @@ public class Main {
   }
 
   /**
-   * Change the constants below to define the ranges you want for initial Speed, days to take off, and the initial angle.
-   * After running, one file will be created for each time Mars was reached (if that was the case)
-   * plus one file containing the travel that reached minimum distance to Mars.
+   * Sweeps take off days, speeds and angles as defined by a {@link SweepSpec} file, or by its default values if none.
+   * After running, one file will be created for each of the spec's best launches (10 by default), ranked by their
+   * closest approach to the target or, for those that reached it, by their arrival time.
    * This files contain the necessary information to run the desired simulation again with ss method.
    * NOTE: When running a single ss from console make sure to run for (ft + daysTakeOff) seconds.
+   * <P>
+   * Each launch runs as an independent task of a {@link LaunchSweep}, and is appended to the results file as a
+   * single line as soon as it finishes; only a primitive summary of the best launches is kept in memory, and their
+   * system states are only computed again for the reports at the end.
+   * In 'restricted' mode the planets are integrated only once into an ephemeris shared by all the runs, and each
+   * run only integrates the ship.
+   * If the spec has a cache, launches stored there are not run again, and the new ones are added to it.
+   * <P>
+   * Every finished launch is also added to a checkpoint journal, so if the sweep dies it is resumed from there when
+   * run again with the same spec. The journal is deleted once the reports are written.
    */
-  private static void minimumDistance() {
-
-    final double dt = 100;
-    final double ft = 3600 * 24 * 365; // Max travel time for the spaceship (1 year)
-
-    // Parameters range
-    final double MIN_INITIAL_SPEED = 10000;
-    final double STEP_INITIAL_SPEED = 1000;
-    final double MAX_INITIAL_SPEED = 11000;
-
-    final double MIN_DAYS_TAKE_OFF = 0;
-    final double STEP_DAYS_TAKE_OFF = 100;
-    final double MAX_DAYS_TAKE_OFF = 366;
-
-    final double MIN_TAKE_OFF_DEGREE = 50;
-    final double STEP_TAKE_OFF_DEGREE = 30;
-    final double MAX_TAKE_OFF_DEGREE = 100;
-
-    final int speedIter =  (int) Math.ceil(((MAX_INITIAL_SPEED - MIN_INITIAL_SPEED) / STEP_INITIAL_SPEED));
-    final int takeOffIter = (int) Math.ceil(((MAX_DAYS_TAKE_OFF- MIN_DAYS_TAKE_OFF) / STEP_DAYS_TAKE_OFF));
-    final int  degreeIter = (int) Math.ceil(((MAX_TAKE_OFF_DEGREE - MIN_TAKE_OFF_DEGREE ) / STEP_TAKE_OFF_DEGREE));
-
-    final int totalIter = speedIter * takeOffIter * degreeIter;
-
+  private static void minimumDistance(final String[] args) {
+    if (args.length > 2) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+    final SweepSpec spec = args.length == 2 ? loadSweepSpec(args[1]) : SweepSpec.defaults();
 
-    ArrayList<ReportFile> reports = new ArrayList<>();
-    ReportFile minTravel = null;
+    final double dt = spec.dt();
+    final double ft = spec.ft();
+    final long totalIter = spec.size();
+    final SolarSystem baseSolarSystem = sweepBaseSystem(spec);
+    final SolarSystem dayZero = baseSolarSystem.fork(); // to run again the cached launches that need a report
+    final LaunchCache cache = openLaunchCache(spec);
 
     // Generate static.dat file for this system to be used to generate ovito file in a future
     generateStaticDatFile(SOLAR_SYSTEM_N, -1, -1, -1, -1, -1, SOLAR_SYSTEM_W, SOLAR_SYSTEM_L);
 
-    // Create file for first iteration
+    // Create folder for the results and reports
     final File dataFolder = new File(DESTINATION_FOLDER);
     dataFolder.mkdirs(); // tries to make directories for the .dat files
 
-    final Path pathToDatFile = Paths.get(DESTINATION_FOLDER, OUTPUT_FILE);
-
-    Vector2D takeOffAngle;
-    double initialSpeed;
-    double daysTakeOff;
-    int currIter = 0;
+    final Path pathToJournal = Paths.get(DESTINATION_FOLDER, SWEEP_JOURNAL_FILE);
+    final SweepJournal journal = openSweepJournal(spec, pathToJournal);
+    if (journal.restored() > 0) {
+      System.out.println("Resuming sweep: " + journal.restored() + " of " + totalIter + " launches had finished");
+    }
 
-    for(initialSpeed=MIN_INITIAL_SPEED; initialSpeed<MAX_INITIAL_SPEED; initialSpeed+=STEP_INITIAL_SPEED){
-      for(daysTakeOff=MIN_DAYS_TAKE_OFF; daysTakeOff<MAX_DAYS_TAKE_OFF; daysTakeOff+=STEP_DAYS_TAKE_OFF){
-        for(double angle=MIN_TAKE_OFF_DEGREE; angle<MAX_TAKE_OFF_DEGREE; angle+=STEP_TAKE_OFF_DEGREE){
+    final Path pathToResultsFile = Paths.get(DESTINATION_FOLDER, SWEEP_RESULTS_FILE);
+    final TopLaunches best = new TopLaunches(spec.reports(), spec.rank(), spec.target());
+    final long[] currIter = new long[1];
+    final long[] cachedIter = new long[1];
+    final long[] steps = new long[2]; // simulated and pruned flight steps
+    final LaunchSweep sweep =
+            new LaunchSweep(baseSolarSystem, ft, spec.target(), spec.threads(), spec.prune(), spec.batch(),
+                    spec.reports());
+
+    try (final BufferedWriter results = Files.newBufferedWriter(pathToResultsFile)) {
+      results.write("# index days_take_off initial_speed angle landed_to min_distance time_to_min_distance"
+              + " pruned_steps");
+      results.newLine();
+
+      sweep.run(spec.days(), spec.speeds(), spec.angles(), cache, journal, result -> {
+        synchronized (results) {
+          writeSweepRecord(results, pathToResultsFile, result);
+          steps[0] += result.getSteps();
+          steps[1] += result.getPrunedSteps();
+          if (result.getMinDistanceState() == null) {
+            cachedIter[0]++;
+          }
 
-          if(!deleteIfExists(pathToDatFile)) {
-            return;
+          if (result.getLandedTo().equals(spec.target().toString())) {
+            System.out.println("[REACHED] - Ship landed on " + result.getLandedTo());
           }
+          best.offer(result);
+          System.out.println("Progress: " + ++currIter[0] + " / " + totalIter);
+        }
+      });
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToResultsFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToResultsFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+    try {
+      journal.close();
+    } catch (final IOException e) {
+      // the reports are written anyway; the journal is only needed if they are not
+      LOGGER.warn("An unexpected IO Exception occurred while closing the file {}. Caused by: ", pathToJournal, e);
+    }
 
-          final SolarSystem solarSystem = new SolarSystem(dt);
+    if (cache != null) {
+      closeLaunchCache(cache, spec.cache());
+      // restored launches without state come either from the cache or from the journal
+      System.out.println("Cache: " + (cachedIter[0] - journal.restored()) + " of " + totalIter + " launches were restored from '"
+              + spec.cache() + "'");
+    }
+    if (spec.prune()) {
+      final long total = steps[0] + steps[1];
+      System.out.printf("Pruning saved %d of %d flight steps (%.1f%%)%n",
+              steps[1], total, total > 0 ? 100.0 * steps[1] / total : 0);
+    }
 
-          // Run the system until the ship is ready to take off
-          long i = 0;
-          double timeToTookOff = daysToSeconds(daysTakeOff);
+    // Only the winners are run again to get their system state; ties are broken by the sweep order
+    if (best.size() > 0) {
+      final ArrayList<ReportFile> reports = new ArrayList<>();
+      for (final LaunchResult result : best.best()) {
+        reports.add(new ReportFile(dt, ft, withState(sweep, dayZero, result)));
+      }
+      generateReportFiles(reports);
+    }
 
-          double currentTime = 0;
-          while (currentTime < timeToTookOff) {
-            evolve(solarSystem, i++);
-            currentTime +=dt;
-          }
-          // takeOffAngle = null;
-          takeOffAngle = calculateTakeOffAngle(angle, solarSystem.getEarthPosition(), solarSystem.getSunPosition());
-
-          solarSystem.takeOff(initialSpeed, takeOffAngle);
-
-          // Once the ship takes off, run until limit time is reached or ship crashes
-          for (double systemTime = 0; systemTime < ft; systemTime += dt) {
-            evolve(solarSystem, i);
-            if (solarSystem.shipCrashed()) {
-              System.out.println("[REACHED] - Ship landed on " + solarSystem.shipLandedTo());
-              generateOutputDatFile(OutputType.SOLAR_SYSTEM, solarSystem.getParticles(), i);
-              break;
-            }
-            i++;
-          }
+    // the sweep is over => the next run starts from scratch
+    try {
+      Files.deleteIfExists(pathToJournal);
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while deleting the file {}. Caused by: ", pathToJournal, e);
+    }
 
-          // In case we find a new minimum or mars is reached, the system state is saved
-          if(solarSystem.shipLandedTo().equals(ParticleType.MARS.toString())){
-            ReportFile report = new ReportFile(dt, ft, takeOffAngle, initialSpeed, daysTakeOff, angle, solarSystem.getMinDistanceToMarsSSState());
-            reports.add(report);
-          }
-          else if(minTravel == null ||
-                  solarSystem.getMinDistanceToMarsSSState().getDistanceToMars() < minTravel.getDistanceToMars()){
-            ReportFile report = new ReportFile(dt, ft, takeOffAngle, initialSpeed, daysTakeOff, angle, solarSystem.getMinDistanceToMarsSSState());
-            minTravel = report;
-          }
-          currIter++;
-          System.out.println("Progress: " + currIter + " / " + totalIter);
+  }
+
+  /**
+   * Looks for the launch closest to the target with a {@link LaunchSearch}: the spec's grid is run first, and its
+   * best launch is then refined within the spec's ranges, up to the spec's maximum amount of evaluations.
+   * Every launch is appended to the search results file, and the best one is saved as a report.
+   */
+  private static void launchSearch(final String[] args) {
+    if (args.length > 2) {
+      System.out.println("[FAIL] - Bad number of arguments. Try 'help' for more information.");
+      exit(BAD_N_ARGUMENTS);
+    }
+    final SweepSpec spec = args.length == 2 ? loadSweepSpec(args[1]) : SweepSpec.defaults();
+
+    // Create folder for the results and reports
+    final File dataFolder = new File(DESTINATION_FOLDER);
+    dataFolder.mkdirs(); // tries to make directories for the .dat files
 
+    final Path pathToResultsFile = Paths.get(DESTINATION_FOLDER, SEARCH_RESULTS_FILE);
+    final LaunchSearch search = new LaunchSearch(sweepBaseSystem(spec), spec);
+    LaunchResult best = null;
+
+    try (final BufferedWriter results = Files.newBufferedWriter(pathToResultsFile)) {
+      results.write("# index days_take_off initial_speed angle landed_to min_distance time_to_min_distance"
+              + " pruned_steps");
+      results.newLine();
+
+      best = search.search(result -> {
+        synchronized (results) {
+          writeSweepRecord(results, pathToResultsFile, result);
         }
-      }
+      });
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToResultsFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToResultsFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
     }
 
-    if (minTravel != null) {
-      reports.add(minTravel);
+    System.out.println("Evaluations: " + search.evaluations() + " (grid: " + spec.size() + ")");
+    if (best != null) {
+      System.out.println("Best: days " + best.getDaysTakeOff() + ", speed " + best.getInitialSpeed()
+              + ", angle " + best.getAngle() + " => min distance " + best.getMinDistance()
+              + ", landed to " + best.getLandedTo());
+      final ArrayList<ReportFile> reports = new ArrayList<>();
+      reports.add(new ReportFile(spec.dt(), spec.ft(), best));
       generateReportFiles(reports);
     }
+  }
 
+  /**
+   * @return the system at day 0 to be used by sweeps and searches
+   */
+  private static SolarSystem sweepBaseSystem(final SweepSpec spec) {
+    if (!spec.restricted()) {
+      return SolarSystem.withIntegrator(spec.integrator(), spec.dt());
+    }
+    // Planets are not affected by the ship => in restricted mode they are integrated once for all the runs
+    final double lastTakeOff = Math.max(spec.upperBounds()[0], 0);
+    return SolarSystem.withIntegrator(spec.integrator(), SolarSystem.ephemeris(spec.dt(),
+            daysToSeconds(lastTakeOff) + spec.ft() + 2 * spec.dt(), EPHEMERIS_SAMPLE_STEPS));
   }
 
   /**
-   *
-   * @param angle the initial angle for the ship take off, measured as 0 when tangential to earth and
-   * positive outwards
-   * @return a vector representing the direction given by the degree
-     */
-  private static Vector2D calculateTakeOffAngle(double angle, Vector2D earth, Vector2D sun){
-    double distance = sqrt(Math.pow(earth.x()-sun.x(), 2) +  Math.pow(earth.y()-sun.y(), 2));
-    Vector2D normalVersor = new Vector2D(earth.x()- sun.x(), earth.y()-sun.y());
-    normalVersor.div(distance); // Normalize Vector
-    Vector2D tgVersor = new Vector2D(- normalVersor.y(), normalVersor.x());
+   * @return the name of the integrator that runs the spec's launches, as keyed on launch caches
+   */
+  private static String sweepIntegrator(final SweepSpec spec) {
+    if (spec.restricted()) {
+      return spec.integrator() + "/restricted/ephemeris-" + EPHEMERIS_SAMPLE_STEPS;
+    }
+    // ships of a batch do not pull on the planets => their results differ slightly
+    return spec.integrator() + (spec.batch() > 1 ? "/full/test-particles" : "/full");
+  }
 
-    tgVersor.times(cos(angle));
-    normalVersor.times(sin(angle));
+  /**
+   * Opens the checkpoint journal of the spec's sweep at the given file. A journal of any other sweep is discarded
+   */
+  private static SweepJournal openSweepJournal(final SweepSpec spec, final Path pathToJournal) {
+    // every value that changes the sweep's results, or the position of each launch on it
+    final String fingerprint = sweepIntegrator(spec) + " dt=" + spec.dt() + " ft=" + spec.ft()
+            + " target=" + spec.target() + " days=" + Arrays.toString(spec.days())
+            + " speeds=" + Arrays.toString(spec.speeds()) + " angles=" + Arrays.toString(spec.angles())
+            + " prune=" + spec.prune() + " reports=" + spec.reports();
+    try {
+      return new SweepJournal(pathToJournal, fingerprint, (int) spec.size());
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while opening the file {}. Caused by: ", pathToJournal, e);
+      System.out.println("[FAIL] - An unexpected error occurred while opening the file '" + pathToJournal + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+    // should not get here
+    return null;
+  }
 
-    Vector2D versor = new Vector2D(tgVersor.x() + normalVersor.x(), tgVersor.y() + normalVersor.y());
+  /**
+   * @return the spec's launch cache; null if it has none
+   */
+  private static LaunchCache openLaunchCache(final SweepSpec spec) {
+    if (spec.cache() == null) {
+      return null;
+    }
+    try {
+      return new LaunchCache(Paths.get(spec.cache()), sweepIntegrator(spec));
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while opening the file {}. Caused by: ", spec.cache(), e);
+      System.out.println("[FAIL] - An unexpected error occurred while opening the file '" + spec.cache() + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    } catch (final IllegalArgumentException e) {
+      System.out.println("[FAIL] - " + e.getMessage() + ". Aborting...");
+      exit(BAD_FILE_FORMAT);
+    }
+    // should not get here
+    return null;
+  }
 
-    return versor;
+  private static void closeLaunchCache(final LaunchCache cache, final String filePath) {
+    try {
+      cache.close();
+    } catch (final IOException e) {
+      // every launch was already written => only warn
+      LOGGER.warn("An unexpected IO Exception occurred while closing the file {}. Caused by: ", filePath, e);
+    }
+  }
 
+  /**
+   * @return the given result, run again if it is only a summary, so that it has the system's state
+   */
+  private static LaunchResult withState(final LaunchSweep sweep, final SolarSystem dayZero,
+                                        final LaunchResult result) {
+    return result.getMinDistanceState() != null ? result : sweep.replay(dayZero, result);
+  }
+
+  private static void writeSweepRecord(final BufferedWriter writer, final Path pathToFile,
+                                       final LaunchResult result) {
+    try {
+      writer.write(result.getIndex() + " " + result.getDaysTakeOff() + " " + result.getInitialSpeed() + " "
+              + result.getAngle() + " " + result.getLandedTo() + " " + result.getMinDistance() + " "
+              + result.getTimeToMinDistance() + " " + result.getPrunedSteps());
+      writer.newLine();
+      writer.flush(); // so that results can be followed while the sweep runs
+    } catch (IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while writing the file {}. Caused by: ", pathToFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while writing the file '" + pathToFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    }
+  }
+
+  private static SweepSpec loadSweepSpec(final String filePath) {
+    final File specFile = new File(filePath);
+    if (!specFile.isFile()) {
+      System.out.println("[FAIL] - File '" + filePath + "' is not a normal file. Aborting...");
+      exit(NOT_A_FILE);
+    }
+
+    try {
+      return SweepSpec.parse(Files.readAllLines(specFile.toPath()));
+    } catch (final IOException e) {
+      LOGGER.warn("An unexpected IO Exception occurred while reading the file {}. Caused by: ", specFile, e);
+      System.out.println("[FAIL] - An unexpected error occurred while reading the file '" + specFile + "'. \n" +
+              "Check the logs for more info.\n" +
+              "Aborting...");
+      exit(UNEXPECTED_ERROR);
+    } catch (final IllegalArgumentException e) {
+      LOGGER.warn("[FAIL] - Bad sweep spec. Caused by: ", e);
+      System.out.println("[FAIL] - Bad format of file '" + specFile + "': " + e.getMessage() + "\n" +
+              "Aborting...");
+      exit(BAD_FILE_FORMAT);
+    }
+    // should not get here
+    return null;
   }
 
   private static void generateReportFiles(ArrayList<ReportFile> reports) {
@@ -365,6 +686,11 @@ public class Main {
     double degree;
     SolarSystem.SolarSystemState state;
 
+    public ReportFile(double dt, double ft, LaunchResult result){
+      this(dt, ft, result.getTakeOffAngle(), result.getInitialSpeed(), result.getDaysTakeOff(), result.getAngle(),
+              result.getMinDistanceState());
+    }
+
     public ReportFile(double dt, double ft, Vector2D takeOffAngle, double initialSpeed, double daysTakeOff, double degree, SolarSystem.SolarSystemState state ){
       this.dt = dt;
       this.ft = ft;
@@ -401,7 +727,7 @@ public class Main {
       exit(BAD_N_ARGUMENTS);
     }
 
-    final double dt = parseAsDouble(args[1], "<dt>");
+    final SolarSystem solarSystem = flightSystem(args[1]);
     final double ft = parseAsDouble(args[2], "<ft>");
     final double daysToTakeOff = parseAsDouble(args[3], "<days_to_take_off>");
     final double shipTakeOffV0 = parseAsDouble(args[4], "<ship_take_off_v0>") * KM_TO_M;
@@ -429,21 +755,21 @@ public class Main {
       return;
     }
 
-    final SolarSystem solarSystem = new SolarSystem(dt);
-
     long i = 0;
     double timeToTookOff = daysToSeconds(daysToTakeOff);
 
     double currentTime = 0;
     while (currentTime < timeToTookOff) {
-      evolve(solarSystem, i++);
-      currentTime +=dt;
+      evolve(solarSystem, i++, timeToTookOff - currentTime);
+      currentTime += solarSystem.getLastDt();
     }
 
     solarSystem.takeOffFromMars(shipTakeOffV0, shipTakeOffAngle);
 
-    for (double systemTime = 0; systemTime < ft; systemTime += dt) {
-      evolve(solarSystem, i);
+    long flightSteps = 0;
+    for (double systemTime = 0; systemTime < ft; systemTime += solarSystem.getLastDt()) {
+      evolve(solarSystem, i, ft - systemTime);
+      flightSteps++;
       if (solarSystem.shipCrashedEarth()) {
         System.out.println("[REACHED] - Ship landed on " + solarSystem.shipLandedTo());
         generateOutputDatFile(OutputType.SOLAR_SYSTEM, solarSystem.getParticles(), i);
@@ -451,6 +777,8 @@ public class Main {
       }
       i++;
     }
+    System.out.println("Flight steps: " + flightSteps);
+    printStepsPerLevel(solarSystem);
 
     generateReportFile(solarSystem.getMinDistanceToMarsSSState());
   }
@@ -461,7 +789,7 @@ public class Main {
       exit(BAD_N_ARGUMENTS);
     }
 
-    final double dt = parseAsDouble(args[1], "<dt>");
+    final SolarSystem solarSystem = flightSystem(args[1]);
     final double ft = parseAsDouble(args[2], "<ft>");
     final double daysToTakeOff = parseAsDouble(args[3], "<days_to_take_off>");
     final double shipTakeOffV0 = parseAsDouble(args[4], "<ship_take_off_v0>") * KM_TO_M;
@@ -489,21 +817,21 @@ public class Main {
       return;
     }
 
-    final SolarSystem solarSystem = new SolarSystem(dt);
-
     long i = 0;
     double timeToTookOff = daysToSeconds(daysToTakeOff);
 
     double currentTime = 0;
     while (currentTime < timeToTookOff) {
-      evolve(solarSystem, i++);
-      currentTime +=dt;
+      evolve(solarSystem, i++, timeToTookOff - currentTime);
+      currentTime += solarSystem.getLastDt();
     }
 
     solarSystem.takeOff(shipTakeOffV0, shipTakeOffAngle);
 
-    for (double systemTime = 0; systemTime < ft; systemTime += dt) {
-      evolve(solarSystem, i);
+    long flightSteps = 0;
+    for (double systemTime = 0; systemTime < ft; systemTime += solarSystem.getLastDt()) {
+      evolve(solarSystem, i, ft - systemTime);
+      flightSteps++;
       if (solarSystem.shipCrashed()) {
         System.out.println("[REACHED] - Ship landed on " + solarSystem.shipLandedTo());
         generateOutputDatFile(OutputType.SOLAR_SYSTEM, solarSystem.getParticles(), i);
@@ -511,6 +839,8 @@ public class Main {
       }
       i++;
     }
+    System.out.println("Flight steps: " + flightSteps);
+    printStepsPerLevel(solarSystem);
 
     generateReportFile(solarSystem.getMinDistanceToMarsSSState());
   }
@@ -534,11 +864,80 @@ public class Main {
     }
   }
 
-  private static void evolve(final SolarSystem solarSystem, final long i) {
+  /**
+   * Evolves the system a single step, no longer than {@code maxDt} when stepping adaptively
+   */
+  private static void evolve(final SolarSystem solarSystem, final long i, final double maxDt) {
     if (i%10 == 0) { // print system after 10 dt units
       generateOutputDatFile(OutputType.SOLAR_SYSTEM, solarSystem.getParticles(), i);
     }
-    solarSystem.evolveSystem();
+    solarSystem.evolveSystem(maxDt);
+  }
+
+  /**
+   * Parses the {@code <dt>} argument of a flight: a number, for a fixed step; {@code <min_dt>:<max_dt>(:<eta>)}
+   * to pick each step adaptively within those bounds, as a fraction eta of the shortest timescale of the system;
+   * {@code block:<min_dt>:<max_dt>(:<eta>)} to pick the step of each body on its own, with block time steps;
+   * or {@code <integrator>:<dt>} to run a fixed step with any of {@link SolarSystem#INTEGRATORS}.
+   * Exits if an error is encountered
+   * @return the system at the initial conditions, to be flown with that step
+   */
+  private static SolarSystem flightSystem(final String dt) {
+    final boolean blockSteps = dt.startsWith("block:");
+    final String[] bounds = (blockSteps ? dt.substring("block:".length()) : dt).split(":");
+    if (bounds.length == 1 && !blockSteps) {
+      return new SolarSystem(parseAsDouble(dt, "<dt>"));
+    }
+    if (bounds.length == 2 && !blockSteps && !bounds[0].isEmpty() && Character.isLetter(bounds[0].charAt(0))) {
+      try {
+        final double fixedDt = parseAsDouble(bounds[1], "<dt>");
+        // bodies are split among threads only when there are enough of them to pay off
+        return SolarSystem.withIntegrator(bounds[0], fixedDt, Runtime.getRuntime().availableProcessors(),
+                ChunkExecutor.DEFAULT_THRESHOLD);
+      } catch (final IllegalArgumentException e) {
+        System.out.println("[FAIL] - Bad <dt>: " + e.getMessage() + ". Try 'help' for more information.");
+        exit(BAD_ARGUMENT);
+        // should not get here
+        return null;
+      }
+    }
+    if (bounds.length < 2 || bounds.length > 3) {
+      System.out.println("[FAIL] - <dt> must be a number, <integrator>:<dt>, <min_dt>:<max_dt>(:<eta>) or " +
+              "block:<min_dt>:<max_dt>(:<eta>). Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+    }
+
+    final double minDt = parseAsDouble(bounds[0], "<min_dt>");
+    final double maxDt = parseAsDouble(bounds[1], "<max_dt>");
+    final double eta = bounds.length == 3 ? parseAsDouble(bounds[2], "<eta>") : AdaptiveStep.DEFAULT_ETA;
+    try {
+      final AdaptiveStep steps = new AdaptiveStep(minDt, maxDt, eta);
+      return blockSteps ? SolarSystem.withBlockSteps(steps) : new SolarSystem(steps);
+    } catch (final IllegalArgumentException e) {
+      System.out.println("[FAIL] - Bad adaptive <dt>: " + e.getMessage() + ". Try 'help' for more information.");
+      exit(BAD_ARGUMENT);
+      // should not get here
+      return null;
+    }
+  }
+
+  /**
+   * Prints the amount of steps run on each level of block time steps, and their share of the force evaluations,
+   * if the system runs with them
+   */
+  private static void printStepsPerLevel(final SolarSystem solarSystem) {
+    final long[] steps = solarSystem.getStepsPerLevel();
+    final long total = Arrays.stream(steps).sum();
+    if (total == 0) {
+      return;
+    }
+    System.out.println("Steps per level (level dt steps force_share):");
+    for (int level = 0; level < steps.length; level++) {
+      if (steps[level] > 0) {
+        System.out.printf("  %d %.6g %d %.1f%%%n", level, solarSystem.getDt() / (1L << level), steps[level],
+                100.0 * steps[level] / total);
+      }
+    }
   }
 
   private static double daysToSeconds(final double days) {
@@ -775,6 +1174,16 @@ public class Main {
                 dt
         );
       default:
+        if (arg.matches("gear[2-6]")) {
+          return new OscillatorGearIntegration(
+                  staticData.mass,
+                  staticData.r,
+                  staticData.k,
+                  staticData.gamma,
+                  dt,
+                  arg.charAt(arg.length() - 1) - '0'
+          );
+        }
         LOGGER.warn("[FAIL] - <type> must be valid.");
         System.out.println("[FAIL] - <type> must be valid. Try 'help' for more information.");
         exit(BAD_ARGUMENT);
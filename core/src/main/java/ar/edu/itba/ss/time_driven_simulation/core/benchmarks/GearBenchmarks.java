@@ -0,0 +1,258 @@
+package ar.edu.itba.ss.time_driven_simulation.core.benchmarks;
+
+import ar.edu.itba.ss.time_driven_simulation.interfaces.NumericIntegrationMethod;
+import ar.edu.itba.ss.time_driven_simulation.interfaces.SystemData;
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.FlatGearPredictorCorrector;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.FlatGearSystemData;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.Gear5SystemData;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearForces;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearGravitySystem;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearPredictorCorrector;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GravityGearSystemData;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.ParallelGearPredictorCorrector;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.UnrolledGearPredictorCorrector;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks of the Gear Predictor Corrector implementations, run over damped oscillators, whose forces are cheap,
+ * so the time measured is mostly the one of the predict and fix steps, or over asteroid disks under their
+ * mutual gravity
+ */
+public class GearBenchmarks {
+  private static final double MASS = 70;
+  private static final double K = 10000;
+  private static final double GAMMA = 100;
+  private static final double DT = 1e-4;
+  private static final int ORDER = 5;
+  private static final double ERROR_TIME = 5;
+  private static final double[] ERROR_DTS = {1e-2, 1e-3, 1e-4};
+  // particles times steps run by each implementation, after as many untimed ones to warm up
+  private static final long PARTICLE_STEPS = 2000000;
+  private static final double G = 6.693E-11;
+  private static final double GRAVITY_DT = 100;
+
+  private GearBenchmarks() {
+  }
+
+  /**
+   * Prints the time per particle step of the map-based Gear Predictor Corrector of order 5, and of the flat
+   * one with loops and with unrolled kernels, over {@code particles} damped oscillators, together with their
+   * speedup and their largest position difference against the map-based one.
+   * Then, for each order, prints the time per particle step of the flat one, and its position error against
+   * the analytic solution after 5 seconds of a single oscillator, for dt from 10^-2 to 10^-4 seconds.
+   * @param particles the amount of oscillators
+   */
+  public static void kernels(final int particles) {
+    final long steps = Math.max(1, PARTICLE_STEPS / particles);
+    System.out.println("Gear order 5 over " + particles + " oscillators, " + steps + " steps of " + DT + " s");
+    System.out.println("implementation\tns_per_particle_step\tspeedup\tmax_position_difference");
+
+    run(new MapOscillators(oscillators(particles)), new GearPredictorCorrector<>(), steps);
+    final MapOscillators map = new MapOscillators(oscillators(particles));
+    final double mapNs = run(map, new GearPredictorCorrector<>(), steps);
+    final Map<Long, Particle> reference = new HashMap<>();
+    for (final Particle particle : map.particles()) {
+      reference.put(particle.id(), particle);
+    }
+    System.out.println("map\t" + String.format("%.2f", mapNs / particles) + "\t1.0\t0");
+
+    report("flat", new FlatGearPredictorCorrector<>(), particles, steps, mapNs, reference);
+    report("unrolled", new UnrolledGearPredictorCorrector<>(), particles, steps, mapNs, reference);
+
+    System.out.println();
+    System.out.println("Gear orders, errors after " + ERROR_TIME + " s of a single oscillator");
+    final StringBuilder header = new StringBuilder("order\tns_per_particle_step");
+    for (final double dt : ERROR_DTS) {
+      header.append("\terror_dt_").append(dt);
+    }
+    System.out.println(header);
+    for (int order = GearForces.MIN_ORDER; order <= GearForces.MAX_ORDER; order++) {
+      final NumericIntegrationMethod<FlatOscillators> method = new UnrolledGearPredictorCorrector<>();
+      run(new FlatOscillators(oscillators(particles), order), method, steps);
+      final StringBuilder row = new StringBuilder(order + "\t" + String.format("%.2f",
+              run(new FlatOscillators(oscillators(particles), order), method, steps) / particles));
+      for (final double dt : ERROR_DTS) {
+        row.append("\t").append(String.format("%.3e", analyticError(order, dt)));
+      }
+      System.out.println(row);
+    }
+  }
+
+  /**
+   * Prints the time per step of the serial Gear Predictor Corrector of order 5 over asteroid disks under their
+   * mutual gravity, against the parallel one with 1 and {@code parallelism} threads, and checks that both parallel
+   * runs end up with the very same positions as the serial one.
+   * @param parallelism the amount of threads to be used
+   */
+  public static void parallelScaling(final int parallelism) {
+    final int steps = 10;
+    System.out.println("Parallel Gear steps, parallelism = " + parallelism);
+    System.out.println("N\tserial_ms\tparallel_1_ms\tparallel_" + parallelism + "_ms\tspeedup\tsame_result");
+
+    for (final int n : new int[]{100, 1000, 4000, 16000}) {
+      final GearGravitySystem serial = gravitySystem(n, new UnrolledGearPredictorCorrector<>());
+      final GearGravitySystem oneThread = gravitySystem(n, new ParallelGearPredictorCorrector<>(
+              new ChunkExecutor(1, ChunkExecutor.DEFAULT_THRESHOLD)));
+      final GearGravitySystem nThreads = gravitySystem(n, new ParallelGearPredictorCorrector<>(
+              new ChunkExecutor(parallelism, ChunkExecutor.DEFAULT_THRESHOLD)));
+
+      final double serialMs = timePerStep(serial, steps);
+      final double oneThreadMs = timePerStep(oneThread, steps);
+      final double nThreadsMs = timePerStep(nThreads, steps);
+
+      System.out.println(n + "\t" + String.format("%.3f", serialMs) + "\t" + String.format("%.3f", oneThreadMs)
+              + "\t" + String.format("%.3f", nThreadsMs) + "\t" + String.format("%.2f", oneThreadMs / nThreadsMs)
+              + "\t" + (samePositions(serial, oneThread) && samePositions(serial, nThreads)));
+    }
+  }
+
+  private static GearGravitySystem gravitySystem(final int n,
+                                                 final UnrolledGearPredictorCorrector<GravityGearSystemData> method) {
+    return new GearGravitySystem(new GravityGearSystemData(Arrays.asList(GravityBenchmarks.asteroidDiskParticles(n)),
+            ORDER, G), method);
+  }
+
+  /**
+   * @return the mean wall time in milliseconds of a step, after as many steps to warm up
+   */
+  private static double timePerStep(final GearGravitySystem system, final int steps) {
+    for (int step = 0; step < steps; step++) {
+      system.evolveSystem(GRAVITY_DT);
+    }
+    final long start = System.nanoTime();
+    for (int step = 0; step < steps; step++) {
+      system.evolveSystem(GRAVITY_DT);
+    }
+    return (System.nanoTime() - start) / 1e6 / steps;
+  }
+
+  private static boolean samePositions(final GearGravitySystem a, final GearGravitySystem b) {
+    for (int slot = 0; slot < a.getSystemData().size(); slot++) {
+      if (a.getSystemData().rx(slot, 0) != b.getSystemData().rx(slot, 0)
+              || a.getSystemData().ry(slot, 0) != b.getSystemData().ry(slot, 0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the position error of a single oscillator of the given order after {@code ERROR_TIME} seconds,
+   * against the analytic solution
+   */
+  private static double analyticError(final int order, final double dt) {
+    final FlatOscillators oscillator = new FlatOscillators(oscillators(1), order);
+    final NumericIntegrationMethod<FlatOscillators> method = new UnrolledGearPredictorCorrector<>();
+    final long steps = Math.round(ERROR_TIME / dt);
+    for (long step = 0; step < steps; step++) {
+      method.evolveSystem(oscillator, dt);
+    }
+    final double time = steps * dt;
+    final double decay = GAMMA / (2 * MASS);
+    final double exact = Math.exp(-decay * time) * Math.cos(Math.sqrt(K / MASS - decay * decay) * time);
+    return Math.abs(oscillator.rx(0, 0) - exact);
+  }
+
+  private static void report(final String name, final NumericIntegrationMethod<FlatOscillators> method,
+                             final int particles, final long steps, final double mapNs,
+                             final Map<Long, Particle> reference) {
+    run(new FlatOscillators(oscillators(particles), ORDER), method, steps);
+    final FlatOscillators flat = new FlatOscillators(oscillators(particles), ORDER);
+    final double ns = run(flat, method, steps);
+
+    double maxDifference = 0;
+    for (final Particle particle : flat.particles()) {
+      final Particle other = reference.get(particle.id());
+      maxDifference = Math.max(maxDifference, Math.hypot(particle.x() - other.x(), particle.y() - other.y()));
+    }
+    System.out.println(name + "\t" + String.format("%.2f", ns / particles) + "\t"
+            + String.format("%.1f", mapNs / ns) + "\t" + String.format("%.3e", maxDifference));
+  }
+
+  /**
+   * @return the time per step, in nanoseconds
+   */
+  private static <K extends SystemData> double run(final K systemData, final NumericIntegrationMethod<K> method,
+                                                   final long steps) {
+    final long start = System.nanoTime();
+    for (long step = 0; step < steps; step++) {
+      method.evolveSystem(systemData, DT);
+    }
+    return (System.nanoTime() - start) / (double) steps;
+  }
+
+  /**
+   * @return oscillators along x; the first one starts as the analytic solution x(t) = e^(-gamma t / 2m) cos(w t)
+   */
+  private static List<Particle> oscillators(final int particles) {
+    final List<Particle> oscillators = new ArrayList<>(particles);
+    for (int i = 0; i < particles; i++) {
+      oscillators.add(Particle.builder(1 + (double) i / particles, 0)
+              .id(i)
+              .mass(MASS)
+              .vx(-GAMMA / (2 * MASS))
+              .build());
+    }
+    return oscillators;
+  }
+
+  private static class MapOscillators extends Gear5SystemData {
+    private MapOscillators(final Collection<Particle> particles) {
+      super(particles);
+      init();
+    }
+
+    @Override
+    protected Map<Integer, Vector2D> setInitialDerivativeValues(final Particle particle) {
+      final Map<Integer, Vector2D> initialDerivativeValues = new HashMap<>(sVectors());
+      initialDerivativeValues.put(0, new Vector2D(particle.x(), particle.y()));
+      initialDerivativeValues.put(1, new Vector2D(particle.vx(), particle.vy()));
+      for (int i = 2; i <= order(); i++) {
+        final Vector2D rPrev2 = initialDerivativeValues.get(i - 2);
+        final Vector2D rPrev1 = initialDerivativeValues.get(i - 1);
+        initialDerivativeValues.put(i, new Vector2D(rPrev2).times(-K).sub(new Vector2D(rPrev1).times(GAMMA))
+                .div(particle.mass()));
+      }
+      return initialDerivativeValues;
+    }
+
+    @Override
+    protected Vector2D getForceWithPredicted(final Particle particle) {
+      return new Vector2D(getPredictedR(particle, 0)).times(-K)
+              .sub(new Vector2D(getPredictedR(particle, 1)).times(GAMMA));
+    }
+  }
+
+  private static class FlatOscillators extends FlatGearSystemData {
+    private FlatOscillators(final Collection<Particle> particles, final int order) {
+      super(particles, order, GearForces.VELOCITY_DEPENDENT);
+      init();
+    }
+
+    @Override
+    protected void setInitialDerivativeValues(final int slot) {
+      final Particle particle = initialParticle(slot);
+      setR(slot, 0, particle.x(), particle.y());
+      setR(slot, 1, particle.vx(), particle.vy());
+      for (int i = 2; i <= order(); i++) {
+        setR(slot, i, (-K * rx(slot, i - 2) - GAMMA * rx(slot, i - 1)) / mass(slot),
+                (-K * ry(slot, i - 2) - GAMMA * ry(slot, i - 1)) / mass(slot));
+      }
+    }
+
+    @Override
+    protected void forceWithPredicted(final int slot, final double[] forces) {
+      forces[2 * slot] = -K * predictedRx(slot, 0) - GAMMA * predictedRx(slot, 1);
+      forces[2 * slot + 1] = -K * predictedRy(slot, 0) - GAMMA * predictedRy(slot, 1);
+    }
+  }
+}
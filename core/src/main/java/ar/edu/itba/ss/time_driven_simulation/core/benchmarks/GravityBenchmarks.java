@@ -0,0 +1,228 @@
+package ar.edu.itba.ss.time_driven_simulation.core.benchmarks;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.BarnesHutGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.FastMultipoleGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.GravityForceProvider;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.PairwiseGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ParallelPairwiseGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.VerletNBodyEngine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.log;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+/**
+ * Benchmarks of the gravitational force providers, run over synthetic asteroid disks around a Sun
+ */
+public class GravityBenchmarks {
+  private static final double G = 6.693E-11;
+  private static final double SUN_MASS = 1.988E30;
+  private static final double AU = 1.496E11;
+  private static final long SEED = 1234;
+
+  // Above this amount of bodies the direct sum is too slow to be used as a reference
+  private static final int MAX_DIRECT_N = 20000;
+  private static final int[] SIZES = {1000, 10000, 100000, 1000000};
+
+  private GravityBenchmarks() {
+  }
+
+  /**
+   * Prints the time per force evaluation of the Barnes-Hut provider from 10^3 to 10^6 bodies,
+   * normalized by N log N, together with its error against the direct sum when the latter is affordable.
+   * @param theta the opening angle to be used
+   */
+  public static void barnesHutScaling(final double theta) {
+    System.out.println("Barnes-Hut scaling, theta = " + theta);
+    System.out.println("N\tbh_ms\tbh_ns_per_NlogN\tdirect_ms\trms_rel_error");
+
+    for (final int n : SIZES) {
+      final NBodyState state = asteroidDisk(n);
+      final GravityForceProvider barnesHut = new BarnesHutGravityForce(theta);
+
+      final double bhMs = timePerEvaluation(barnesHut, state);
+      final double nLogN = n * log(n) / log(2);
+      final double[] bhFx = state.fx().clone();
+      final double[] bhFy = state.fy().clone();
+
+      String directMs = "-";
+      String error = "-";
+      if (n <= MAX_DIRECT_N) {
+        directMs = String.format("%.3f", timePerEvaluation(new PairwiseGravityForce(), state));
+        error = String.format("%.3e", rmsRelativeError(state, bhFx, bhFy));
+      }
+
+      System.out.println(n + "\t" + String.format("%.3f", bhMs) + "\t"
+              + String.format("%.3f", bhMs * 1e6 / nLogN) + "\t" + directMs + "\t" + error);
+    }
+  }
+
+  /**
+   * Prints the error of the fast multipole provider against the direct sum for expansion orders from 2
+   * to 2 * {@code order}, followed by its time per force evaluation from 10^3 to 10^6 bodies at {@code order}.
+   * @param order the expansion order to be used for the scaling report
+   */
+  public static void fastMultipoleReport(final int order) {
+    final int errorN = 10000;
+    final NBodyState errorState = asteroidDisk(errorN);
+    final GravityForceProvider direct = new PairwiseGravityForce();
+    final double directMs = timePerEvaluation(direct, errorState);
+    final double[] directFx = errorState.fx().clone();
+    final double[] directFy = errorState.fy().clone();
+
+    System.out.println("FMM error against the direct sum, N = " + errorN + " (direct: "
+            + String.format("%.3f", directMs) + " ms)");
+    System.out.println("order\tfmm_ms\trms_rel_error\tmax_rel_error");
+    for (int p = 2; p <= 2 * order; p += 2) {
+      final double fmmMs = timePerEvaluation(new FastMultipoleGravityForce(p), errorState);
+      System.out.println(p + "\t" + String.format("%.3f", fmmMs) + "\t"
+              + String.format("%.3e", rmsRelativeError(errorState, directFx, directFy)) + "\t"
+              + String.format("%.3e", maxRelativeError(errorState, directFx, directFy)));
+    }
+
+    System.out.println("FMM scaling, order = " + order);
+    System.out.println("N\tfmm_ms\tfmm_ns_per_N");
+    for (final int n : SIZES) {
+      final NBodyState state = asteroidDisk(n);
+      final double fmmMs = timePerEvaluation(new FastMultipoleGravityForce(order), state);
+      System.out.println(n + "\t" + String.format("%.3f", fmmMs) + "\t" + String.format("%.3f", fmmMs * 1e6 / n));
+    }
+  }
+
+  /**
+   * Prints the time per Verlet step of the serial engine against the parallel one, with 1 and {@code parallelism}
+   * threads, and checks that both parallel runs end up with the very same positions.
+   * @param parallelism the amount of threads to be used
+   */
+  public static void parallelScaling(final int parallelism) {
+    final double dt = 100;
+    final int steps = 10;
+    System.out.println("Parallel Verlet steps, parallelism = " + parallelism);
+    System.out.println("N\tserial_ms\tparallel_1_ms\tparallel_" + parallelism + "_ms\tspeedup\tsame_result");
+
+    for (final int n : new int[]{100, 1000, 4000, 16000}) {
+      final VerletNBodyEngine serial = new VerletNBodyEngine(dt, G);
+      serial.addBodies(asteroidDiskParticles(n));
+      final VerletNBodyEngine oneThread = parallelEngine(dt, 1);
+      oneThread.addBodies(asteroidDiskParticles(n));
+      final VerletNBodyEngine nThreads = parallelEngine(dt, parallelism);
+      nThreads.addBodies(asteroidDiskParticles(n));
+
+      final double serialMs = timePerStep(serial, steps);
+      final double oneThreadMs = timePerStep(oneThread, steps);
+      final double nThreadsMs = timePerStep(nThreads, steps);
+
+      final boolean same = Arrays.equals(oneThread.state().x(), nThreads.state().x())
+              && Arrays.equals(oneThread.state().y(), nThreads.state().y());
+
+      System.out.println(n + "\t" + String.format("%.3f", serialMs) + "\t" + String.format("%.3f", oneThreadMs)
+              + "\t" + String.format("%.3f", nThreadsMs) + "\t" + String.format("%.2f", oneThreadMs / nThreadsMs)
+              + "\t" + same);
+    }
+  }
+
+  private static VerletNBodyEngine parallelEngine(final double dt, final int parallelism) {
+    final ChunkExecutor executor = new ChunkExecutor(parallelism, ChunkExecutor.DEFAULT_THRESHOLD);
+    return new VerletNBodyEngine(dt, G, new ParallelPairwiseGravityForce(executor), executor);
+  }
+
+  /**
+   * @return the mean wall time in milliseconds of a step, after warming up the engine
+   */
+  private static double timePerStep(final VerletNBodyEngine engine, final int steps) {
+    for (int i = 0; i < steps; i++) {
+      engine.evolve();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < steps; i++) {
+      engine.evolve();
+    }
+    return (System.nanoTime() - start) / 1e6 / steps;
+  }
+
+  /**
+   * Creates a Sun surrounded by {@code n - 1} asteroids in circular orbits between 2 and 3.5 AU
+   * @param n total amount of bodies
+   * @return the system's state
+   */
+  public static NBodyState asteroidDisk(final int n) {
+    final NBodyState state = new NBodyState(n);
+    for (final Particle particle : asteroidDiskParticles(n)) {
+      state.add(particle);
+    }
+    return state;
+  }
+
+  /**
+   * Same as {@link #asteroidDisk(int)}, but as particles
+   */
+  public static Particle[] asteroidDiskParticles(final int n) {
+    final Random random = new Random(SEED);
+    final Particle[] particles = new Particle[n];
+    particles[0] = Particle.builder(0, 0).mass(SUN_MASS).type(ParticleType.SUN).build();
+
+    for (int i = 1; i < n; i++) {
+      final double r = (2 + 1.5 * random.nextDouble()) * AU;
+      final double angle = 2 * Math.PI * random.nextDouble();
+      final double v = sqrt(G * SUN_MASS / r);
+      particles[i] = Particle.builder(r * cos(angle), r * sin(angle))
+              .mass(1e15 + 1e18 * random.nextDouble())
+              .vx(-v * sin(angle))
+              .vy(v * cos(angle))
+              .build();
+    }
+    return particles;
+  }
+
+  /**
+   * @return the mean wall time in milliseconds of a force evaluation, after warming up the provider
+   */
+  private static double timePerEvaluation(final GravityForceProvider provider, final NBodyState state) {
+    final int warmUp = 2;
+    final int runs = state.size() >= 1000000 ? 3 : 5;
+    for (int i = 0; i < warmUp; i++) {
+      provider.computeForces(state, G);
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      provider.computeForces(state, G);
+    }
+    return (System.nanoTime() - start) / 1e6 / runs;
+  }
+
+  /**
+   * @return the RMS of the relative error of the given forces against the ones currently stored on the state
+   */
+  private static double rmsRelativeError(final NBodyState state, final double[] fx, final double[] fy) {
+    double sum = 0;
+    for (int i = 0; i < state.size(); i++) {
+      final double ex = fx[i] - state.fx()[i];
+      final double ey = fy[i] - state.fy()[i];
+      final double norm2 = state.fx()[i] * state.fx()[i] + state.fy()[i] * state.fy()[i];
+      sum += (ex * ex + ey * ey) / norm2;
+    }
+    return sqrt(sum / state.size());
+  }
+
+  /**
+   * @return the maximum relative error of the given forces against the ones currently stored on the state
+   */
+  private static double maxRelativeError(final NBodyState state, final double[] fx, final double[] fy) {
+    double max = 0;
+    for (int i = 0; i < state.size(); i++) {
+      final double ex = fx[i] - state.fx()[i];
+      final double ey = fy[i] - state.fy()[i];
+      final double norm2 = state.fx()[i] * state.fx()[i] + state.fy()[i] * state.fy()[i];
+      max = Math.max(max, sqrt((ex * ex + ey * ey) / norm2));
+    }
+    return max;
+  }
+}
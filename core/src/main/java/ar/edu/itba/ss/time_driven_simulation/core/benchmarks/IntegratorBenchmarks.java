@@ -0,0 +1,159 @@
+package ar.edu.itba.ss.time_driven_simulation.core.benchmarks;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.SolarSystem;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearForces;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.SymplecticScheme;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Benchmarks of the integrators of the Solar System, run over a ship flight from Earth or over the planets alone
+ */
+public class IntegratorBenchmarks {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  private static final double G = 6.693E-11;
+  private static final double SHIP_TAKE_OFF_V0 = 10000;
+  private static final double REFERENCE_DT = 10;
+  private static final double[] DTS = {25, 50, 100, 200, 400, 800, 1600};
+  private static final double[] PLANET_DTS = {100, 3600, SECONDS_PER_DAY, 4 * SECONDS_PER_DAY, 8 * SECONDS_PER_DAY};
+  private static final double PLANET_REFERENCE_DT = 1200; // divides every one of PLANET_DTS
+
+  private IntegratorBenchmarks() {
+  }
+
+  /**
+   * Prints the position error of the ship and of Earth after a flight of {@code days} days, for the position
+   * Verlet, each {@link SymplecticScheme} and the Gear Predictor Corrector of each order, over a range of dt,
+   * against Yoshida's 8th order scheme with a dt of 10 seconds. The ship takes off at the initial conditions.
+   * @param days the days flown
+   */
+  public static void symplecticErrors(final double days) {
+    final double time = days * SECONDS_PER_DAY;
+    final SolarSystem reference = flight(new SolarSystem(REFERENCE_DT, SymplecticScheme.YOSHIDA_8),
+            time, REFERENCE_DT);
+    final Vector2D referenceShip = shipPosition(reference);
+    final Vector2D referenceEarth = reference.getEarthPosition();
+
+    System.out.println("Integrator errors after " + days + " days, against yoshida8 with dt = " + REFERENCE_DT);
+    System.out.println("integrator\tdt\tforce_evals\tms\tship_error_m\tearth_error_m");
+    for (final double dt : DTS) {
+      report("verlet", 1, dt, new SolarSystem(dt), time, referenceShip, referenceEarth);
+      for (final SymplecticScheme scheme : SymplecticScheme.values()) {
+        report(scheme.toString(), scheme.weights().length, dt, new SolarSystem(dt, scheme), time,
+                referenceShip, referenceEarth);
+      }
+      for (int order = GearForces.MIN_ORDER; order <= GearForces.MAX_ORDER; order++) {
+        report("gear" + order, 1, dt, SolarSystem.withIntegrator("gear" + order, dt), time,
+                referenceShip, referenceEarth);
+      }
+    }
+  }
+
+  /**
+   * Prints the largest relative energy error, checked once a day, and Earth's position error at the end of
+   * {@code years} years of the Sun, Earth and Mars alone, for the position Verlet, the leapfrog and Wisdom-Holman
+   * over a range of dt, against Yoshida's 8th order scheme with a dt of 1200 seconds.
+   * The time flown is rounded up to a multiple of the longest dt.
+   * @param years the years flown
+   */
+  public static void wisdomHolmanErrors(final double years) {
+    final double longestDt = PLANET_DTS[PLANET_DTS.length - 1];
+    final double time = Math.ceil(years * 365.25 * SECONDS_PER_DAY / longestDt) * longestDt;
+    final SolarSystem reference = new SolarSystem(PLANET_REFERENCE_DT, SymplecticScheme.YOSHIDA_8);
+    evolve(reference, time, PLANET_REFERENCE_DT);
+    final Vector2D referenceEarth = reference.getEarthPosition();
+
+    System.out.println("Planet errors after " + time / SECONDS_PER_DAY + " days, against yoshida8 with dt = "
+            + PLANET_REFERENCE_DT);
+    System.out.println("integrator\tdt\tms\tmax_energy_rel_error\tearth_error_m");
+    for (final double dt : PLANET_DTS) {
+      planetReport("verlet", dt, new SolarSystem(dt), time, referenceEarth);
+      planetReport(SymplecticScheme.LEAPFROG.toString(), dt, new SolarSystem(dt, SymplecticScheme.LEAPFROG), time,
+              referenceEarth);
+      planetReport("wh", dt, SolarSystem.withWisdomHolman(dt), time, referenceEarth);
+    }
+  }
+
+  private static void planetReport(final String name, final double dt, final SolarSystem solarSystem,
+                                   final double time, final Vector2D referenceEarth) {
+    final double initialEnergy = energy(solarSystem);
+    final long stepsPerCheck = Math.max(1, Math.round(SECONDS_PER_DAY / dt));
+    double maxError = 0;
+    final long start = System.nanoTime();
+    for (long step = 1; step <= steps(time, dt); step++) {
+      solarSystem.evolveSystem();
+      if (step % stepsPerCheck == 0) {
+        maxError = Math.max(maxError, Math.abs((energy(solarSystem) - initialEnergy) / initialEnergy));
+      }
+    }
+    final double ms = (System.nanoTime() - start) / 1e6;
+
+    System.out.println(name + "\t" + dt + "\t" + String.format("%.1f", ms) + "\t"
+            + String.format("%.3e", maxError) + "\t"
+            + String.format("%.3e", distance(solarSystem.getEarthPosition(), referenceEarth)));
+  }
+
+  /**
+   * @return the kinetic plus the potential energy of the system's bodies
+   */
+  private static double energy(final SolarSystem solarSystem) {
+    final Particle[] particles = solarSystem.getParticles().toArray(new Particle[0]);
+    double energy = 0;
+    for (int i = 0; i < particles.length; i++) {
+      final Particle a = particles[i];
+      energy += a.mass() * (a.vx() * a.vx() + a.vy() * a.vy()) / 2;
+      for (int j = i + 1; j < particles.length; j++) {
+        final Particle b = particles[j];
+        energy -= G * a.mass() * b.mass() / distance(new Vector2D(a.x(), a.y()), new Vector2D(b.x(), b.y()));
+      }
+    }
+    return energy;
+  }
+
+  private static void report(final String name, final int evaluationsPerStep, final double dt,
+                             final SolarSystem solarSystem, final double time,
+                             final Vector2D referenceShip, final Vector2D referenceEarth) {
+    final long start = System.nanoTime();
+    flight(solarSystem, time, dt);
+    final double ms = (System.nanoTime() - start) / 1e6;
+
+    System.out.println(name + "\t" + dt + "\t" + steps(time, dt) * evaluationsPerStep + "\t"
+            + String.format("%.1f", ms) + "\t"
+            + String.format("%.3e", distance(shipPosition(solarSystem), referenceShip)) + "\t"
+            + String.format("%.3e", distance(solarSystem.getEarthPosition(), referenceEarth)));
+  }
+
+  private static SolarSystem flight(final SolarSystem solarSystem, final double time, final double dt) {
+    solarSystem.takeOff(SHIP_TAKE_OFF_V0, null);
+    evolve(solarSystem, time, dt);
+    return solarSystem;
+  }
+
+  private static void evolve(final SolarSystem solarSystem, final double time, final double dt) {
+    for (long step = steps(time, dt); step > 0; step--) {
+      solarSystem.evolveSystem();
+    }
+  }
+
+  private static long steps(final double time, final double dt) {
+    return Math.round(time / dt);
+  }
+
+  private static Vector2D shipPosition(final SolarSystem solarSystem) {
+    for (final Particle particle : solarSystem.getParticles()) {
+      if (particle.type() == ParticleType.SHIP) {
+        return new Vector2D(particle.x(), particle.y());
+      }
+    }
+    throw new IllegalStateException("The system has no ship");
+  }
+
+  private static double distance(final Vector2D a, final Vector2D b) {
+    final double dx = a.x() - b.x();
+    final double dy = a.y() - b.y();
+    return sqrt(dx * dx + dy * dy);
+  }
+}
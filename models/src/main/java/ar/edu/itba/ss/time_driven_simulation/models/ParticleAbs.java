@@ -3,6 +3,8 @@ package ar.edu.itba.ss.time_driven_simulation.models;
 import org.immutables.builder.Builder;
 import org.immutables.value.Value;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 @Value.Immutable
 @Value.Style(
         typeAbstract = "*Abs",
@@ -11,11 +13,12 @@ import org.immutables.value.Value;
 )
 public abstract class ParticleAbs {
 
-  private static long idGen = 1;
+  // atomic, so particles can be created from several threads, e.g., by parallel sweeps
+  private static final AtomicLong idGen = new AtomicLong(1);
 
   @Value.Default
   public long id() {
-    return idGen ++;
+    return idGen.getAndIncrement();
   }
 
   @Value.Default
@@ -177,6 +180,6 @@ public abstract class ParticleAbs {
 
   /* for testing purposes only */
   public static void resetIdGen() {
-    idGen = 0;
+    idGen.set(0);
   }
 }
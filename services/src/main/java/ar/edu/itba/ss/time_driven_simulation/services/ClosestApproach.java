@@ -0,0 +1,83 @@
+package ar.edu.itba.ss.time_driven_simulation.services;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Swept (continuous) distance checks between a ship and a body over a whole step, and the primitive snapshots
+ * of the system at the ship's closest approach.
+ * <P>
+ * Within a step, both bodies are taken to move along the straight segments joining their positions at the start and
+ * at the end of it, so their relative position is {@code r(s) = r0 + s (r1 - r0)}, with {@code s} in [0, 1].
+ * Its closest point to the origin is where a ship passing by, or through, a body gets the closest to it;
+ * so crossings that happen within a step are not missed, even when both ends of the step are far apart.
+ * At {@code s = 1}, every value is exactly the one at the end of the step.
+ */
+final class ClosestApproach {
+  static final int DYNAMIC_VALUES = 7; // x, y, vx, vy, fx, fy and age of a body at the closest approach
+
+  private ClosestApproach() {
+  }
+
+  /**
+   * @param rx0 the relative position at the start of the step
+   * @param rx1 the relative position at the end of the step
+   * @return the fraction of the step, in [0, 1], at which the relative position is the closest to the origin
+   */
+  static double closestFraction(final double rx0, final double ry0, final double rx1, final double ry1) {
+    final double dx = rx1 - rx0;
+    final double dy = ry1 - ry0;
+    final double length2 = dx * dx + dy * dy;
+    if (length2 == 0) {
+      return 1;
+    }
+    final double s = -(rx0 * dx + ry0 * dy) / length2;
+    return s >= 1 ? 1 : s <= 0 ? 0 : s;
+  }
+
+  /**
+   * @return the value at the fraction {@code s} of the step, exactly {@code start} or {@code end} at both ends
+   */
+  static double at(final double start, final double end, final double s) {
+    return s >= 1 ? end : s <= 0 ? start : start + s * (end - start);
+  }
+
+  /**
+   * @return the distance between the surfaces of two bodies at the fraction {@code s} of the step,
+   * given their relative position at its start and at its end
+   */
+  static double distance(final double rx0, final double ry0, final double rx1, final double ry1, final double s,
+                         final double radio, final double otherRadio) {
+    final double dx = at(rx0, rx1, s);
+    final double dy = at(ry0, ry1, s);
+    return sqrt(dx * dx + dy * dy) - radio - otherRadio;
+  }
+
+  static void save(final double[] values, final int offset, final double x, final double y,
+                   final double vx, final double vy, final double fx, final double fy, final double age) {
+    values[offset] = x;
+    values[offset + 1] = y;
+    values[offset + 2] = vx;
+    values[offset + 3] = vy;
+    values[offset + 4] = fx;
+    values[offset + 5] = fy;
+    values[offset + 6] = age;
+  }
+
+  static Particle particle(final long id, final ParticleType type, final double mass, final double radio,
+                           final double[] values, final int offset) {
+    return Particle.builder(values[offset], values[offset + 1])
+            .id(id)
+            .type(type)
+            .mass(mass)
+            .radio(radio)
+            .vx(values[offset + 2])
+            .vy(values[offset + 3])
+            .forceX(values[offset + 4])
+            .forceY(values[offset + 5])
+            .ageInDays(values[offset + 6])
+            .build();
+  }
+}
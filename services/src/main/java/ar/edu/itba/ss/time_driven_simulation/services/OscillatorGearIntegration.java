@@ -2,16 +2,16 @@ package ar.edu.itba.ss.time_driven_simulation.services;
 
 import ar.edu.itba.ss.time_driven_simulation.interfaces.Oscillator;
 import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearForces;
 
 import static java.lang.Math.pow;
 
 public class OscillatorGearIntegration implements Oscillator {
   // Variables related to the order of Gear Predictor Corrector
-  // Change this parameter to change the order of the algorithm
-  // You'll also have to change the order of the alpha values
-  private static final int ORDER = 5;
-  private static final int[] factorial = new int[ORDER + 1];
-  private static final double[] alpha = new double[ORDER + 1];
+  private static final int DEFAULT_ORDER = 5;
+  private final int order;
+  private final int[] factorial;
+  private final double[] alpha; // the oscillator is damped => forces depend on velocity
   private final double[] r;
   private final double[] rPredicted;
 
@@ -23,21 +23,24 @@ public class OscillatorGearIntegration implements Oscillator {
   // Oscillator's particle
   private Particle particle; //TODO: Integrate particle more to the system (currently I use r[0] for position and r[1] for speed
 
-  static {
-    for(int i = 0; i < ORDER + 1; i++) {
+  public OscillatorGearIntegration(final double mass, final double r, final double k, final double gamma, final double dt) {
+    this(mass, r, k, gamma, dt, DEFAULT_ORDER);
+  }
+
+  /**
+   * @param order the order of the Gear Predictor Corrector, from {@link GearForces#MIN_ORDER} to
+   *              {@link GearForces#MAX_ORDER}
+   * @throws IllegalArgumentException if the order is not within those bounds
+   */
+  public OscillatorGearIntegration(final double mass, final double r, final double k, final double gamma,
+                                   final double dt, final int order) {
+    this.order = order;
+    this.alpha = GearForces.VELOCITY_DEPENDENT.alphas(order);
+    this.factorial = new int[order + 1];
+    for(int i = 0; i < order + 1; i++) {
       factorial[i] = MathUtils.factorial(i);
     }
 
-    //Alpha values taken from theory powerpoint
-    alpha[0] = 3.0/16.0;
-    alpha[1] = 251.0/360.0;
-    alpha[2] = 1.0;
-    alpha[3] = 11.0/18.0;
-    alpha[4] = 1.0/6.0;
-    alpha[5] = 1.0/60.0;
-  }
-
-  public OscillatorGearIntegration(final double mass, final double r, final double k, final double gamma, final double dt) {
     // Save final parameters
     this.k = k;
     this.gamma = gamma;
@@ -52,18 +55,18 @@ public class OscillatorGearIntegration implements Oscillator {
             .build();
 
     // Initialize r[] values after creating the particle
-    this.r = new double[ORDER + 1];
+    this.r = new double[order + 1];
     rInitialize();
 
     // Initialize rPredicted[] that will be used in the evolution of the system
-    this.rPredicted = new double[ORDER + 1];
+    this.rPredicted = new double[order + 1];
   }
 
   private void rInitialize() {
     r[0] = particle.x();
     r[1] = particle.vx();
 
-    for(int i = 2; i < ORDER + 1; i++) {
+    for(int i = 2; i < order + 1; i++) {
       r[i] = (-k * r[i - 2] - gamma * r[i - 1]) / particle.mass();
     }
   }
@@ -78,9 +81,9 @@ public class OscillatorGearIntegration implements Oscillator {
   }
 
   private void rPredict() {
-    for(int i = ORDER; i >= 0; i--) {
+    for(int i = order; i >= 0; i--) {
       rPredicted[i] = 0.0;
-      for(int j = i, k = 0; j < ORDER + 1; j++, k++) {
+      for(int j = i, k = 0; j < order + 1; j++, k++) {
         rPredicted[i] += (r[j] * pow(dt, k) / factorial[k]);
       }
     }
@@ -97,7 +100,7 @@ public class OscillatorGearIntegration implements Oscillator {
   }
 
   private void rCorrect(final double r2Delta) {
-    for(int i = 0; i < ORDER + 1; i++) {
+    for(int i = 0; i < order + 1; i++) {
       r[i] = rPredicted[i] + alpha[i] * r2Delta * factorial[i] / pow(dt, i);
     }
   }
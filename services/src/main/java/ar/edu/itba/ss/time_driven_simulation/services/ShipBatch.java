@@ -0,0 +1,338 @@
+package ar.edu.itba.ss.time_driven_simulation.services;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Many ships flying at once among the bodies of a single {@link SolarSystem}, each one with its own take off.
+ * <P>
+ * Ships are test particles: they feel the Sun and the planets but neither those bodies nor each other, so the
+ * system is evolved only once per step for the whole batch, and ships are advanced by a single loop over flat
+ * primitive arrays. Each ship keeps track of its own crash and closest approach to the target, swept over each step
+ * as {@link SolarSystem#shipCrashed()} does; its state at that approach is stored as primitives, and only materialized
+ * as particles when asked for.
+ * <P>
+ * Ships are evolved exactly as a single ship taking off from a {@link SolarSystem} would be, except that they do not
+ * pull on the planets; in restricted mode that makes no difference at all.
+ */
+public class ShipBatch {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  private static final int DYNAMIC_VALUES = ClosestApproach.DYNAMIC_VALUES;
+
+  private final SolarSystem solarSystem;
+  private final NBodyState bodies;
+  private final ParticleType origin;
+  private final ParticleType target;
+  private final int sun;
+  private final int targetSlot;
+  private final int otherSlot; // the planet that is not the target, whose distance is also reported
+  private final double dt;
+
+  private int n;
+  private int flying;
+  private double mass;
+  private double radio;
+
+  // ship's values
+  private final long[] ids;
+  private final double[] x;
+  private final double[] y;
+  private final double[] prevX; // r(t-dt)
+  private final double[] prevY;
+  private final double[] vx;
+  private final double[] vy;
+  private final double[] fx;
+  private final double[] fy;
+  private final double[] ageInDays;
+  private final boolean[] active; // neither crashed nor pruned
+  private final boolean[] pruned;
+  private final ParticleType[] landedTo;
+  private final long[] steps;
+
+  // closest approach of each ship to the target
+  private final double[] minDistance;
+  private final double[] minOtherDistance;
+  private final double[] minTime;
+  private final double[] minShip; // ship's dynamic values
+  private final double[] minBodies; // every body's dynamic values, by slot
+  private final double[] approachOrbits = new double[6]; // scratch of SolarSystem#closestApproachBound
+
+  /**
+   * @param solarSystem the system at the take off day, without ship. It is evolved by the batch
+   * @param target the ships' destination, {@code MARS} or {@code EARTH}. They take off from the other one
+   * @param capacity the maximum amount of ships of the batch
+   */
+  public ShipBatch(final SolarSystem solarSystem, final ParticleType target, final int capacity) {
+    if (target != ParticleType.MARS && target != ParticleType.EARTH) {
+      throw new IllegalArgumentException("Target should be MARS or EARTH");
+    }
+    if (!solarSystem.isPositionVerlet()) {
+      throw new IllegalArgumentException("Ships can only be batched on systems evolved with position Verlet");
+    }
+    if (solarSystem.state().slotOf(ParticleType.SHIP) >= 0) {
+      throw new IllegalArgumentException("The system should not have a ship");
+    }
+    this.solarSystem = solarSystem;
+    this.bodies = solarSystem.state();
+    this.target = target;
+    this.origin = target == ParticleType.MARS ? ParticleType.EARTH : ParticleType.MARS;
+    this.sun = bodies.slotOf(ParticleType.SUN);
+    this.targetSlot = bodies.slotOf(target);
+    this.otherSlot = bodies.slotOf(origin);
+    this.dt = solarSystem.getDt();
+
+    ids = new long[capacity];
+    x = new double[capacity];
+    y = new double[capacity];
+    prevX = new double[capacity];
+    prevY = new double[capacity];
+    vx = new double[capacity];
+    vy = new double[capacity];
+    fx = new double[capacity];
+    fy = new double[capacity];
+    ageInDays = new double[capacity];
+    active = new boolean[capacity];
+    pruned = new boolean[capacity];
+    landedTo = new ParticleType[capacity];
+    steps = new long[capacity];
+    minDistance = new double[capacity];
+    minOtherDistance = new double[capacity];
+    minTime = new double[capacity];
+    minShip = new double[capacity * DYNAMIC_VALUES];
+    minBodies = new double[capacity * bodies.size() * DYNAMIC_VALUES];
+  }
+
+  /**
+   * Adds a ship taking off at the current step, as {@link SolarSystem#takeOff} or
+   * {@link SolarSystem#takeOffFromMars} would do it
+   * @param shipTakeOffV0 the take off speed
+   * @param shipTakeOffAngle the direction of the take off velocity
+   * @return the index of the ship on the batch
+   */
+  public int takeOff(final double shipTakeOffV0, final Vector2D shipTakeOffAngle) {
+    if (n == ids.length) {
+      throw new IllegalArgumentException("The batch is full");
+    }
+    final Particle ship = solarSystem.launchedShip(origin, shipTakeOffV0, shipTakeOffAngle);
+    mass = ship.mass();
+    radio = ship.radio();
+
+    final int i = n++;
+    ids[i] = ship.id();
+    x[i] = ship.x();
+    y[i] = ship.y();
+    vx[i] = ship.vx();
+    vy[i] = ship.vy();
+    prevX[i] = x[i] - vx[i] * dt; // prev: r(t-dt), estimated with Euler
+    prevY[i] = y[i] - vy[i] * dt;
+    ageInDays[i] = ship.ageInDays();
+    active[i] = true;
+    landedTo[i] = ParticleType.COMMON;
+    minDistance[i] = Double.MAX_VALUE;
+    minOtherDistance[i] = Double.MAX_VALUE;
+    saveClosestApproach(i, 1);
+    flying++;
+    return i;
+  }
+
+  /**
+   * Evolves the active ships and the system's bodies a {@code dt} time interval,
+   * and then checks whether each ship crashed
+   */
+  public void evolveSystem() {
+    final double[] bx = bodies.x();
+    final double[] by = bodies.y();
+    final double[] bodyMass = bodies.mass();
+    final int bodiesCount = bodies.size();
+    final double gMi = SolarSystem.G * mass;
+
+    final double dt2 = dt * dt;
+    final double twoDt = 2 * dt;
+    final double daysPerStep = dt / SECONDS_PER_DAY;
+    final double forceFactor = dt2 / mass;
+    for (int i = 0; i < n; i++) {
+      if (!active[i]) {
+        continue;
+      }
+      // f(t), caused by the bodies at r(t)
+      double forceX = 0;
+      double forceY = 0;
+      for (int j = 0; j < bodiesCount; j++) {
+        final double dx = bx[j] - x[i];
+        final double dy = by[j] - y[i];
+        final double distancePow2 = dx * dx + dy * dy;
+        final double forceModule = gMi * bodyMass[j] / distancePow2;
+        final double distance = sqrt(distancePow2);
+        forceX += forceModule * (dx / distance);
+        forceY += forceModule * (dy / distance);
+      }
+      fx[i] = forceX;
+      fy[i] = forceY;
+
+      // Verlet's position and velocity update
+      final double prevXi = prevX[i]; // r(t-dt)
+      final double prevYi = prevY[i];
+      prevX[i] = x[i]; // prev: r(t)
+      prevY[i] = y[i];
+      x[i] = 2 * x[i] - prevXi + forceX * forceFactor; // r(t+dt)
+      y[i] = 2 * y[i] - prevYi + forceY * forceFactor;
+      vx[i] = (x[i] - prevXi) / twoDt;
+      vy[i] = (y[i] - prevYi) / twoDt;
+      ageInDays[i] += daysPerStep;
+      steps[i]++;
+    }
+
+    solarSystem.evolveSystem();
+
+    for (int i = 0; i < n; i++) {
+      if (active[i] && crashed(i)) {
+        active[i] = false;
+        flying--;
+      }
+    }
+  }
+
+  /**
+   * Stops the active ships that cannot get closer to the target than {@code threshold} within {@code time} seconds,
+   * as bounded by {@link SolarSystem#closestApproachBound}
+   */
+  public void prune(final double threshold, final double time) {
+    for (int i = 0; i < n; i++) {
+      if (active[i] && SolarSystem.closestApproachBound(bodies, sun, targetSlot, otherSlot, x[i], y[i], vx[i], vy[i],
+              radio, distanceTo(i, targetSlot), time, threshold, approachOrbits) > threshold) {
+        active[i] = false;
+        pruned[i] = true;
+        flying--;
+      }
+    }
+  }
+
+  /**
+   * @return the amount of ships
+   */
+  public int size() {
+    return n;
+  }
+
+  /**
+   * @return the amount of ships that neither crashed nor were pruned
+   */
+  public int flying() {
+    return flying;
+  }
+
+  public boolean pruned(final int i) {
+    return pruned[i];
+  }
+
+  /**
+   * @return the amount of steps that the ship flew
+   */
+  public long steps(final int i) {
+    return steps[i];
+  }
+
+  /**
+   * @return the body where the ship landed, or {@code COMMON} if it did not land
+   */
+  public String landedTo(final int i) {
+    return landedTo[i].toString();
+  }
+
+  /**
+   * @return the closest approach of the ship to the target
+   */
+  public double minDistance(final int i) {
+    return minDistance[i];
+  }
+
+  /**
+   * Materializes the system at the closest approach of the ship to the target, with that ship only
+   * @return the same state a single ship's {@link SolarSystem#getMinDistanceToMarsSSState()} would return
+   */
+  public SolarSystem.SolarSystemState minDistanceState(final int i) {
+    final Collection<Particle> particles = new HashSet<>();
+    int offset = i * bodies.size() * DYNAMIC_VALUES;
+    for (int j = 0; j < bodies.size(); j++, offset += DYNAMIC_VALUES) {
+      particles.add(ClosestApproach.particle(bodies.ids()[j], bodies.types()[j], bodies.mass()[j],
+              bodies.radio()[j], minBodies, offset));
+    }
+    particles.add(ClosestApproach.particle(ids[i], ParticleType.SHIP, mass, radio, minShip, i * DYNAMIC_VALUES));
+
+    final boolean toMars = target == ParticleType.MARS;
+    return new SolarSystem.SolarSystemState(particles, toMars ? minDistance[i] : minOtherDistance[i],
+            toMars ? minOtherDistance[i] : minDistance[i], minTime[i]);
+  }
+
+  // private methods
+
+  /**
+   * Checks whether the ship has crashed against any body during the last step, keeping track of its closest approach
+   * to the target, in the same order and with the same swept distances as {@link SolarSystem#shipCrashed()}
+   */
+  private boolean crashed(final int i) {
+    for (int j = 0; j < bodies.size(); j++) {
+      final double s = closestFraction(i, j);
+      final double distance = sweptDistance(i, j, s);
+      if (j == targetSlot && minDistance[i] > distance) {
+        minDistance[i] = distance;
+        minOtherDistance[i] = sweptDistance(i, otherSlot, s);
+        saveClosestApproach(i, s);
+      }
+      if (distance <= 0) {
+        landedTo[i] = bodies.types()[j];
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private double distanceTo(final int i, final int j) {
+    final double dx = bodies.x()[j] - x[i];
+    final double dy = bodies.y()[j] - y[i];
+    return sqrt(dx * dx + dy * dy) - radio - bodies.radio()[j];
+  }
+
+  // the ship's r(t) is its prev position, since it was already evolved
+  private double closestFraction(final int i, final int j) {
+    final double[] startX = solarSystem.stepStartX();
+    final double[] startY = solarSystem.stepStartY();
+    return ClosestApproach.closestFraction(startX[j] - prevX[i], startY[j] - prevY[i],
+            bodies.x()[j] - x[i], bodies.y()[j] - y[i]);
+  }
+
+  private double sweptDistance(final int i, final int j, final double s) {
+    if (s >= 1) {
+      return distanceTo(i, j);
+    }
+    final double[] startX = solarSystem.stepStartX();
+    final double[] startY = solarSystem.stepStartY();
+    return ClosestApproach.distance(startX[j] - prevX[i], startY[j] - prevY[i],
+            bodies.x()[j] - x[i], bodies.y()[j] - y[i], s, radio, bodies.radio()[j]);
+  }
+
+  /**
+   * Saves the ship's and every body's values at the fraction {@code s} of the last step as the closest approach
+   */
+  private void saveClosestApproach(final int i, final double s) {
+    minTime[i] = solarSystem.getSimulatedTime() - (1 - s) * dt;
+    ClosestApproach.save(minShip, i * DYNAMIC_VALUES, ClosestApproach.at(prevX[i], x[i], s),
+            ClosestApproach.at(prevY[i], y[i], s), vx[i], vy[i], fx[i], fy[i], ageInDays[i]);
+    final double[] startX = solarSystem.stepStartX();
+    final double[] startY = solarSystem.stepStartY();
+    int offset = i * bodies.size() * DYNAMIC_VALUES;
+    for (int j = 0; j < bodies.size(); j++, offset += DYNAMIC_VALUES) {
+      final boolean swept = s < 1 && j < startX.length;
+      ClosestApproach.save(minBodies, offset, swept ? ClosestApproach.at(startX[j], bodies.x()[j], s) : bodies.x()[j],
+              swept ? ClosestApproach.at(startY[j], bodies.y()[j], s) : bodies.y()[j],
+              bodies.vx()[j], bodies.vy()[j], bodies.fx()[j], bodies.fy()[j], bodies.ageInDays()[j]);
+    }
+  }
+}
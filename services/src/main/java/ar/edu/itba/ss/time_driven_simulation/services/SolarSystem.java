@@ -3,36 +3,353 @@ package ar.edu.itba.ss.time_driven_simulation.services;
 import ar.edu.itba.ss.time_driven_simulation.models.Particle;
 import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
 import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.gear.GearNBodyEngine;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.AdaptiveLeapfrogEngine;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.AdaptiveStep;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.BlockStepEngine;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.GravityForceProvider;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.PairwiseGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ParallelPairwiseGravityForce;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.PlanetaryEphemeris;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyIntegrator;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.SymplecticNBodyEngine;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.SymplecticScheme;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.VerletNBodyEngine;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.WisdomHolmanEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.BiFunction;
 
 import static java.lang.Math.*;
 
 public class SolarSystem {
   private static final Logger LOGGER = LoggerFactory.getLogger(SolarSystem.class);
+  /**
+   * Names of the fixed step integrators, see {@link #withIntegrator(String, double)}
+   */
+  public static final List<String> INTEGRATORS = Collections.unmodifiableList(Arrays.asList(
+          "verlet", SymplecticScheme.LEAPFROG.toString(), SymplecticScheme.FOREST_RUTH.toString(),
+          SymplecticScheme.YOSHIDA_6.toString(), SymplecticScheme.YOSHIDA_8.toString(), "wh",
+          "gear2", "gear3", "gear4", "gear5", "gear6"));
+  private static final String GEAR = "gear"; // prefix of the integrators of the Gear Predictor Corrector
   private double dt;
   private static final double KM_TO_M = 1000.0;
-  private static final double G = 6.693E-11;
+  static final double G = 6.693E-11;
   private static final double SHIP_ORBITAL_V0 = 7.12 * KM_TO_M;
   private static final double SHIP_RADIUS = 1e2;
   private static final double SHIP_DISTANCE_TO_EARTH = 1500 * KM_TO_M;
   private static final int HOURS_PER_DAY = 24;
   private static final int SECONDS_PER_HOUR = 3600;
   private static final int SECONDS_PER_DAY = SECONDS_PER_HOUR * HOURS_PER_DAY;
-  private final Map<ParticleType, Particle> particles;
-  private final Map<Particle, ParticleData> posMap; // Map storing for each particle it's last two positions
+  private final VerletNBodyEngine engine; // flat primitive storage and position Verlet evolution of the bodies
+  private final NBodyIntegrator integrator; // null when evolved with position Verlet
+  private final NBodyState state;
   private double totalSimulatedTime;
+  private final PlanetaryEphemeris ephemeris; // null unless running in restricted mode
+  private final int planets; // amount of bodies driven by the ephemeris in restricted mode
+  private long step;
+  private double lastDt; // size of the last step
+
+  // positions of every body at the start of the last step, for the swept crash checks
+  private double[] stepStartX = new double[0];
+  private double[] stepStartY = new double[0];
 
-  private Particle[] solarSystem = new Particle[0];
   private ParticleType shipLandedTo = ParticleType.COMMON;
-  private SolarSystemState minDistanceToMarsSSState;
+  // closest approach so far, as primitives; only materialized as a SolarSystemState when asked for
+  private double minDistanceToMars = Double.MAX_VALUE;
+  private double minDistanceToEarth = Double.MAX_VALUE;
+  private double minDistanceTime;
+  private double[] minDistanceBodies; // every body's dynamic values, by slot
+  private int minDistanceBodiesCount;
+  private SolarSystemState minDistanceToMarsSSState; // null until asked for, or once the closest approach changes
+  private final double[] approachOrbits = new double[6]; // scratch of closestApproachBound
 
   public SolarSystem(final double dt){
+    this(dt, new PairwiseGravityForce());
+  }
+
+  /**
+   * @param dt the time step used to evolve the system
+   * @param forceProvider the strategy used to calculate the gravitational forces, e.g., the exact pairwise sum
+   *                      or a Barnes-Hut approximation for systems with many bodies
+   */
+  public SolarSystem(final double dt, final GravityForceProvider forceProvider){
+    this(dt, forceProvider, null);
+  }
+
+  /**
+   * Solar System whose force evaluation and Verlet update are split among {@code parallelism} threads
+   * once it has at least {@code parallelThreshold} bodies.
+   * Results are the same regardless of the amount of threads.
+   * @param dt the time step used to evolve the system
+   * @param parallelism the amount of threads to be used
+   * @param parallelThreshold the minimum amount of bodies from which the work is split among threads
+   */
+  public SolarSystem(final double dt, final int parallelism, final int parallelThreshold){
+    this(dt, new ChunkExecutor(parallelism, parallelThreshold));
+  }
+
+  private SolarSystem(final double dt, final ChunkExecutor executor){
+    this(dt, new ParallelPairwiseGravityForce(executor), executor);
+  }
+
+  /**
+   * Restricted Solar System: the Sun, Earth and Mars are not integrated, but read from the given ephemeris.
+   * Only the ship is evolved, as a test particle moving among them.
+   * <P>
+   * The ship's mass is negligible compared to the planets', so the ephemeris can be built once and shared read-only
+   * among any amount of systems, e.g., all the runs of a sweep.
+   * @param ephemeris the planets' ephemeris, built with {@link #ephemeris(double, double, int)}
+   */
+  public SolarSystem(final PlanetaryEphemeris ephemeris){
+    this(ephemeris.dt(), new PairwiseGravityForce(), null, ephemeris, null);
+  }
+
+  /**
+   * Solar System evolved with a fixed {@code dt} by a composition of leapfrog steps (see {@link SymplecticScheme}),
+   * instead of position Verlet: higher order schemes take several force evaluations per step, but reach the same
+   * error with much longer steps.
+   * @param dt the time step used to evolve the system
+   * @param scheme the integrator used at each step
+   */
+  public SolarSystem(final double dt, final SymplecticScheme scheme){
+    this(dt, new PairwiseGravityForce(), null, null,
+            (bodies, forceProvider) -> new SymplecticNBodyEngine(bodies, scheme, dt, G, forceProvider));
+  }
+
+  /**
+   * Restricted Solar System, as {@link #SolarSystem(PlanetaryEphemeris)}, whose ship is evolved as in
+   * {@link #SolarSystem(double, SymplecticScheme)}. The ephemeris is looked up at the end of each substep,
+   * which may be slightly before the start of the step or after its end
+   */
+  public SolarSystem(final PlanetaryEphemeris ephemeris, final SymplecticScheme scheme){
+    this(ephemeris.dt(), new PairwiseGravityForce(), null, ephemeris,
+            (bodies, forceProvider) -> new SymplecticNBodyEngine(bodies, scheme, ephemeris.dt(), G, forceProvider));
+  }
+
+  /**
+   * Solar System whose step size is picked at each step, as a fraction of the shortest timescale of its bodies:
+   * long steps during cruise, and short ones close to a planet. Bodies are evolved with the leapfrog, on
+   * time-symmetric steps, so its energy error stays bounded as with a fixed dt.
+   * <P>
+   * {@link #getDt()} is the longest step; see {@link #getLastDt()} and {@link #evolveSystem(double)}.
+   * @param steps the bounds and accuracy of the steps
+   */
+  public SolarSystem(final AdaptiveStep steps){
+    this(steps.maxDt(), new PairwiseGravityForce(), null, null,
+            (bodies, forceProvider) -> new AdaptiveLeapfrogEngine(bodies, steps, G, forceProvider));
+  }
+
+  /**
+   * Restricted Solar System, as {@link #SolarSystem(PlanetaryEphemeris)}, whose ship's steps are picked as in
+   * {@link #SolarSystem(AdaptiveStep)}. The ephemeris is looked up at the end of each step
+   */
+  public SolarSystem(final PlanetaryEphemeris ephemeris, final AdaptiveStep steps){
+    this(steps.maxDt(), new PairwiseGravityForce(), null, ephemeris,
+            (bodies, forceProvider) -> new AdaptiveLeapfrogEngine(bodies, steps, G, forceProvider));
+  }
+
+  /**
+   * Solar System whose bodies are evolved with block time steps (see {@link BlockStepEngine}): each one on its own
+   * power-of-two fraction of {@code steps.maxDt()}, picked as in {@link #SolarSystem(AdaptiveStep)} but for that body
+   * only. Each step of the system runs up to the next time where the step of any body ends, so the Sun and
+   * the planets take coarse steps while the ship takes fine ones close to a planet.
+   * <P>
+   * See {@link #getStepsPerLevel()}.
+   * @param steps the bounds and accuracy of the steps of each body
+   * @return the system at the initial conditions
+   */
+  public static SolarSystem withBlockSteps(final AdaptiveStep steps){
+    return new SolarSystem(steps.maxDt(), new PairwiseGravityForce(), null, null,
+            (bodies, forceProvider) -> new BlockStepEngine(bodies, steps, G));
+  }
+
+  /**
+   * Solar System evolved with the Wisdom-Holman method (see {@link WisdomHolmanEngine}): each body's orbit around
+   * the Sun is drifted exactly, and only the pulls among the planets and the ship are kicks, so the planets can take
+   * steps of days. Steps should still be short enough to resolve the ship's encounters with the planets.
+   * @param dt the time step used to evolve the system
+   * @return the system at the initial conditions
+   */
+  public static SolarSystem withWisdomHolman(final double dt){
+    return new SolarSystem(dt, new PairwiseGravityForce(), null, null,
+            (bodies, forceProvider) -> new WisdomHolmanEngine(bodies, dt, G));
+  }
+
+  /**
+   * Restricted Solar System, as {@link #SolarSystem(PlanetaryEphemeris)}, whose ship is evolved as in
+   * {@link #withWisdomHolman(double)}, around the ephemeris' Sun
+   * @return the system at the initial conditions
+   */
+  public static SolarSystem withWisdomHolman(final PlanetaryEphemeris ephemeris){
+    return new SolarSystem(ephemeris.dt(), new PairwiseGravityForce(), null, ephemeris,
+            (bodies, forceProvider) -> new WisdomHolmanEngine(bodies, ephemeris.dt(), G));
+  }
+
+  /**
+   * Solar System evolved with a fixed {@code dt} by the given integrator, one of {@link #INTEGRATORS}:
+   * {@code verlet} (position Verlet), the name of a {@link SymplecticScheme}, {@code wh}
+   * (see {@link #withWisdomHolman(double)}) or {@code gear<order>}, the Gear Predictor Corrector of that order,
+   * from 2 to 6 (see {@link GearNBodyEngine})
+   * @param integrator the integrator's name
+   * @param dt the time step used to evolve the system
+   * @return the system at the initial conditions
+   * @throws IllegalArgumentException if the integrator is unknown
+   */
+  public static SolarSystem withIntegrator(final String integrator, final double dt){
+    final int gearOrder = gearOrder(integrator);
+    if (gearOrder > 0) {
+      return new SolarSystem(dt, new PairwiseGravityForce(), null, null,
+              (bodies, forceProvider) -> new GearNBodyEngine(bodies, gearOrder, dt, G));
+    }
+    switch (integrator) {
+      case "verlet":
+        return new SolarSystem(dt);
+      case "wh":
+        return withWisdomHolman(dt);
+      default:
+        return new SolarSystem(dt, SymplecticScheme.fromName(integrator));
+    }
+  }
+
+  /**
+   * Solar System as {@link #withIntegrator(String, double)}, whose steps are split among {@code parallelism}
+   * threads once it has at least {@code parallelThreshold} bodies: the force evaluation of {@code verlet} and of the
+   * {@link SymplecticScheme}s, and the predict, evaluate and fix steps of {@code gear<order>}.
+   * {@code wh} is always run on the calling thread.
+   * Results are the same regardless of the amount of threads.
+   * @param parallelism the amount of threads to be used
+   * @param parallelThreshold the minimum amount of bodies from which the work is split among threads
+   * @throws IllegalArgumentException if the integrator is unknown
+   */
+  public static SolarSystem withIntegrator(final String integrator, final double dt, final int parallelism,
+                                           final int parallelThreshold){
+    if (integrator.equals("wh")) {
+      return withWisdomHolman(dt);
+    }
+    final int gearOrder = gearOrder(integrator);
+    // null for verlet; looked up before building the executor, so that unknown integrators fail right away
+    final SymplecticScheme scheme = gearOrder > 0 || integrator.equals("verlet") ? null
+            : SymplecticScheme.fromName(integrator);
+    final ChunkExecutor executor = new ChunkExecutor(parallelism, parallelThreshold);
+    if (gearOrder > 0) {
+      return new SolarSystem(dt, new ParallelPairwiseGravityForce(executor), executor, null,
+              (bodies, forceProvider) -> new GearNBodyEngine(bodies, gearOrder, dt, G, executor));
+    }
+    if (scheme == null) {
+      return new SolarSystem(dt, executor);
+    }
+    return new SolarSystem(dt, new ParallelPairwiseGravityForce(executor), executor, null,
+            (bodies, forceProvider) -> new SymplecticNBodyEngine(bodies, scheme, dt, G, forceProvider));
+  }
+
+  /**
+   * Restricted Solar System, as {@link #SolarSystem(PlanetaryEphemeris)}, whose ship is evolved by the given
+   * integrator, as in {@link #withIntegrator(String, double)}
+   * @throws IllegalArgumentException if the integrator is unknown
+   */
+  public static SolarSystem withIntegrator(final String integrator, final PlanetaryEphemeris ephemeris){
+    final int gearOrder = gearOrder(integrator);
+    if (gearOrder > 0) {
+      return new SolarSystem(ephemeris.dt(), new PairwiseGravityForce(), null, ephemeris,
+              (bodies, forceProvider) -> new GearNBodyEngine(bodies, gearOrder, ephemeris.dt(), G));
+    }
+    switch (integrator) {
+      case "verlet":
+        return new SolarSystem(ephemeris);
+      case "wh":
+        return withWisdomHolman(ephemeris);
+      default:
+        return new SolarSystem(ephemeris, SymplecticScheme.fromName(integrator));
+    }
+  }
+
+  /**
+   * @return the order of the given Gear Predictor Corrector integrator; -1 if it is not one of them
+   */
+  private static int gearOrder(final String integrator) {
+    return integrator.startsWith(GEAR) && INTEGRATORS.contains(integrator)
+            ? Integer.parseInt(integrator.substring(GEAR.length())) : -1;
+  }
+
+  private SolarSystem(final double dt, final GravityForceProvider forceProvider, final ChunkExecutor executor){
+    this(dt, forceProvider, executor, null, null);
+  }
+
+  /**
+   * @param integrator builds the engine that evolves the bodies' state with the given force provider;
+   *                   null to evolve it with position Verlet
+   */
+  private SolarSystem(final double dt, final GravityForceProvider forceProvider, final ChunkExecutor executor,
+                      final PlanetaryEphemeris ephemeris,
+                      final BiFunction<NBodyState, GravityForceProvider, NBodyIntegrator> integrator){
     this.dt = dt;
+    this.lastDt = dt;
     this.totalSimulatedTime = 0;
+    this.ephemeris = ephemeris;
+
+    this.engine = new VerletNBodyEngine(dt, G, forceProvider, executor);
+    this.state = engine.state();
+    this.integrator = integrator == null ? null : integrator.apply(state, forceProvider);
+
+    final Particle[] blueBodies = blueBodies();
+    this.planets = blueBodies.length;
+
+    addParticlesToSolarSystem(blueBodies);
+
+    minDistanceBodies = new double[state.size() * ClosestApproach.DYNAMIC_VALUES];
+    saveClosestApproach(1);
+  }
+
+  private SolarSystem(final SolarSystem other){
+    this.dt = other.dt;
+    this.totalSimulatedTime = other.totalSimulatedTime;
+    this.ephemeris = other.ephemeris;
+    this.planets = other.planets;
+    this.step = other.step;
+    this.lastDt = other.lastDt;
+    this.engine = other.engine.fork();
+    this.state = engine.state();
+    this.integrator = other.integrator == null ? null : other.integrator.fork(state);
+    this.stepStartX = other.stepStartX.clone();
+    this.stepStartY = other.stepStartY.clone();
+    this.shipLandedTo = other.shipLandedTo;
+    this.minDistanceToMars = other.minDistanceToMars;
+    this.minDistanceToEarth = other.minDistanceToEarth;
+    this.minDistanceTime = other.minDistanceTime;
+    this.minDistanceBodies = other.minDistanceBodies.clone();
+    this.minDistanceBodiesCount = other.minDistanceBodiesCount;
+    this.minDistanceToMarsSSState = other.minDistanceToMarsSSState;
+  }
+
+  /**
+   * Snapshots the system at its current step. The returned copy holds its own bodies, including their
+   * Verlet r(t-dt) history, so it evolves exactly as this one would, without affecting it.
+   * <P>
+   * Useful for sweeps: one system can be evolved up to each take off day, and every trajectory forked from it.
+   * In restricted mode, the ephemeris is shared by both systems.
+   * @return an independent copy of this system
+   */
+  public SolarSystem fork(){
+    return new SolarSystem(this);
+  }
 
+  /**
+   * Integrates once the Sun, Earth and Mars, without ship, to be shared by restricted systems.
+   * @param dt the time step used to evolve the planets
+   * @param span the time, in seconds, that the ephemeris should cover
+   * @param sampleSteps the amount of steps between stored samples
+   * @return the planets' ephemeris
+   */
+  public static PlanetaryEphemeris ephemeris(final double dt, final double span, final int sampleSteps) {
+    return new PlanetaryEphemeris(dt, span, sampleSteps, G, blueBodies());
+  }
+
+  private static Particle[] blueBodies() {
     final Particle sun = Particle.builder(0, 0)
             .mass(1.988E30)
             .vx(0)
@@ -58,290 +375,416 @@ public class SolarSystem {
             .type(ParticleType.MARS)
             .build();
 
-    this.posMap = new HashMap<>();
-    this.particles = new HashMap<>(4);
-
-//    this.solarSystem = new Particle[]{sun, earth, mars};
-
-    final Particle[] blueBodies = new Particle[]{sun, earth, mars};
-
-    addParticlesToSolarSystem(blueBodies);
-
-    minDistanceToMarsSSState = new SolarSystemState(particles.values(), Double.MAX_VALUE, Double.MAX_VALUE, totalSimulatedTime);
-
-    // NOTE: After this cycle do not use sun, earth, etc. local variables since they have old
-    // content (Because they are inmutables). Use solarSystem[] instead.
+    return new Particle[]{sun, earth, mars};
   }
 
   private void addParticlesToSolarSystem(final Particle... particles) {
-    final int prevLength = solarSystem.length;
-    Particle[] updatedSystem = Arrays.copyOf(solarSystem, solarSystem.length + particles.length);
-
-    // Calculate the initial forces over each new particle of the system
-    Vector2D[] forces = new Vector2D[particles.length];
-    for (int i = prevLength, j = 0 ; i < updatedSystem.length ; i++, j++) {
-      updatedSystem[i] = particles[j]; // add particle to solar system
-      forces[j] = totalForce(particles[j]); // calculate it's initial force
-    }
-
-    solarSystem = updatedSystem; // update the Solar System
-
-    // Assign f(0) to all particles and save r(-dt) in positionMap (Same as in Verlet's Algorithm)
-    for (int i = prevLength, j = 0 ; i < updatedSystem.length ; i++, j++) {
-      solarSystem[i] = solarSystem[i].withForceX(forces[j].x()).withForceY(forces[j].y());
-      Vector2D prev = initialPosition(solarSystem[i]);
-      this.posMap.put(solarSystem[i], new ParticleData(prev)); // prev: r(t-dt)
-      this.particles.put(solarSystem[i].type(), solarSystem[i]);
+    // Calculates f(0) of each new particle and saves r(-dt) (Same as in Verlet's Algorithm)
+    engine.addBodies(particles);
+    if (integrator != null) {
+      if (ephemeris != null) { // the planets' values are the ephemeris', not the Verlet engine's
+        ephemeris.stateAt(totalSimulatedTime, state);
+      }
+      integrator.bodiesAdded(ephemeris == null ? 0 : planets);
     }
   }
 
-  public SolarSystemState getMinDistanceToMarsSSState() {
-    return minDistanceToMarsSSState;
+  /**
+   * Adds extra bodies to the system, e.g., asteroids or debris of type {@link ParticleType#COMMON}
+   * @param particles the particles to be added
+   */
+  public void addBodies(final Particle... particles) {
+    addParticlesToSolarSystem(particles);
   }
 
-  public void evolveSystem(){
-    Particle p1;
-    Particle[] updatedSystem = new Particle[solarSystem.length];
-    Vector2D force;
-
-    // Evolve system using verlet's algorithm
-    for (int i=0; i<solarSystem.length; i++){
-      p1 = solarSystem[i];
-      force = totalForce(p1);
-      p1 = p1.withForceX(force.x()).withForceY(force.y());
-      final Vector2D newPosition = calculatePosition(p1);
-      p1 = p1.withX(newPosition.x()).withY(newPosition.y());
-      final Vector2D newVelocity = calculateVelocity(p1);
-      p1 = p1.withVx(newVelocity.x()).withVy(newVelocity.y());
-      p1 = p1.withAgeInDays(p1.ageInDays()+dt/SECONDS_PER_DAY);
-      updatedSystem[i] = p1;
-      particles.put(p1.type(), p1);
-    }
-    solarSystem = updatedSystem;
-    totalSimulatedTime += dt;
+  /**
+   * @return the time step; the longest one if stepping adaptively
+   */
+  public double getDt() {
+    return dt;
   }
 
-  private Vector2D totalForce(Particle p1){
-    Particle p2;
-    Vector2D force = new Vector2D(0,0);
-
-    // Add the gravitational force of all other particles in the system
-    for (final Particle aSolarSystem : solarSystem) {
-      p2 = aSolarSystem;
-      if (!p1.equals(p2)) {
-        force.add(calculateForce(p1, p2));
-      }
-    }
-    return force;
+  /**
+   * @return the size of the last step; {@link #getDt()} unless stepping adaptively
+   */
+  public double getLastDt() {
+    return lastDt;
   }
 
-  // Calculate Force caused in P1 by P2
-  private Vector2D calculateForce(Particle p1, Particle p2) {
-    double distancePow2 = Math.pow(p2.x()-p1.x(), 2) +  Math.pow(p2.y()-p1.y(), 2);
-    double forceModule = G * p1.mass() * p2.mass() / distancePow2;
-
-    double distance = Math.sqrt(distancePow2);
-    Vector2D normalVersor = new Vector2D(p2.x()- p1.x(), p2.y()-p1.y());
-    normalVersor.div(distance); // Normalize Vector
+  /**
+   * @return true if the size of each step is picked as it is run
+   */
+  public boolean isAdaptive() {
+    return integrator instanceof AdaptiveLeapfrogEngine || integrator instanceof BlockStepEngine;
+  }
 
-    return new Vector2D(forceModule * normalVersor.x(), forceModule * normalVersor.y());
+  /**
+   * @return true if the bodies are evolved with position Verlet, i.e., a fixed dt and velocities lagging a step
+   */
+  public boolean isPositionVerlet() {
+    return integrator == null;
   }
 
-  private Vector2D calculatePosition(Particle particle) {
-    final ParticleData data = posMap.get(particle);
-    Vector2D prevPosition = data.getPrevPosition();
+  /**
+   * @return the amount of steps run on each level of block time steps, by level, where level {@code l} steps
+   * {@code getDt() / 2^l} seconds; an empty array unless running with block time steps
+   */
+  public long[] getStepsPerLevel() {
+    return integrator instanceof BlockStepEngine ?
+            ((BlockStepEngine) integrator).stepsPerLevel() : new long[0];
+  }
 
-    final Vector2D currentPosition = new Vector2D(particle.x(), particle.y());
-    final Vector2D forceFactor = new Vector2D(particle.forceX(), particle.forceY());
+  /**
+   * @return the time simulated since the initial conditions, in seconds
+   */
+  public double getSimulatedTime() {
+    return totalSimulatedTime;
+  }
 
-    // Change the prevPosition to previous's previous && add the current position as prevPosition
-    posMap.put(particle, data.updatePrevPositions(new Vector2D(currentPosition), prevPosition)); // prev: r(t), prevPrev: r(t-dt)
+  /**
+   * @return the flat storage of the system's bodies
+   */
+  NBodyState state() {
+    return state;
+  }
 
-    forceFactor.times( (dt * dt) / (particle.mass()) );
-    currentPosition.times(2).sub(prevPosition).add(forceFactor);
+  /**
+   * @return the positions of every body at the start of the last step, by slot. Bodies added since then are missing
+   */
+  double[] stepStartX() {
+    return stepStartX;
+  }
 
-    return currentPosition;
+  double[] stepStartY() {
+    return stepStartY;
   }
 
-  private Vector2D calculateVelocity(Particle particle){
-    final Vector2D currentPosition = new Vector2D(particle.x(), particle.y()); // current: r(t+dt)
-    final Vector2D prevPosition = posMap.get(particle).getPrevPrev(); // prevPrev: r(t-dt)
+  /**
+   * Materializes the system at the ship's closest approach to the target of {@link #shipCrashed()} or
+   * {@link #shipCrashedEarth()}. Positions are the ones at that approach, within its step; velocities, forces and
+   * ages are the ones at the end of that step
+   */
+  public SolarSystemState getMinDistanceToMarsSSState() {
+    if (minDistanceToMarsSSState == null) {
+      final Collection<Particle> particles = new HashSet<>();
+      for (int i = 0, offset = 0; i < minDistanceBodiesCount; i++, offset += ClosestApproach.DYNAMIC_VALUES) {
+        particles.add(ClosestApproach.particle(state.ids()[i], state.types()[i], state.mass()[i], state.radio()[i],
+                minDistanceBodies, offset));
+      }
+      minDistanceToMarsSSState = new SolarSystemState(particles, minDistanceToMars, minDistanceToEarth,
+              minDistanceTime);
+    }
+    return minDistanceToMarsSSState;
+  }
 
-    return currentPosition.sub(prevPosition).div(2*dt);
+  public void evolveSystem(){
+    evolveSystem(Double.MAX_VALUE);
   }
 
   /**
-   * Use Euler to calculate initial position in time = -dt
-   * @return vector of initial position to time -dt
+   * Evolves the system a single step
+   * @param maxDt the longest step to take when stepping adaptively, e.g., to stop exactly at a given time.
+   *              Fixed and block steps are never shortened
    */
-  private Vector2D initialPosition(Particle particle) {
-    final Vector2D currentPosition = new Vector2D(particle.x(), particle.y());
-    final Vector2D velocityFactor = new Vector2D(particle.vx(), particle.vy());
-
-    return currentPosition.sub(velocityFactor.times(dt));
+  public void evolveSystem(final double maxDt){
+    final int bodies = state.size();
+    if (stepStartX.length != bodies) {
+      stepStartX = new double[bodies];
+      stepStartY = new double[bodies];
+    }
+    System.arraycopy(state.x(), 0, stepStartX, 0, bodies);
+    System.arraycopy(state.y(), 0, stepStartY, 0, bodies);
+
+    if (integrator != null) {
+      lastDt = ephemeris == null ? integrator.evolve(maxDt)
+              : integrator.evolveTestParticles(planets, ephemeris, totalSimulatedTime, maxDt);
+      totalSimulatedTime += lastDt;
+      return;
+    }
+    // Evolve system using verlet's algorithm
+    if (ephemeris == null) {
+      engine.evolve();
+    } else {
+      // restricted mode => only the ship moves by itself; the planets are read at the new time
+      engine.evolveTestParticles(planets);
+      ephemeris.stateAt(++step * dt, state);
+    }
+    totalSimulatedTime += dt;
   }
 
   public boolean shipCrashed() {
-    final Particle ship = particles.get(ParticleType.SHIP);
-    if (ship == null) { // there is no ship or it hasn't taken off yet
+    return shipCrashed(ParticleType.MARS);
+  }
+
+  public boolean shipCrashedEarth() {
+    return shipCrashed(ParticleType.EARTH);
+  }
+
+  /**
+   * Checks whether the ship has crashed against any body during the last step, keeping track of the closest
+   * approach to {@code target}.
+   * <P>
+   * Distances are swept over the whole step (see {@link ClosestApproach}), so a ship that goes through a body
+   * within a single step crashes against it, and the closest approach is not limited to the ends of the steps.
+   * Nothing is allocated: the approach is saved as primitives, see {@link #getMinDistanceToMarsSSState()}
+   * @param target the body whose closest approach is kept
+   * @return true if the ship has crashed; false otherwise
+   */
+  private boolean shipCrashed(final ParticleType target) {
+    final int ship = state.slotOf(ParticleType.SHIP);
+    if (ship < 0) { // there is no ship or it hasn't taken off yet
       return false;
     }
+    final boolean toMars = target == ParticleType.MARS;
+    final int other = state.slotOf(toMars ? ParticleType.EARTH : ParticleType.MARS);
 
-    double distance;
-    for (Particle particle : particles.values()) {
-      if (ship.equals(particle)) {
+    for (int i = 0; i < state.size(); i++) {
+      if (i == ship) {
         continue;
       }
 
-      distance = distanceBetween(ship, particle);
-      if (particle.type() == ParticleType.MARS && minDistanceToMarsSSState.distanceToMars > distance) {
-        final Particle earth = particles.get(ParticleType.EARTH);
-        double distanceToEarth = distanceBetween(ship, earth);
-        minDistanceToMarsSSState = new SolarSystemState(new HashSet<>(particles.values()),
-                distance, distanceToEarth, totalSimulatedTime);
+      final double s = closestFraction(ship, i);
+      final double distance = sweptDistance(ship, i, s);
+      if (state.types()[i] == target && (toMars ? minDistanceToMars : minDistanceToEarth) > distance) {
+        final double otherDistance = sweptDistance(ship, other, s);
+        minDistanceToMars = toMars ? distance : otherDistance;
+        minDistanceToEarth = toMars ? otherDistance : distance;
+        saveClosestApproach(s);
       }
       if (distance <= 0) {
-        shipLandedTo = particle.type();
+        shipLandedTo = state.types()[i];
         return true;
       }
     }
     return false;
   }
 
-  public boolean shipCrashedEarth() {
-    final Particle ship = particles.get(ParticleType.SHIP);
-    if (ship == null) { // there is no ship or it hasn't taken off yet
-      return false;
+  /**
+   * @return the fraction of the last step at which bodies {@code i} and {@code j} were the closest;
+   * 1 if any of them was added after the step started
+   */
+  private double closestFraction(final int i, final int j) {
+    if (i >= stepStartX.length || j >= stepStartX.length) {
+      return 1;
     }
+    return ClosestApproach.closestFraction(stepStartX[j] - stepStartX[i], stepStartY[j] - stepStartY[i],
+            state.x()[j] - state.x()[i], state.y()[j] - state.y()[i]);
+  }
 
-    double distance;
-    for (Particle particle : particles.values()) {
-      if (ship.equals(particle)) {
-        continue;
-      }
+  private double sweptDistance(final int i, final int j, final double s) {
+    if (s >= 1) {
+      return distanceBetween(i, j);
+    }
+    return ClosestApproach.distance(stepStartX[j] - stepStartX[i], stepStartY[j] - stepStartY[i],
+            state.x()[j] - state.x()[i], state.y()[j] - state.y()[i], s, state.radio()[i], state.radio()[j]);
+  }
 
-      distance = distanceBetween(ship, particle);
-      if (particle.type() == ParticleType.EARTH && minDistanceToMarsSSState.distanceToEarth > distance) {
-        final Particle mars = particles.get(ParticleType.MARS);
-        double distanceToMars = distanceBetween(ship, mars);
-        minDistanceToMarsSSState = new SolarSystemState(new HashSet<>(particles.values()),
-                distanceToMars, distance, totalSimulatedTime);
-      }
-      if (distance <= 0) {
-        shipLandedTo = particle.type();
-        return true;
-      }
+  /**
+   * Saves every body's values at the fraction {@code s} of the last step as the closest approach
+   */
+  private void saveClosestApproach(final double s) {
+    final int bodies = state.size();
+    if (minDistanceBodies.length < bodies * ClosestApproach.DYNAMIC_VALUES) {
+      minDistanceBodies = new double[bodies * ClosestApproach.DYNAMIC_VALUES];
     }
-    return false;
+    minDistanceBodiesCount = bodies;
+    minDistanceTime = totalSimulatedTime - (1 - s) * lastDt;
+    for (int i = 0, offset = 0; i < bodies; i++, offset += ClosestApproach.DYNAMIC_VALUES) {
+      final boolean swept = s < 1 && i < stepStartX.length;
+      ClosestApproach.save(minDistanceBodies, offset,
+              swept ? ClosestApproach.at(stepStartX[i], state.x()[i], s) : state.x()[i],
+              swept ? ClosestApproach.at(stepStartY[i], state.y()[i], s) : state.y()[i],
+              state.vx()[i], state.vy()[i], state.fx()[i], state.fy()[i], state.ageInDays()[i]);
+    }
+    minDistanceToMarsSSState = null;
   }
 
-  private double distanceBetween(final Particle p1, final Particle p2) {
-    return sqrt(pow(p2.x() - p1.x(), 2) + pow(p2.y() - p1.y(), 2)) - p1.radio() - p2.radio();
+  /**
+   * Lower bound of the distance between the ship and {@code target} over the next {@code time} seconds, good enough
+   * to tell whether the ship can still get closer than {@code threshold}.
+   * <P>
+   * The center distance cannot shrink faster than the relative speed allows, so it is bounded from below both by
+   * {@code d - |v| t - a t^2 / 2} and by {@code d - (vs + vt) t}, where {@code a} bounds the relative acceleration
+   * and {@code vs}, {@code vt} the speeds of the ship and the target. The Sun's part of those bounds comes from the
+   * heliocentric Kepler orbits of both bodies: neither gets closer to the Sun than its perihelion, nor faster than
+   * there. The ship is also pulled by both planets:
+   * <ul>
+   *   <li>by the target, as much as it does at {@code threshold} from its surface, since the ship cannot get closer
+   *   than that before the bound is already below {@code threshold}. Its speed gains at most the target's escape
+   *   speed at that distance</li>
+   *   <li>by the planet it took off from, as much as it does at the border of its sphere of influence. The distance
+   *   to that planet is bounded from below in the same way, and there is no bound at all if the ship may be within
+   *   its sphere of influence at any time of the next {@code time} seconds</li>
+   * </ul>
+   * Until the ship gets closer than those distances to either planet, the pulls are bounded as above, and so are
+   * both distances; so it never does. Thus, the returned value is a lower bound of the distance whenever it is above
+   * {@code threshold}.
+   * @param target the body whose distance to the ship is bounded
+   * @param time the time, in seconds, to look ahead
+   * @param threshold the distance that the ship should still be able to reach
+   * @return the lower bound; 0 if there is no ship, or if it may be within the sphere of influence of its origin
+   * within {@code time} seconds
+   */
+  public double closestApproachBound(final ParticleType target, final double time, final double threshold) {
+    final int ship = state.slotOf(ParticleType.SHIP);
+    if (ship < 0) {
+      return 0;
+    }
+    final int other = state.slotOf(target);
+    final int origin = state.slotOf(target == ParticleType.MARS ? ParticleType.EARTH : ParticleType.MARS);
+    return closestApproachBound(state, state.slotOf(ParticleType.SUN), other, origin,
+            state.x()[ship], state.y()[ship], state.vx()[ship], state.vy()[ship], state.radio()[ship],
+            distanceBetween(ship, other), time, threshold, approachOrbits);
   }
 
-  public String shipLandedTo() {
-    return shipLandedTo.toString();
+  /**
+   * {@link #closestApproachBound(ParticleType, double, double)} of a ship that is not stored on {@code bodies}
+   * @param bodies the bodies among which the ship moves
+   * @param sun the slot of the Sun
+   * @param target the slot of the body whose distance to the ship is bounded
+   * @param origin the slot of the planet that the ship took off from
+   * @param radio the ship's radio
+   * @param distance the current distance between the ship and the target
+   * @param orbits where the perihelion and the speed there of the ship, the target and the origin are saved, at
+   *               {@code [0, 1]}, {@code [2, 3]} and {@code [4, 5]} respectively; it holds no value on return
+   */
+  static double closestApproachBound(final NBodyState bodies, final int sun, final int target, final int origin,
+                                     final double x, final double y, final double vx, final double vy,
+                                     final double radio, final double distance, final double time,
+                                     final double threshold, final double[] orbits) {
+    final double mu = G * bodies.mass()[sun];
+
+    // sphere of influence of the origin, whose radio is a (m / M)^(2/5) for a planet at a from the Sun
+    final double originToSunX = bodies.x()[origin] - bodies.x()[sun];
+    final double originToSunY = bodies.y()[origin] - bodies.y()[sun];
+    final double influence = sqrt(originToSunX * originToSunX + originToSunY * originToSunY)
+            * pow(bodies.mass()[origin] / bodies.mass()[sun], 0.4);
+    final double muOrigin = G * bodies.mass()[origin];
+    final double muTarget = G * bodies.mass()[target];
+    final double closest = threshold + bodies.radio()[target] + radio; // center distance
+
+    perihelion(x, y, vx, vy, bodies, sun, mu, orbits, 0);
+    perihelion(bodies.x()[target], bodies.y()[target], bodies.vx()[target], bodies.vy()[target], bodies, sun, mu,
+            orbits, 2);
+    perihelion(bodies.x()[origin], bodies.y()[origin], bodies.vx()[origin], bodies.vy()[origin], bodies, sun, mu,
+            orbits, 4);
+    final double shipAcceleration = mu / (orbits[0] * orbits[0])
+            + muTarget / (closest * closest) + muOrigin / (influence * influence);
+    final double shipSpeed = orbits[1] + sqrt(2 * muTarget / closest) + sqrt(2 * muOrigin / influence);
+
+    final double originDx = bodies.x()[origin] - x;
+    final double originDy = bodies.y()[origin] - y;
+    final double originApproach = approach(bodies, origin, vx, vy,
+            shipAcceleration + mu / (orbits[4] * orbits[4]), shipSpeed + orbits[5], time);
+    if (sqrt(originDx * originDx + originDy * originDy) - originApproach < influence) {
+      return 0;
+    }
+    return distance - approach(bodies, target, vx, vy, shipAcceleration + mu / (orbits[2] * orbits[2]),
+            shipSpeed + orbits[3], time);
   }
 
-  public void takeOff(final double shipTakeOffV0, final Vector2D shipTakeOffAngle) {
-    final Particle earth = particles.get(ParticleType.EARTH);
-    final Particle sun = particles.get(ParticleType.SUN);
+  /**
+   * @return how much the center distance between the ship and the given body can shrink within {@code time} seconds
+   */
+  private static double approach(final NBodyState bodies, final int body, final double vx, final double vy,
+                                 final double maxAcceleration, final double maxSpeed, final double time) {
+    final double dvx = bodies.vx()[body] - vx;
+    final double dvy = bodies.vy()[body] - vy;
+    final double relativeSpeed = sqrt(dvx * dvx + dvy * dvy);
+    return min(relativeSpeed * time + maxAcceleration * time * time / 2, maxSpeed * time);
+  }
 
-    // Determine ship's initial conditions
-    double sunEarthDistance = Math.sqrt(Math.pow(earth.x()-sun.x(), 2) + Math.pow(earth.y()-sun.y(), 2));
-    Vector2D normalVersor = new Vector2D(earth.x()-sun.x(), earth.y()-sun.y());
-    normalVersor.div(sunEarthDistance); // Normalize Vector
-    // if there is a user defined vector => use that. If not, use default, that is, tangential vector earth-sun
-    Vector2D tgVersor = new Vector2D(- normalVersor.y(), normalVersor.x());
-    Vector2D ownAngle = shipTakeOffAngle == null ?
-            tgVersor : shipTakeOffAngle.div(shipTakeOffAngle.norm2()); // vector to versor
+  /**
+   * Saves the perihelion of the osculating orbit of the body at the given position and velocity at
+   * {@code orbits[offset]}, and its speed there at the next index
+   */
+  private static void perihelion(final double x, final double y, final double vx, final double vy,
+                                 final NBodyState bodies, final int sun, final double mu,
+                                 final double[] orbits, final int offset) {
+    final double rx = x - bodies.x()[sun];
+    final double ry = y - bodies.y()[sun];
+    final double rvx = vx - bodies.vx()[sun];
+    final double rvy = vy - bodies.vy()[sun];
+    final double r = sqrt(rx * rx + ry * ry);
+    final double h = abs(rx * rvy - ry * rvx); // specific angular momentum
+    final double energy = (rvx * rvx + rvy * rvy) / 2 - mu / r;
+    final double eccentricity = sqrt(max(0, 1 + 2 * energy * h * h / (mu * mu)));
+    final double perihelion = min(r, h * h / mu / (1 + eccentricity));
+    orbits[offset] = perihelion;
+    // by energy conservation, the speed is the greatest at the perihelion
+    orbits[offset + 1] = sqrt(2 * (energy + mu / perihelion));
+  }
+
+  private double distanceBetween(final int i, final int j) {
+    final double dx = state.x()[j] - state.x()[i];
+    final double dy = state.y()[j] - state.y()[i];
+    return sqrt(dx * dx + dy * dy) - state.radio()[i] - state.radio()[j];
+  }
 
-    final Particle ship =
-            Particle.builder( earth.x() + (earth.radio() + SHIP_DISTANCE_TO_EARTH) * normalVersor.x(),
-                    earth.y() + (earth.radio() + SHIP_DISTANCE_TO_EARTH) * normalVersor.y() )
-                    .mass(2E5)
-                    .vx(earth.vx() + SHIP_ORBITAL_V0 * tgVersor.x() + shipTakeOffV0 * ownAngle.x())
-                    .vy(earth.vy() + SHIP_ORBITAL_V0 * tgVersor.y() + shipTakeOffV0 * ownAngle.y())
-                    .radio(SHIP_RADIUS) // Random radio
-                    .type(ParticleType.SHIP)
-                    .build();
+  public String shipLandedTo() {
+    return shipLandedTo.toString();
+  }
 
-    addParticlesToSolarSystem(ship);
+  public void takeOff(final double shipTakeOffV0, final Vector2D shipTakeOffAngle) {
+    addParticlesToSolarSystem(launchedShip(ParticleType.EARTH, shipTakeOffV0, shipTakeOffAngle));
   }
 
   public void takeOffFromMars(final double shipTakeOffV0, final Vector2D shipTakeOffAngle) {
-    final Particle mars = particles.get(ParticleType.MARS);
-    final Particle sun = particles.get(ParticleType.SUN);
+    addParticlesToSolarSystem(launchedShip(ParticleType.MARS, shipTakeOffV0, shipTakeOffAngle));
+  }
+
+  /**
+   * @param origin the planet the ship takes off from, {@code EARTH} or {@code MARS}
+   * @return the ship right after taking off from {@code origin} at the current step, not yet added to the system
+   */
+  Particle launchedShip(final ParticleType origin, final double shipTakeOffV0, final Vector2D shipTakeOffAngle) {
+    final Particle planet = state.particle(state.slotOf(origin));
+    final Particle sun = state.particle(state.slotOf(ParticleType.SUN));
 
     // Determine ship's initial conditions
-    double sunEarthDistance = Math.sqrt(Math.pow(mars.x()-sun.x(), 2) + Math.pow(mars.y()-sun.y(), 2));
-    Vector2D normalVersor = new Vector2D(mars.x()-sun.x(), mars.y()-sun.y());
-    normalVersor.div(sunEarthDistance); // Normalize Vector
-    // if there is a user defined vector => use that. If not, use default, that is, tangential vector earth-sun
+    double sunPlanetDistance = Math.sqrt(Math.pow(planet.x()-sun.x(), 2) + Math.pow(planet.y()-sun.y(), 2));
+    Vector2D normalVersor = new Vector2D(planet.x()-sun.x(), planet.y()-sun.y());
+    normalVersor.div(sunPlanetDistance); // Normalize Vector
+    // if there is a user defined vector => use that. If not, use default, that is, tangential vector planet-sun
     Vector2D tgVersor = new Vector2D(- normalVersor.y(), normalVersor.x());
     Vector2D ownAngle = shipTakeOffAngle == null ?
             tgVersor : shipTakeOffAngle.div(shipTakeOffAngle.norm2()); // vector to versor
 
-    final double distanceToPlanet = -(mars.radio() + SHIP_DISTANCE_TO_EARTH);
-
-    final Particle ship =
-            Particle.builder( mars.x() + (distanceToPlanet) * normalVersor.x(),
-                    mars.y() + (distanceToPlanet) * normalVersor.y() )
-                    .mass(2E5)
-                    .vx(mars.vx() + SHIP_ORBITAL_V0 * tgVersor.x() + shipTakeOffV0 * ownAngle.x())
-                    .vy(mars.vy() + SHIP_ORBITAL_V0 * tgVersor.y() + shipTakeOffV0 * ownAngle.y())
-                    .radio(SHIP_RADIUS) // Random radio
-                    .type(ParticleType.SHIP)
-                    .build();
-
-    addParticlesToSolarSystem(ship);
+    // the ship starts outwards from Earth, and inwards from Mars
+    final double distanceToPlanet = origin == ParticleType.EARTH ?
+            planet.radio() + SHIP_DISTANCE_TO_EARTH : -(planet.radio() + SHIP_DISTANCE_TO_EARTH);
+
+    return Particle.builder( planet.x() + (distanceToPlanet) * normalVersor.x(),
+            planet.y() + (distanceToPlanet) * normalVersor.y() )
+            .mass(2E5)
+            .vx(planet.vx() + SHIP_ORBITAL_V0 * tgVersor.x() + shipTakeOffV0 * ownAngle.x())
+            .vy(planet.vy() + SHIP_ORBITAL_V0 * tgVersor.y() + shipTakeOffV0 * ownAngle.y())
+            .radio(SHIP_RADIUS) // Random radio
+            .type(ParticleType.SHIP)
+            .build();
   }
 
   public Vector2D getEarthPosition(){
-    Particle earth = null;
-    for(int i=0; i<solarSystem.length; i++){
-      if (solarSystem[i].type() == ParticleType.EARTH){
-        earth = solarSystem[i];
-      }
-    }
-    return new Vector2D(earth.x(), earth.y());
+    final int earth = state.slotOf(ParticleType.EARTH);
+    return new Vector2D(state.x()[earth], state.y()[earth]);
   }
 
-  public Vector2D getSunPosition(){
-    Particle sun= null;
-    for(int i=0; i<solarSystem.length; i++){
-      if (solarSystem[i].type() == ParticleType.SUN){
-        sun = solarSystem[i];
-      }
-    }
-    return new Vector2D(sun.x(), sun.y());
+  public Vector2D getMarsPosition(){
+    final int mars = state.slotOf(ParticleType.MARS);
+    return new Vector2D(state.x()[mars], state.y()[mars]);
   }
 
-  private static class ParticleData {
-    Vector2D prevPosition;
-    Vector2D prevPrev;
-
-    ParticleData(Vector2D prevPosition){
-      this.prevPosition = prevPosition;
-    }
-
-    Vector2D getPrevPosition() {
-      return prevPosition;
-    }
-
-    Vector2D getPrevPrev() {
-      return prevPrev;
-    }
-
-    ParticleData updatePrevPositions(Vector2D prevPosition, Vector2D prevPrev) {
-      this.prevPosition = prevPosition;
-      this.prevPrev = prevPrev;
-      return this;
-    }
+  public Vector2D getSunPosition(){
+    final int sun = state.slotOf(ParticleType.SUN);
+    return new Vector2D(state.x()[sun], state.y()[sun]);
   }
 
+  /**
+   * Materializes the current bodies of the system as particles
+   * @return a new list with the system's particles
+   */
   public List<Particle> getParticles(){
-    return Arrays.asList(solarSystem);
+    return state.particles();
   }
 
   public static class SolarSystemState {
@@ -350,10 +793,10 @@ public class SolarSystem {
     private final double distanceToEarth; // Initially, the max possible value;
     private final double simulationTime;
 
-    private SolarSystemState(final Collection<Particle> particles,
-                             final double distanceToMars,
-                             final double distanceToEarth,
-                             final double simulationTime) {
+    SolarSystemState(final Collection<Particle> particles,
+                     final double distanceToMars,
+                     final double distanceToEarth,
+                     final double simulationTime) {
       this.particles = particles;
       this.distanceToMars = distanceToMars;
       this.distanceToEarth = distanceToEarth;
@@ -364,6 +807,14 @@ public class SolarSystem {
       return this.distanceToMars;
     }
 
+    public double getDistanceToEarth(){
+      return this.distanceToEarth;
+    }
+
+    public double getSimulationTime(){
+      return this.simulationTime;
+    }
+
     @Override
     public String toString() {
       final StringBuilder sb = new StringBuilder();
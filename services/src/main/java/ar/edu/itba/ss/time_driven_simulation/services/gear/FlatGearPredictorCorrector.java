@@ -0,0 +1,145 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.interfaces.NumericIntegrationMethod;
+
+import static java.lang.Math.pow;
+
+/**
+ * Gear Predictor Corrector over a {@link FlatGearSystemData}: the same predict, evaluate and fix steps of
+ * {@link GearPredictorCorrector}, as loops over the data manager's arrays, so evolving the system does not allocate.
+ * <P>
+ * The coefficients of the predictor and of the corrector only depend on dt and on the data manager,
+ * so they are computed again only when any of them changes.
+ */
+public class FlatGearPredictorCorrector<K extends FlatGearSystemData> implements NumericIntegrationMethod<K> {
+  /**
+   * (Δt)^k / k!, by k
+   */
+  private double[] taylor = new double[0];
+  /**
+   * α_k * k! / (Δt)^k, by k
+   */
+  private double[] corrector = new double[0];
+  private FlatGearSystemData coefficientsSystemData;
+  private double coefficientsDt;
+
+  @Override
+  public void evolveSystem(final K systemData, final double dt) {
+    updateCoefficients(systemData, dt);
+    evolve(systemData, taylor, corrector);
+  }
+
+  // protected methods
+
+  /**
+   * Runs the predict, evaluate and fix steps over all the particles
+   * @param systemData the system's data
+   * @param taylor (Δt)^k / k!, by k
+   * @param corrector α_k * k! / (Δt)^k, by k
+   */
+  protected void evolve(final FlatGearSystemData systemData, final double[] taylor, final double[] corrector) {
+    final int n = systemData.size();
+    predict(systemData, taylor, 0, n);
+    evaluate(systemData, taylor, 0, n);
+    fix(systemData, corrector, 0, n);
+  }
+
+  /*
+    r^(p)_k(t+Δt) = Σ_(term=0 to ORDER-k) (r_(k+term)(t) * ((Δt)^(term) / term!)),
+    for each component of each particle
+   */
+  /**
+   * Predicts the derivatives of the particles at slots [from, to)
+   * @param systemData the system's data
+   * @param taylor (Δt)^k / k!, by k
+   */
+  protected void predict(final FlatGearSystemData systemData, final double[] taylor, final int from, final int to) {
+    final int order = systemData.order();
+    final int stride = systemData.stride();
+    final double[] rs = systemData.rs();
+    final double[] predictedRs = systemData.predictedRs();
+
+    for (int base = from * stride; base < to * stride; base += stride) {
+      for (int cDerivativeOrder = 0; cDerivativeOrder <= order; cDerivativeOrder++) {
+        double x = 0;
+        double y = 0;
+        for (int cTerm = 0; cTerm <= order - cDerivativeOrder; cTerm++) {
+          final int index = base + 2 * (cDerivativeOrder + cTerm);
+          x += rs[index] * taylor[cTerm];
+          y += rs[index + 1] * taylor[cTerm];
+        }
+        predictedRs[base + 2 * cDerivativeOrder] = x;
+        predictedRs[base + 2 * cDerivativeOrder + 1] = y;
+      }
+    }
+  }
+
+  /*
+    r_k(t+Δt) = r^(p)_k(t+Δt) + α_k * k! / (Δt)^k * Δr2
+   */
+  /**
+   * Corrects the predicted derivatives of the particles at slots [from, to) with their Δr2
+   * @param systemData the system's data
+   * @param corrector α_k * k! / (Δt)^k, by k
+   */
+  protected void fix(final FlatGearSystemData systemData, final double[] corrector, final int from, final int to) {
+    final int order = systemData.order();
+    final int stride = systemData.stride();
+    final double[] rs = systemData.rs();
+    final double[] predictedRs = systemData.predictedRs();
+    final double[] deltasR2 = systemData.deltasR2();
+
+    for (int slot = from; slot < to; slot++) {
+      final double deltaR2x = deltasR2[2 * slot];
+      final double deltaR2y = deltasR2[2 * slot + 1];
+      for (int cDerivativeOrder = 0; cDerivativeOrder <= order; cDerivativeOrder++) {
+        final int index = slot * stride + 2 * cDerivativeOrder;
+        rs[index] = predictedRs[index] + deltaR2x * corrector[cDerivativeOrder];
+        rs[index + 1] = predictedRs[index + 1] + deltaR2y * corrector[cDerivativeOrder];
+      }
+    }
+  }
+
+  /*
+    Δr2 = (a(r^(p)) - r^(p)_2) * (Δt)^2 / 2!
+   */
+  /**
+   * Evaluates the forces with the predicted values, and the Δr2 of the particles at slots [from, to).
+   * The predictions of all the particles should be complete
+   * @param systemData the system's data
+   * @param taylor (Δt)^k / k!, by k
+   */
+  protected void evaluate(final FlatGearSystemData systemData, final double[] taylor, final int from, final int to) {
+    final int stride = systemData.stride();
+    final double[] mass = systemData.masses();
+    final double[] predictedRs = systemData.predictedRs();
+    final double[] deltasR2 = systemData.deltasR2();
+    final double constant = taylor[2];
+
+    for (int slot = from; slot < to; slot++) {
+      // the force is saved on the particle's Δr2, which is then computed in place
+      systemData.forceWithPredicted(slot, deltasR2);
+      final int predictedAcceleration = slot * stride + 4;
+      deltasR2[2 * slot] = (deltasR2[2 * slot] / mass[slot] - predictedRs[predictedAcceleration]) * constant;
+      deltasR2[2 * slot + 1] = (deltasR2[2 * slot + 1] / mass[slot] - predictedRs[predictedAcceleration + 1])
+              * constant;
+    }
+  }
+
+  // private methods
+
+  private void updateCoefficients(final FlatGearSystemData systemData, final double dt) {
+    if (systemData == coefficientsSystemData && dt == coefficientsDt) {
+      return;
+    }
+    final int order = systemData.order();
+    taylor = new double[order + 1];
+    corrector = new double[order + 1];
+    for (int k = 0; k <= order; k++) {
+      taylor[k] = pow(dt, k) / systemData.factorial(k);
+      corrector[k] = systemData.alpha(k) * systemData.factorial(k) / pow(dt, k);
+    }
+    coefficientsSystemData = systemData;
+    coefficientsDt = dt;
+  }
+}
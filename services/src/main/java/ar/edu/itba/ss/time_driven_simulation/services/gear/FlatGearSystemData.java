@@ -0,0 +1,261 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.interfaces.SystemData;
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Data manager of a Gear Predictor Corrector numeric integration method, as {@link GearSystemData}, but with all
+ * the derivatives stored in flat primitive arrays instead of maps, so that evolving the system does not allocate.
+ * <P>
+ * Its order is any from {@link GearForces#MIN_ORDER} to {@link GearForces#MAX_ORDER}: low orders take cheaper
+ * steps, and high ones are more accurate on long steps. The corrector's coefficients depend on the
+ * {@link GearForces} of the system.
+ * <P>
+ * Each particle lives in a slot, given by the iteration order of the particles it was built with.
+ * The derivatives of order k of the particle at slot s are stored at {@code [(s * (order + 1) + k) * 2]} (x)
+ * and at the next index (y), both for the current and the predicted values.
+ * {@link Particle} objects are only materialized on demand, i.e., when {@link #particles()} is called.
+ */
+public abstract class FlatGearSystemData implements SystemData {
+  private final int order;
+  private final int stride; // values per particle: x and y of each derivative order
+  private final long[] factorial;
+  private final double[] alpha;
+
+  /**
+   * System's particles as they were built, to keep their constant values
+   */
+  private final Particle[] initialParticles;
+  private final double[] mass;
+
+  private final double[] rs;
+  private final double[] predictedRs;
+  /**
+   * Δr2 of each particle, i.e., its acceleration error times dt^2 / 2; x and y by slot
+   */
+  private final double[] deltasR2;
+
+  /**
+   * @param particles the system's particles, each of them at the slot of its iteration order
+   * @param order the order of the data manager
+   * @param forces the kind of the system's forces
+   * @throws IllegalArgumentException if the order is not between {@link GearForces#MIN_ORDER} and
+   * {@link GearForces#MAX_ORDER}
+   */
+  protected FlatGearSystemData(final Collection<Particle> particles, final int order, final GearForces forces) {
+    this.alpha = forces.alphas(order);
+    this.order = order;
+    this.stride = 2 * (order + 1);
+    this.factorial = new long[order + 1];
+    for (int i = 0; i <= order; i++) {
+      factorial[i] = GearSystemData.staticFactorial(i);
+    }
+    this.initialParticles = particles.toArray(new Particle[0]);
+    final int n = initialParticles.length;
+    this.mass = new double[n];
+    for (int slot = 0; slot < n; slot++) {
+      mass[slot] = initialParticles[slot].mass();
+    }
+    this.rs = new double[n * stride];
+    this.predictedRs = new double[n * stride];
+    this.deltasR2 = new double[2 * n];
+  }
+
+  /**
+   * Copies the given data manager, including the derivatives of all its particles, so that the copy evolves exactly
+   * as the original would, without affecting it
+   * @param other the data manager to be copied
+   */
+  protected FlatGearSystemData(final FlatGearSystemData other) {
+    this.order = other.order;
+    this.stride = other.stride;
+    this.factorial = other.factorial;
+    this.alpha = other.alpha;
+    this.initialParticles = other.initialParticles.clone();
+    this.mass = other.mass.clone();
+    this.rs = other.rs.clone();
+    this.predictedRs = other.predictedRs.clone();
+    this.deltasR2 = other.deltasR2.clone();
+  }
+
+  /**
+   * @return a new list with the particles materialized with their current position, velocity and force,
+   * ordered by slot
+   */
+  @Override
+  public Collection<Particle> particles() {
+    final List<Particle> particles = new ArrayList<>(size());
+    for (int slot = 0; slot < size(); slot++) {
+      particles.add(initialParticles[slot].update(
+              new Vector2D(rx(slot, 0), ry(slot, 0)),
+              new Vector2D(rx(slot, 1), ry(slot, 1)),
+              new Vector2D(rx(slot, 2) * mass[slot], ry(slot, 2) * mass[slot])));
+    }
+    return particles;
+  }
+
+  /**
+   * @return the amount of particles
+   */
+  public int size() {
+    return initialParticles.length;
+  }
+
+  /**
+   * @return the order of the data manager
+   */
+  public int order() {
+    return order;
+  }
+
+  /**
+   * @param slot the particle's slot
+   * @param derivativeOrder the order of the derivative
+   * @return the x component of the current derivative of order {@code derivativeOrder} of the particle
+   */
+  public double rx(final int slot, final int derivativeOrder) {
+    return rs[slot * stride + 2 * derivativeOrder];
+  }
+
+  /**
+   * @param slot the particle's slot
+   * @param derivativeOrder the order of the derivative
+   * @return the y component of the current derivative of order {@code derivativeOrder} of the particle
+   */
+  public double ry(final int slot, final int derivativeOrder) {
+    return rs[slot * stride + 2 * derivativeOrder + 1];
+  }
+
+  // protected
+  // access from package and subclasses of any package
+
+  /**
+   * Sets the initial derivative values of the particle at the given slot, from order 0 to {@link #order()},
+   * with {@link #setR(int, int, double, double)}.
+   * <P>
+   * Take into account that implementation should be provided accordingly to the system
+   * that needs to be simulated.
+   * @param slot the slot of the particle whose derivative values are going to be calculated
+   * @implNote
+   * - if there is the need to use the rest of the system's particles just call {@link #initialParticle(int)}
+   */
+  protected abstract void setInitialDerivativeValues(final int slot);
+
+  /**
+   * Calculates the force over the particle at the given slot, with the predicted values of the system.
+   * <P>
+   * Take into account that implementation should be provided accordingly to the system
+   * that needs to be simulated.
+   * @param slot the slot of the particle whose force is going to be calculated
+   * @param forces where the force is saved: its x component at {@code [2 * slot]}, and its y component at
+   *               {@code [2 * slot + 1]}
+   * @implNote
+   * - the predicted values of the rest of the particles are retrieved with {@link #predictedRx(int, int)} and
+   * {@link #predictedRy(int, int)}
+   * - it may be called at once for different slots from several threads, so it should only write the force of
+   * its own slot, and keep anything else it needs on local variables
+   */
+  protected abstract void forceWithPredicted(final int slot, final double[] forces);
+
+  /**
+   * Initialize the R values of all system's particles
+   * using the provided {@code setInitialDerivativeValues} method on each particle.
+   *
+   * @implNote <b>Important: </b> This method should be called only once before the usage of the gear method
+   */
+  protected void init() {
+    for (int slot = 0; slot < size(); slot++) {
+      setInitialDerivativeValues(slot);
+    }
+  }
+
+  /**
+   * @param slot the particle's slot
+   * @return the particle at the given slot, as the system was built with it
+   */
+  protected Particle initialParticle(final int slot) {
+    return initialParticles[slot];
+  }
+
+  /**
+   * @param slot the particle's slot
+   * @return the mass of the particle at the given slot
+   */
+  protected double mass(final int slot) {
+    return mass[slot];
+  }
+
+  /**
+   * Sets the current derivative of order {@code derivativeOrder} of the particle at the given slot
+   */
+  protected void setR(final int slot, final int derivativeOrder, final double x, final double y) {
+    final int index = slot * stride + 2 * derivativeOrder;
+    rs[index] = x;
+    rs[index + 1] = y;
+  }
+
+  /**
+   * @return the x component of the predicted derivative of order {@code derivativeOrder} of the particle
+   */
+  protected double predictedRx(final int slot, final int derivativeOrder) {
+    return predictedRs[slot * stride + 2 * derivativeOrder];
+  }
+
+  /**
+   * @return the y component of the predicted derivative of order {@code derivativeOrder} of the particle
+   */
+  protected double predictedRy(final int slot, final int derivativeOrder) {
+    return predictedRs[slot * stride + 2 * derivativeOrder + 1];
+  }
+
+  // package-private
+  // access allowed from this module and gear package only, i.e., from Gear implementations only
+
+  /**
+   * @return the amount of values of each particle on {@link #rs()} and {@link #predictedRs()}
+   */
+  /* package-private */ int stride() {
+    return stride;
+  }
+
+  /* package-private */ double[] masses() {
+    return mass;
+  }
+
+  /* package-private */ double[] rs() {
+    return rs;
+  }
+
+  /* package-private */ double[] predictedRs() {
+    return predictedRs;
+  }
+
+  /* package-private */ double[] deltasR2() {
+    return deltasR2;
+  }
+
+  /**
+   * Retrieves the precomputed factorial of {@code n}
+   * @param n number to be used
+   * @return the precomputed factorial of {@code n}
+   * @implNote n should be <= order()
+   */
+  /* package-private */ long factorial(final int n) {
+    return factorial[n];
+  }
+
+  /**
+   * Retrieves the corrector's coefficient of the derivative of order {@code n}
+   * @param n the order of the derivative
+   * @return the corrector's coefficient of the derivative of order {@code n}
+   * @implNote n should be <= order()
+   */
+  /* package-private */ double alpha(final int n) {
+    return alpha[n];
+  }
+}
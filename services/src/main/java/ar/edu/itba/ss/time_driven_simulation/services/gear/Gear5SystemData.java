@@ -25,13 +25,7 @@ public abstract class Gear5SystemData extends GearSystemData {
       factorial[i] = staticFactorial(i);
     }
 
-    //Alpha values taken from class presentation
-    alpha[0] = 3.0/16.0;
-    alpha[1] = 251.0/360.0;
-    alpha[2] = 1.0;
-    alpha[3] = 11.0/18.0;
-    alpha[4] = 1.0/6.0;
-    alpha[5] = 1.0/60.0;
+    System.arraycopy(GearForces.VELOCITY_DEPENDENT.alphas(ORDER), 0, alpha, 0, S_VECTORS);
   }
 
   public Gear5SystemData(final Collection<Particle> particles) {
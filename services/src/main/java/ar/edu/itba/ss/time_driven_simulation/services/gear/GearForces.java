@@ -0,0 +1,64 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+/**
+ * Kind of the forces of a system evolved with a Gear Predictor Corrector, which sets the coefficients of its
+ * corrector, α, for each order from {@link #MIN_ORDER} to {@link #MAX_ORDER}.
+ * <P>
+ * Values are Gear's ones for second order equations (see Allen and Tildesley, Computer Simulation of Liquids,
+ * appendix E). Only α0 depends on whether forces depend on velocity, and the tables in use only change it for
+ * orders 4 and 5.
+ */
+public enum GearForces {
+  /**
+   * Forces that only depend on positions, e.g., gravity
+   */
+  POSITION_ONLY(new double[][] {
+          {0.0, 1.0, 1.0},
+          {1.0 / 6.0, 5.0 / 6.0, 1.0, 1.0 / 3.0},
+          {19.0 / 120.0, 3.0 / 4.0, 1.0, 1.0 / 2.0, 1.0 / 12.0},
+          {3.0 / 20.0, 251.0 / 360.0, 1.0, 11.0 / 18.0, 1.0 / 6.0, 1.0 / 60.0},
+          {863.0 / 6048.0, 665.0 / 1008.0, 1.0, 25.0 / 36.0, 35.0 / 144.0, 1.0 / 24.0, 1.0 / 360.0}
+  }),
+  /**
+   * Forces that also depend on velocities, e.g., a damped oscillator's
+   */
+  VELOCITY_DEPENDENT(new double[][] {
+          {0.0, 1.0, 1.0},
+          {1.0 / 6.0, 5.0 / 6.0, 1.0, 1.0 / 3.0},
+          {19.0 / 90.0, 3.0 / 4.0, 1.0, 1.0 / 2.0, 1.0 / 12.0},
+          {3.0 / 16.0, 251.0 / 360.0, 1.0, 11.0 / 18.0, 1.0 / 6.0, 1.0 / 60.0},
+          {863.0 / 6048.0, 665.0 / 1008.0, 1.0, 25.0 / 36.0, 35.0 / 144.0, 1.0 / 24.0, 1.0 / 360.0}
+  });
+
+  public static final int MIN_ORDER = 2;
+  public static final int MAX_ORDER = 6;
+
+  /**
+   * α of each order, from {@link #MIN_ORDER}
+   */
+  private final double[][] alphas;
+
+  GearForces(final double[][] alphas) {
+    this.alphas = alphas;
+  }
+
+  /**
+   * @param order the order of the Gear Predictor Corrector
+   * @return the corrector's coefficients of the derivatives of order 0 to {@code order}
+   * @throws IllegalArgumentException if the order is not between {@link #MIN_ORDER} and {@link #MAX_ORDER}
+   */
+  public double[] alphas(final int order) {
+    checkOrder(order);
+    return alphas[order - MIN_ORDER].clone();
+  }
+
+  /**
+   * @param order the order of a Gear Predictor Corrector
+   * @throws IllegalArgumentException if the order is not between {@link #MIN_ORDER} and {@link #MAX_ORDER}
+   */
+  public static void checkOrder(final int order) {
+    if (order < MIN_ORDER || order > MAX_ORDER) {
+      throw new IllegalArgumentException("Gear order should be between " + MIN_ORDER + " and " + MAX_ORDER);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.interfaces.NumericIntegrationMethod;
+import ar.edu.itba.ss.time_driven_simulation.interfaces.TimeDrivenSimulationSystem;
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+
+import java.util.Collection;
+
+/**
+ * Bodies under their mutual gravity, evolved by a numeric integration method over a {@link GravityGearSystemData}
+ */
+public class GearGravitySystem implements TimeDrivenSimulationSystem {
+
+  private final NumericIntegrationMethod<? super GravityGearSystemData> numericIntegrationMethod;
+  private final GravityGearSystemData systemData;
+
+  /**
+   * @param particles the bodies to be integrated
+   * @param order the order of the Gear Predictor Corrector
+   * @param g the gravitational constant
+   */
+  public GearGravitySystem(final Collection<Particle> particles, final int order, final double g) {
+    this(new GravityGearSystemData(particles, order, g), new UnrolledGearPredictorCorrector<>());
+  }
+
+  /**
+   * @param particles the bodies to be integrated
+   * @param order the order of the Gear Predictor Corrector
+   * @param g the gravitational constant
+   * @param attractorState the state whose bodies at slots [0, attractors) pull on the integrated ones
+   * @param attractors the amount of attractors
+   */
+  public GearGravitySystem(final Collection<Particle> particles, final int order, final double g,
+                           final NBodyState attractorState, final int attractors) {
+    this(new GravityGearSystemData(particles, order, g, attractorState, attractors),
+            new UnrolledGearPredictorCorrector<>());
+  }
+
+  /**
+   * @param systemData the bodies and their derivatives
+   * @param numericIntegrationMethod the method used to evolve the bodies
+   */
+  public GearGravitySystem(final GravityGearSystemData systemData,
+                           final NumericIntegrationMethod<? super GravityGearSystemData> numericIntegrationMethod) {
+    this.systemData = systemData;
+    this.numericIntegrationMethod = numericIntegrationMethod;
+  }
+
+  @Override
+  public GravityGearSystemData getSystemData() {
+    return systemData;
+  }
+
+  @Override
+  public void evolveSystem(final double dt) {
+    numericIntegrationMethod.evolveSystem(systemData, dt);
+  }
+}
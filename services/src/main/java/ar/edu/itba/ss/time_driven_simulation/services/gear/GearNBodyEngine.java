@@ -0,0 +1,145 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyIntegrator;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.PlanetaryEphemeris;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Gravitational N-body engine that evolves a {@link NBodyState} with a fixed step, through a {@link GearGravitySystem}
+ * of its bodies, i.e., with the Gear Predictor Corrector of the given order.
+ * <P>
+ * The Gear system holds the derivatives of the bodies at slots [first, n) of the state, each of them at its slot
+ * minus first; after each step, their positions, velocities, forces and ages are written back on the state.
+ * Velocities are synchronized with positions, and forces are the corrected ones, so a step does not allocate.
+ * The step's start positions are kept as r(t-dt).
+ * When bodies are added, the Gear system is built again from the state, so the higher derivatives of every body
+ * start over from its exact jerk.
+ * <P>
+ * With a {@link ChunkExecutor}, the predict, evaluate and fix steps are split by body among its threads
+ * (see {@link ParallelGearPredictorCorrector}); results are the same regardless of the amount of threads.
+ */
+public class GearNBodyEngine implements NBodyIntegrator {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+
+  private final NBodyState state;
+  private final int order;
+  private final double dt;
+  private final double g;
+  private final ChunkExecutor executor; // null when running on the calling thread only
+
+  private GearGravitySystem system;
+  private int first; // slot of the first integrated body; the ones before it are attractors
+
+  /**
+   * @param state the system to be evolved
+   * @param order the order of the Gear Predictor Corrector, from {@link GearForces#MIN_ORDER} to
+   *              {@link GearForces#MAX_ORDER}
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   */
+  public GearNBodyEngine(final NBodyState state, final int order, final double dt, final double g) {
+    this(state, order, dt, g, null);
+  }
+
+  /**
+   * @param state the system to be evolved
+   * @param order the order of the Gear Predictor Corrector, from {@link GearForces#MIN_ORDER} to
+   *              {@link GearForces#MAX_ORDER}
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   * @param executor executor used to split the steps among threads; null to run them on the calling thread
+   */
+  public GearNBodyEngine(final NBodyState state, final int order, final double dt, final double g,
+                         final ChunkExecutor executor) {
+    if (dt <= 0) {
+      throw new IllegalArgumentException("dt should be > 0");
+    }
+    GearForces.checkOrder(order);
+    this.state = state;
+    this.order = order;
+    this.dt = dt;
+    this.g = g;
+    this.executor = executor;
+  }
+
+  @Override
+  public NBodyState state() {
+    return state;
+  }
+
+  @Override
+  public GearNBodyEngine fork(final NBodyState state) {
+    final GearNBodyEngine fork = new GearNBodyEngine(state, order, dt, g, executor);
+    if (system != null) {
+      fork.system = new GearGravitySystem(new GravityGearSystemData(system.getSystemData(), state), method());
+    }
+    fork.first = first;
+    return fork;
+  }
+
+  @Override
+  public void bodiesAdded(final int firstTestParticle) {
+    first = firstTestParticle;
+    final Collection<Particle> particles = new ArrayList<>(state.size() - first);
+    for (int i = first; i < state.size(); i++) {
+      particles.add(state.particle(i));
+    }
+    system = new GearGravitySystem(first == 0 ? new GravityGearSystemData(particles, order, g)
+            : new GravityGearSystemData(particles, order, g, state, first), method());
+  }
+
+  /**
+   * Evolves the whole system a {@code dt} time interval. Steps are never shortened
+   */
+  @Override
+  public double evolve(final double maxDt) {
+    return step();
+  }
+
+  /**
+   * {@inheritDoc}
+   * The attractors are read at the end of the step before evolving the test particles, since the corrector
+   * evaluates the forces there. Steps are never shortened
+   */
+  @Override
+  public double evolveTestParticles(final int firstTestParticle, final PlanetaryEphemeris ephemeris,
+                                    final double time, final double maxDt) {
+    ephemeris.stateAt(time + dt, state);
+    return step();
+  }
+
+  // private methods
+
+  private FlatGearPredictorCorrector<GravityGearSystemData> method() {
+    return executor == null ? new UnrolledGearPredictorCorrector<>()
+            : new ParallelGearPredictorCorrector<>(executor);
+  }
+
+  private double step() {
+    for (int i = first; i < state.size(); i++) {
+      state.prevX()[i] = state.x()[i];
+      state.prevY()[i] = state.y()[i];
+    }
+
+    system.evolveSystem(dt);
+
+    final GravityGearSystemData systemData = system.getSystemData();
+    final double days = dt / SECONDS_PER_DAY;
+    for (int i = first; i < state.size(); i++) {
+      final int slot = i - first;
+      state.x()[i] = systemData.rx(slot, 0);
+      state.y()[i] = systemData.ry(slot, 0);
+      state.vx()[i] = systemData.rx(slot, 1);
+      state.vy()[i] = systemData.ry(slot, 1);
+      state.fx()[i] = systemData.rx(slot, 2) * state.mass()[i];
+      state.fy()[i] = systemData.ry(slot, 2) * state.mass()[i];
+      state.ageInDays()[i] += days;
+    }
+    return dt;
+  }
+}
@@ -0,0 +1,150 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.NBodyState;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Data manager of a Gear Predictor Corrector numeric integration method of any order for bodies under their
+ * mutual gravity, i.e., the pairwise sum of their pulls, which only depends on positions.
+ * <P>
+ * Bodies can also be pulled by attractors that are not integrated, e.g., planets read from an ephemeris:
+ * the bodies at slots [0, attractors) of the given state, wherever they are when the forces are evaluated.
+ * So, when evolving the system, they should be at the end of the step.
+ */
+public class GravityGearSystemData extends FlatGearSystemData {
+  private final double g;
+  private final NBodyState attractorState;
+  private final int attractors;
+
+  // acceleration and jerk accumulated by the initial derivatives
+  private final double[] initialDerivatives = new double[4];
+
+  /**
+   * @param particles the bodies to be integrated
+   * @param order the order of the data manager
+   * @param g the gravitational constant
+   */
+  public GravityGearSystemData(final Collection<Particle> particles, final int order, final double g) {
+    this(particles, order, g, null, 0);
+  }
+
+  /**
+   * @param particles the bodies to be integrated
+   * @param order the order of the data manager
+   * @param g the gravitational constant
+   * @param attractorState the state whose bodies at slots [0, attractors) pull on the integrated ones; null if none
+   * @param attractors the amount of attractors
+   */
+  public GravityGearSystemData(final Collection<Particle> particles, final int order, final double g,
+                               final NBodyState attractorState, final int attractors) {
+    super(particles, order, GearForces.POSITION_ONLY);
+    this.g = g;
+    this.attractorState = attractorState;
+    this.attractors = attractors;
+
+    init();
+  }
+
+  /**
+   * Copies the given data manager, with another state of attractors
+   * @param other the data manager to be copied
+   * @param attractorState the state whose bodies pull on the integrated ones; null if none
+   */
+  public GravityGearSystemData(final GravityGearSystemData other, final NBodyState attractorState) {
+    super(other);
+    this.g = other.g;
+    this.attractorState = attractorState;
+    this.attractors = other.attractors;
+  }
+
+  /**
+   * Position, velocity, acceleration and jerk, if the order reaches it, are the exact ones;
+   * higher derivatives start at 0
+   */
+  @Override
+  protected void setInitialDerivativeValues(final int slot) {
+    final Particle particle = initialParticle(slot);
+    Arrays.fill(initialDerivatives, 0);
+
+    for (int j = 0; j < size(); j++) {
+      if (j != slot) {
+        final Particle other = initialParticle(j);
+        accumulate(particle, other.x(), other.y(), other.vx(), other.vy(), other.mass());
+      }
+    }
+    for (int i = 0; i < attractors; i++) {
+      accumulate(particle, attractorState.x()[i], attractorState.y()[i], attractorState.vx()[i],
+              attractorState.vy()[i], attractorState.mass()[i]);
+    }
+
+    setR(slot, 0, particle.x(), particle.y());
+    setR(slot, 1, particle.vx(), particle.vy());
+    setR(slot, 2, initialDerivatives[0], initialDerivatives[1]);
+    if (order() >= 3) {
+      setR(slot, 3, initialDerivatives[2], initialDerivatives[3]);
+    }
+    for (int i = 4; i <= order(); i++) {
+      setR(slot, i, 0, 0);
+    }
+  }
+
+  @Override
+  protected void forceWithPredicted(final int slot, final double[] forces) {
+    final double x = predictedRx(slot, 0);
+    final double y = predictedRy(slot, 0);
+    final double gMi = g * mass(slot);
+    double forceX = 0;
+    double forceY = 0;
+
+    for (int j = 0; j < size(); j++) {
+      if (j == slot) {
+        continue;
+      }
+      final double dx = predictedRx(j, 0) - x;
+      final double dy = predictedRy(j, 0) - y;
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * mass(j) / distancePow2;
+      final double distance = sqrt(distancePow2);
+      forceX += forceModule * (dx / distance);
+      forceY += forceModule * (dy / distance);
+    }
+    for (int i = 0; i < attractors; i++) {
+      final double dx = attractorState.x()[i] - x;
+      final double dy = attractorState.y()[i] - y;
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * attractorState.mass()[i] / distancePow2;
+      final double distance = sqrt(distancePow2);
+      forceX += forceModule * (dx / distance);
+      forceY += forceModule * (dy / distance);
+    }
+
+    forces[2 * slot] = forceX;
+    forces[2 * slot + 1] = forceY;
+  }
+
+  /**
+   * Adds the acceleration and jerk that a body with the given position, velocity and mass causes on
+   * {@code particle} to the initial derivatives
+   */
+  private void accumulate(final Particle particle, final double x, final double y, final double vx,
+                          final double vy, final double mass) {
+    final double dx = x - particle.x();
+    final double dy = y - particle.y();
+    final double dvx = vx - particle.vx();
+    final double dvy = vy - particle.vy();
+    final double distancePow2 = dx * dx + dy * dy;
+    final double distancePow3 = distancePow2 * sqrt(distancePow2);
+    final double gm = g * mass;
+    // a = G m r / |r|^3 ; j = G m (v / |r|^3 - 3 (r . v) r / |r|^5)
+    final double radialSpeed = 3 * (dx * dvx + dy * dvy) / distancePow2;
+    initialDerivatives[0] += gm * dx / distancePow3;
+    initialDerivatives[1] += gm * dy / distancePow3;
+    initialDerivatives[2] += gm * (dvx - radialSpeed * dx) / distancePow3;
+    initialDerivatives[3] += gm * (dvy - radialSpeed * dy) / distancePow3;
+  }
+}
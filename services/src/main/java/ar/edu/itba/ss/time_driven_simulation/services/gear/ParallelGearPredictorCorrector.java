@@ -0,0 +1,45 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+import ar.edu.itba.ss.time_driven_simulation.services.nbody.ChunkExecutor;
+
+/**
+ * {@link UnrolledGearPredictorCorrector} whose predict, evaluate and fix steps are split by particle among the
+ * threads of a {@link ChunkExecutor}.
+ * <P>
+ * Each step runs over all the particles before the next one starts, since the forces of any particle need the
+ * predictions of all the others. Within a step, each particle only writes to its own slots of the data manager,
+ * whose arrays are shared without locks; so its forces should be evaluated as
+ * {@link FlatGearSystemData#forceWithPredicted(int, double[])} requires. Particles are calculated as by the serial
+ * implementation, so the result is bit for bit the same regardless of the amount of threads used.
+ */
+public class ParallelGearPredictorCorrector<K extends FlatGearSystemData> extends UnrolledGearPredictorCorrector<K> {
+  private final ChunkExecutor executor;
+
+  // values of the ongoing step, read by the chunk tasks
+  private FlatGearSystemData systemData;
+  private double[] taylor;
+  private double[] corrector;
+
+  private final ChunkExecutor.ChunkTask predictTask = (from, to) -> predict(systemData, taylor, from, to);
+  private final ChunkExecutor.ChunkTask evaluateTask = (from, to) -> evaluate(systemData, taylor, from, to);
+  private final ChunkExecutor.ChunkTask fixTask = (from, to) -> fix(systemData, corrector, from, to);
+
+  /**
+   * @param executor the executor whose threads run the steps
+   */
+  public ParallelGearPredictorCorrector(final ChunkExecutor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  protected void evolve(final FlatGearSystemData systemData, final double[] taylor, final double[] corrector) {
+    this.systemData = systemData;
+    this.taylor = taylor;
+    this.corrector = corrector;
+
+    final int n = systemData.size();
+    executor.forEachChunk(n, predictTask);
+    executor.forEachChunk(n, evaluateTask);
+    executor.forEachChunk(n, fixTask);
+  }
+}
@@ -0,0 +1,136 @@
+package ar.edu.itba.ss.time_driven_simulation.services.gear;
+
+/**
+ * {@link FlatGearPredictorCorrector} whose predict and fix steps are unrolled for orders 3, 4 and 5: each particle
+ * takes straight-line arithmetic over the coefficients, read once per step, with no inner loops nor table lookups.
+ * Other orders run the loops of {@link FlatGearPredictorCorrector}.
+ * <P>
+ * Terms are added in the same order as there, so both evolve a system exactly alike.
+ */
+public class UnrolledGearPredictorCorrector<K extends FlatGearSystemData> extends FlatGearPredictorCorrector<K> {
+
+  @Override
+  protected void predict(final FlatGearSystemData systemData, final double[] taylor, final int from, final int to) {
+    final double[] rs = systemData.rs();
+    final double[] predictedRs = systemData.predictedRs();
+    final int stride = systemData.stride();
+    final int end = to * stride;
+    switch (systemData.order()) {
+      case 3:
+        for (int base = from * stride; base < end; base += stride) {
+          predict3(rs, predictedRs, base, taylor[1], taylor[2], taylor[3]);
+          predict3(rs, predictedRs, base + 1, taylor[1], taylor[2], taylor[3]);
+        }
+        break;
+      case 4:
+        for (int base = from * stride; base < end; base += stride) {
+          predict4(rs, predictedRs, base, taylor[1], taylor[2], taylor[3], taylor[4]);
+          predict4(rs, predictedRs, base + 1, taylor[1], taylor[2], taylor[3], taylor[4]);
+        }
+        break;
+      case 5:
+        for (int base = from * stride; base < end; base += stride) {
+          predict5(rs, predictedRs, base, taylor[1], taylor[2], taylor[3], taylor[4], taylor[5]);
+          predict5(rs, predictedRs, base + 1, taylor[1], taylor[2], taylor[3], taylor[4], taylor[5]);
+        }
+        break;
+      default:
+        super.predict(systemData, taylor, from, to);
+        break;
+    }
+  }
+
+  @Override
+  protected void fix(final FlatGearSystemData systemData, final double[] corrector, final int from, final int to) {
+    final double[] rs = systemData.rs();
+    final double[] predictedRs = systemData.predictedRs();
+    final double[] deltasR2 = systemData.deltasR2();
+    final int stride = systemData.stride();
+    final int end = to * stride;
+    switch (systemData.order()) {
+      case 3: {
+        final double c0 = corrector[0], c1 = corrector[1], c2 = corrector[2], c3 = corrector[3];
+        for (int slot = from, base = from * stride; base < end; slot++, base += stride) {
+          fix3(rs, predictedRs, base, deltasR2[2 * slot], c0, c1, c2, c3);
+          fix3(rs, predictedRs, base + 1, deltasR2[2 * slot + 1], c0, c1, c2, c3);
+        }
+        break;
+      }
+      case 4: {
+        final double c0 = corrector[0], c1 = corrector[1], c2 = corrector[2], c3 = corrector[3];
+        final double c4 = corrector[4];
+        for (int slot = from, base = from * stride; base < end; slot++, base += stride) {
+          fix4(rs, predictedRs, base, deltasR2[2 * slot], c0, c1, c2, c3, c4);
+          fix4(rs, predictedRs, base + 1, deltasR2[2 * slot + 1], c0, c1, c2, c3, c4);
+        }
+        break;
+      }
+      case 5: {
+        final double c0 = corrector[0], c1 = corrector[1], c2 = corrector[2], c3 = corrector[3];
+        final double c4 = corrector[4], c5 = corrector[5];
+        for (int slot = from, base = from * stride; base < end; slot++, base += stride) {
+          fix5(rs, predictedRs, base, deltasR2[2 * slot], c0, c1, c2, c3, c4, c5);
+          fix5(rs, predictedRs, base + 1, deltasR2[2 * slot + 1], c0, c1, c2, c3, c4, c5);
+        }
+        break;
+      }
+      default:
+        super.fix(systemData, corrector, from, to);
+        break;
+    }
+  }
+
+  // private methods
+  // each of them works on a single component, whose derivative of order k is at [i + 2 * k]
+
+  private static void predict3(final double[] r, final double[] p, final int i,
+                               final double t1, final double t2, final double t3) {
+    final double r0 = r[i], r1 = r[i + 2], r2 = r[i + 4], r3 = r[i + 6];
+    p[i] = r0 + r1 * t1 + r2 * t2 + r3 * t3;
+    p[i + 2] = r1 + r2 * t1 + r3 * t2;
+    p[i + 4] = r2 + r3 * t1;
+    p[i + 6] = r3;
+  }
+
+  private static void predict4(final double[] r, final double[] p, final int i,
+                               final double t1, final double t2, final double t3, final double t4) {
+    final double r0 = r[i], r1 = r[i + 2], r2 = r[i + 4], r3 = r[i + 6], r4 = r[i + 8];
+    p[i] = r0 + r1 * t1 + r2 * t2 + r3 * t3 + r4 * t4;
+    p[i + 2] = r1 + r2 * t1 + r3 * t2 + r4 * t3;
+    p[i + 4] = r2 + r3 * t1 + r4 * t2;
+    p[i + 6] = r3 + r4 * t1;
+    p[i + 8] = r4;
+  }
+
+  private static void predict5(final double[] r, final double[] p, final int i, final double t1,
+                               final double t2, final double t3, final double t4, final double t5) {
+    final double r0 = r[i], r1 = r[i + 2], r2 = r[i + 4], r3 = r[i + 6], r4 = r[i + 8], r5 = r[i + 10];
+    p[i] = r0 + r1 * t1 + r2 * t2 + r3 * t3 + r4 * t4 + r5 * t5;
+    p[i + 2] = r1 + r2 * t1 + r3 * t2 + r4 * t3 + r5 * t4;
+    p[i + 4] = r2 + r3 * t1 + r4 * t2 + r5 * t3;
+    p[i + 6] = r3 + r4 * t1 + r5 * t2;
+    p[i + 8] = r4 + r5 * t1;
+    p[i + 10] = r5;
+  }
+
+  private static void fix3(final double[] r, final double[] p, final int i, final double deltaR2,
+                           final double c0, final double c1, final double c2, final double c3) {
+    r[i] = p[i] + deltaR2 * c0;
+    r[i + 2] = p[i + 2] + deltaR2 * c1;
+    r[i + 4] = p[i + 4] + deltaR2 * c2;
+    r[i + 6] = p[i + 6] + deltaR2 * c3;
+  }
+
+  private static void fix4(final double[] r, final double[] p, final int i, final double deltaR2,
+                           final double c0, final double c1, final double c2, final double c3, final double c4) {
+    fix3(r, p, i, deltaR2, c0, c1, c2, c3);
+    r[i + 8] = p[i + 8] + deltaR2 * c4;
+  }
+
+  private static void fix5(final double[] r, final double[] p, final int i, final double deltaR2,
+                           final double c0, final double c1, final double c2, final double c3, final double c4,
+                           final double c5) {
+    fix4(r, p, i, deltaR2, c0, c1, c2, c3, c4);
+    r[i + 10] = p[i + 10] + deltaR2 * c5;
+  }
+}
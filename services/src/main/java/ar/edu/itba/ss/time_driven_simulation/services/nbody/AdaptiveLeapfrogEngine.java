@@ -0,0 +1,206 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Gravitational N-body engine that evolves a {@link NBodyState} with the kick-drift-kick leapfrog, picking the size
+ * of each step with an {@link AdaptiveStep}.
+ * <P>
+ * Changing the step of a symplectic integrator from one step to the next, as a function of the state at its start,
+ * breaks its time symmetry, and with it the bounded energy error that makes it suitable for long orbits. So steps are
+ * time-symmetrized (Hut, Makino and McMillan, 1995): the size {@code h} of a step from z0 to z1 solves
+ * {@code h = (tau(z0) + tau(z1)) / 2}, where {@code tau} is the criterion of the {@link AdaptiveStep}; running the
+ * step backwards from z1 picks the same {@code h}. The implicit equation is solved by a few fixed point iterations,
+ * each of them running the step again from its start.
+ * <P>
+ * Unlike the {@link VerletNBodyEngine}, velocities are synchronized with positions: after a step, both hold their
+ * values at its end, and so do the forces. The step's start positions are kept as r(t-dt).
+ * All the step's work is done over the state's primitive arrays, so evolving the system does not allocate.
+ */
+public class AdaptiveLeapfrogEngine implements NBodyIntegrator {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  private static final int CORRECTIONS = 2; // fixed point iterations of the time-symmetric step size
+
+  private final NBodyState state;
+  private final AdaptiveStep steps;
+  private final double g;
+  private final GravityForceProvider forceProvider;
+
+  // x, y, vx, vy, fx and fy of every body at the start of the step, to run it again
+  private double[] start = new double[0];
+
+  /**
+   * @param state the system to be evolved. Its forces should be the ones at its current positions,
+   *              see {@link #bodiesAdded(int)}
+   * @param steps the criterion used to pick the size of each step
+   * @param g the gravitational constant
+   * @param forceProvider the strategy used to calculate the forces at each step
+   */
+  public AdaptiveLeapfrogEngine(final NBodyState state, final AdaptiveStep steps, final double g,
+                                final GravityForceProvider forceProvider) {
+    this.state = state;
+    this.steps = steps;
+    this.g = g;
+    this.forceProvider = forceProvider;
+  }
+
+  @Override
+  public NBodyState state() {
+    return state;
+  }
+
+  public AdaptiveStep steps() {
+    return steps;
+  }
+
+  @Override
+  public AdaptiveLeapfrogEngine fork(final NBodyState state) {
+    return new AdaptiveLeapfrogEngine(state, steps, g, forceProvider.fork());
+  }
+
+  /**
+   * Calculates the forces at the current positions: the exact ones among all the bodies, or, if
+   * {@code firstTestParticle > 0}, only the ones caused by the bodies at slots [0, firstTestParticle) on the rest
+   * @param firstTestParticle the slot of the first test particle; 0 if there are none
+   */
+  public void computeForces(final int firstTestParticle) {
+    if (firstTestParticle == 0) {
+      forceProvider.computeForces(state, g);
+      return;
+    }
+    for (int i = firstTestParticle; i < state.size(); i++) {
+      accumulateTestParticleForce(i, firstTestParticle);
+    }
+  }
+
+  /**
+   * The leapfrog's first kick needs the exact forces, including the new bodies' pull on the other ones,
+   * so they are calculated again for every body
+   */
+  @Override
+  public void bodiesAdded(final int firstTestParticle) {
+    computeForces(firstTestParticle);
+  }
+
+  @Override
+  public double evolve(final double maxDt) {
+    return evolve(0, null, 0, maxDt);
+  }
+
+  @Override
+  public double evolveTestParticles(final int firstTestParticle, final PlanetaryEphemeris ephemeris,
+                                    final double time, final double maxDt) {
+    return evolve(firstTestParticle, ephemeris, time, maxDt);
+  }
+
+  // private methods
+
+  private double evolve(final int firstMoving, final PlanetaryEphemeris ephemeris, final double time,
+                        final double maxDt) {
+    save(firstMoving);
+    final double startTimescale = steps.stepSize(state, g, firstMoving);
+
+    double h = Math.min(startTimescale, maxDt);
+    kickDriftKick(firstMoving, ephemeris, time, h);
+    for (int i = 0; i < CORRECTIONS; i++) {
+      final double endTimescale = steps.stepSize(state, g, firstMoving);
+      final double symmetric = Math.min((startTimescale + endTimescale) / 2, maxDt);
+      if (symmetric == h) {
+        break;
+      }
+      h = symmetric;
+      restore(firstMoving);
+      kickDriftKick(firstMoving, ephemeris, time, h);
+    }
+
+    final double[] prevX = state.prevX();
+    final double[] prevY = state.prevY();
+    final double[] ageInDays = state.ageInDays();
+    final double days = h / SECONDS_PER_DAY;
+    for (int i = firstMoving, k = 0; i < state.size(); i++, k += 6) {
+      prevX[i] = start[k];
+      prevY[i] = start[k + 1];
+      ageInDays[i] += days;
+    }
+    return h;
+  }
+
+  private void kickDriftKick(final int firstMoving, final PlanetaryEphemeris ephemeris, final double time,
+                             final double h) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+
+    final double halfH = h / 2;
+    for (int i = firstMoving; i < n; i++) {
+      vx[i] += fx[i] / mass[i] * halfH; // v(t+h/2)
+      vy[i] += fy[i] / mass[i] * halfH;
+      x[i] += vx[i] * h; // r(t+h)
+      y[i] += vy[i] * h;
+    }
+
+    if (ephemeris != null) {
+      ephemeris.stateAt(time + h, state);
+    }
+    computeForces(firstMoving); // f(t+h)
+
+    for (int i = firstMoving; i < n; i++) {
+      vx[i] += fx[i] / mass[i] * halfH; // v(t+h)
+      vy[i] += fy[i] / mass[i] * halfH;
+    }
+  }
+
+  private void save(final int firstMoving) {
+    final int values = (state.size() - firstMoving) * 6;
+    if (start.length < values) {
+      start = new double[values];
+    }
+    for (int i = firstMoving, k = 0; i < state.size(); i++, k += 6) {
+      start[k] = state.x()[i];
+      start[k + 1] = state.y()[i];
+      start[k + 2] = state.vx()[i];
+      start[k + 3] = state.vy()[i];
+      start[k + 4] = state.fx()[i];
+      start[k + 5] = state.fy()[i];
+    }
+  }
+
+  private void restore(final int firstMoving) {
+    for (int i = firstMoving, k = 0; i < state.size(); i++, k += 6) {
+      state.x()[i] = start[k];
+      state.y()[i] = start[k + 1];
+      state.vx()[i] = start[k + 2];
+      state.vy()[i] = start[k + 3];
+      state.fx()[i] = start[k + 4];
+      state.fy()[i] = start[k + 5];
+    }
+  }
+
+  // Force over the test particle at slot i caused by the bodies at slots [0, to)
+  private void accumulateTestParticleForce(final int i, final int to) {
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+    final double gMi = g * mass[i];
+    double forceX = 0;
+    double forceY = 0;
+
+    for (int j = 0; j < to; j++) {
+      final double dx = x[j] - x[i];
+      final double dy = y[j] - y[i];
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * mass[j] / distancePow2;
+      final double distance = sqrt(distancePow2);
+      forceX += forceModule * (dx / distance);
+      forceY += forceModule * (dy / distance);
+    }
+
+    state.fx()[i] = forceX;
+    state.fy()[i] = forceY;
+  }
+}
@@ -0,0 +1,101 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Step size criterion of an {@link AdaptiveLeapfrogEngine}: a fraction {@code eta} of the shortest timescale of the
+ * system, within {@code [minDt, maxDt]}.
+ * <P>
+ * The timescale of each pair of bodies is the shortest of the time they take to cover their distance at their
+ * relative speed, {@code r / |v|}, and of their free-fall time, {@code sqrt(r^3 / (G (mi + mj)))}, i.e., the time
+ * their mutual acceleration takes to change their relative velocity by {@code r / t}. During cruise every pair is
+ * far apart and steps grow up to {@code maxDt}; as the ship gets close to a planet, they shrink with the distance.
+ */
+public class AdaptiveStep {
+  public static final double DEFAULT_ETA = 0.003;
+
+  private final double minDt;
+  private final double maxDt;
+  private final double eta;
+
+  public AdaptiveStep(final double minDt, final double maxDt) {
+    this(minDt, maxDt, DEFAULT_ETA);
+  }
+
+  /**
+   * @param minDt the shortest step, in seconds
+   * @param maxDt the longest step, in seconds
+   * @param eta the fraction of the shortest timescale of the system taken as step
+   */
+  public AdaptiveStep(final double minDt, final double maxDt, final double eta) {
+    if (minDt <= 0) {
+      throw new IllegalArgumentException("Min dt should be > 0");
+    }
+    if (maxDt < minDt) {
+      throw new IllegalArgumentException("Max dt should be >= min dt");
+    }
+    if (eta <= 0) {
+      throw new IllegalArgumentException("Eta should be > 0");
+    }
+    this.minDt = minDt;
+    this.maxDt = maxDt;
+    this.eta = eta;
+  }
+
+  public double minDt() {
+    return minDt;
+  }
+
+  public double maxDt() {
+    return maxDt;
+  }
+
+  public double eta() {
+    return eta;
+  }
+
+  /**
+   * @param state the system whose step is picked
+   * @param g the gravitational constant
+   * @param firstMoving the slot of the first body that is integrated; pairs of bodies before it are not considered,
+   *                    since their motion does not depend on the step, e.g., planets driven by an ephemeris
+   * @return the step size for the current positions and velocities of {@code state}
+   */
+  public double stepSize(final NBodyState state, final double g, final int firstMoving) {
+    double timescale2 = Double.MAX_VALUE; // squared, so that a single sqrt is taken
+    for (int j = Math.max(1, firstMoving); j < state.size(); j++) {
+      for (int i = 0; i < j; i++) {
+        timescale2 = Math.min(timescale2, timescale2(state, g, i, j));
+      }
+    }
+    return Math.max(minDt, Math.min(maxDt, eta * sqrt(timescale2)));
+  }
+
+  /**
+   * @param state the system whose body's step is picked
+   * @param g the gravitational constant
+   * @param i the slot of the body
+   * @return the step size of the body at slot {@code i}, from its timescales with every other body
+   */
+  public double bodyStepSize(final NBodyState state, final double g, final int i) {
+    double timescale2 = Double.MAX_VALUE;
+    for (int j = 0; j < state.size(); j++) {
+      if (j != i) {
+        timescale2 = Math.min(timescale2, timescale2(state, g, i, j));
+      }
+    }
+    return Math.max(minDt, Math.min(maxDt, eta * sqrt(timescale2)));
+  }
+
+  // squared timescale of the pair of bodies at slots i and j
+  private static double timescale2(final NBodyState state, final double g, final int i, final int j) {
+    final double dx = state.x()[j] - state.x()[i];
+    final double dy = state.y()[j] - state.y()[i];
+    final double dvx = state.vx()[j] - state.vx()[i];
+    final double dvy = state.vy()[j] - state.vy()[i];
+    final double distancePow2 = dx * dx + dy * dy;
+    final double speedPow2 = dvx * dvx + dvy * dvy;
+    final double freeFall2 = distancePow2 * sqrt(distancePow2) / (g * (state.mass()[i] + state.mass()[j]));
+    return speedPow2 > 0 ? Math.min(distancePow2 / speedPow2, freeFall2) : freeFall2;
+  }
+}
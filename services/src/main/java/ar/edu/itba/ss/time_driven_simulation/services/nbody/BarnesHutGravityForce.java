@@ -0,0 +1,310 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import java.util.Arrays;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * Barnes-Hut O(N log N) approximation of the gravitational forces, using a quadtree.
+ * <P>
+ * A cell of side {@code s} whose center of mass is at distance {@code d} from a body is taken as a single
+ * point mass when {@code s / d < theta}; otherwise it is opened and its children are visited.
+ * {@code theta = 0} opens every cell, which is the same as the exact direct sum.
+ * <P>
+ * The tree is rebuilt at each step, but over flat node buffers that are recycled between steps,
+ * so once the buffers reached the size needed by the system no allocations are made.
+ */
+public class BarnesHutGravityForce implements GravityForceProvider {
+  /**
+   * Below this depth, cells are so small that their centers can no longer be split with doubles;
+   * bodies reaching it are chained at the same leaf
+   */
+  private static final int MAX_DEPTH = 48;
+  private static final int NO_NODE = -1;
+
+  private final double theta;
+  private final double theta2;
+
+  // quadtree nodes. Children of a node are contiguous, starting at firstChild
+  private int nNodes;
+  private int[] firstChild;
+  private int[] leafHead; // first body of the leaf's chain
+  private double[] centerX;
+  private double[] centerY;
+  private double[] halfSize;
+  private double[] nodeMass;
+  private double[] comX; // center of mass
+  private double[] comY;
+
+  // bodies
+  private int[] nextInLeaf;
+  private int[] treeOrder; // bodies sorted by a depth-first traversal of the tree
+
+  private final int[] stack = new int[3 * MAX_DEPTH + 4];
+
+  /**
+   * @param theta the opening angle. The greater it is, the faster and less accurate the approximation
+   */
+  public BarnesHutGravityForce(final double theta) {
+    if (theta < 0) {
+      throw new IllegalArgumentException("Theta should be >= 0");
+    }
+    this.theta = theta;
+    this.theta2 = theta * theta;
+    allocateNodes(64);
+    this.nextInLeaf = new int[0];
+    this.treeOrder = new int[0];
+  }
+
+  @Override
+  public void computeForces(final NBodyState state, final double g) {
+    final int n = state.size();
+    if (n == 0) {
+      return;
+    }
+
+    build(state);
+
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+
+    // bodies are visited in tree order, so consecutive walks share most of their nodes
+    for (int k = 0; k < n; k++) {
+      final int i = treeOrder[k];
+      final double xi = x[i];
+      final double yi = y[i];
+      double forceX = 0;
+      double forceY = 0;
+
+      int sp = 0;
+      stack[sp++] = 0;
+      while (sp > 0) {
+        final int node = stack[--sp];
+        if (nodeMass[node] == 0) {
+          continue;
+        }
+
+        if (firstChild[node] == NO_NODE) {
+          // leaf => interact directly with each of its bodies
+          for (int j = leafHead[node]; j != NO_NODE; j = nextInLeaf[j]) {
+            if (j == i) {
+              continue;
+            }
+            final double dx = x[j] - xi;
+            final double dy = y[j] - yi;
+            final double inverseDistance = 1 / sqrt(dx * dx + dy * dy);
+            final double factor = mass[j] * inverseDistance * inverseDistance * inverseDistance;
+            forceX += factor * dx;
+            forceY += factor * dy;
+          }
+          continue;
+        }
+
+        final double dx = comX[node] - xi;
+        final double dy = comY[node] - yi;
+        final double distancePow2 = dx * dx + dy * dy;
+        final double size = 2 * halfSize[node];
+        if (size * size < theta2 * distancePow2 && !contains(node, xi, yi)) {
+          // far enough => the whole cell acts as a point mass at its center of mass
+          final double inverseDistance = 1 / sqrt(distancePow2);
+          final double factor = nodeMass[node] * inverseDistance * inverseDistance * inverseDistance;
+          forceX += factor * dx;
+          forceY += factor * dy;
+        } else {
+          final int child = firstChild[node];
+          stack[sp++] = child;
+          stack[sp++] = child + 1;
+          stack[sp++] = child + 2;
+          stack[sp++] = child + 3;
+        }
+      }
+
+      final double gMi = g * mass[i];
+      fx[i] = gMi * forceX;
+      fy[i] = gMi * forceY;
+    }
+  }
+
+  @Override
+  public GravityForceProvider fork() {
+    // tree buffers are reused between evaluations => each copy needs its own
+    return new BarnesHutGravityForce(theta);
+  }
+
+  /**
+   * @return the amount of nodes of the last built tree
+   */
+  public int nodes() {
+    return nNodes;
+  }
+
+  // private methods
+
+  private void build(final NBodyState state) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+
+    if (nextInLeaf.length < n) {
+      nextInLeaf = new int[state.x().length];
+      treeOrder = new int[state.x().length];
+    }
+
+    // square cell containing all bodies, used as root
+    double minX = x[0], maxX = x[0], minY = y[0], maxY = y[0];
+    for (int i = 1; i < n; i++) {
+      if (x[i] < minX) minX = x[i];
+      if (x[i] > maxX) maxX = x[i];
+      if (y[i] < minY) minY = y[i];
+      if (y[i] > maxY) maxY = y[i];
+    }
+    double half = max(maxX - minX, maxY - minY) / 2;
+    half = half > 0 ? half * (1 + 1e-9) : 1;
+
+    nNodes = 0;
+    newNode((minX + maxX) / 2, (minY + maxY) / 2, half);
+
+    for (int i = 0; i < n; i++) {
+      insert(i, x, y);
+    }
+
+    // children are always created after their parents, so a reverse pass sees children first
+    for (int node = nNodes - 1; node >= 0; node--) {
+      double m = 0, mx = 0, my = 0;
+      final int child = firstChild[node];
+      if (child == NO_NODE) {
+        for (int j = leafHead[node]; j != NO_NODE; j = nextInLeaf[j]) {
+          m += mass[j];
+          mx += mass[j] * x[j];
+          my += mass[j] * y[j];
+        }
+      } else {
+        for (int c = child; c < child + 4; c++) {
+          m += nodeMass[c];
+          mx += nodeMass[c] * comX[c];
+          my += nodeMass[c] * comY[c];
+        }
+      }
+      nodeMass[node] = m;
+      comX[node] = m > 0 ? mx / m : centerX[node];
+      comY[node] = m > 0 ? my / m : centerY[node];
+    }
+
+    sortBodies();
+  }
+
+  private void sortBodies() {
+    int k = 0;
+    int sp = 0;
+    stack[sp++] = 0;
+    while (sp > 0) {
+      final int node = stack[--sp];
+      final int child = firstChild[node];
+      if (child == NO_NODE) {
+        for (int j = leafHead[node]; j != NO_NODE; j = nextInLeaf[j]) {
+          treeOrder[k++] = j;
+        }
+      } else {
+        stack[sp++] = child;
+        stack[sp++] = child + 1;
+        stack[sp++] = child + 2;
+        stack[sp++] = child + 3;
+      }
+    }
+  }
+
+  private void insert(final int body, final double[] x, final double[] y) {
+    final double bx = x[body];
+    final double by = y[body];
+    int node = 0;
+    int depth = 0;
+    while (true) {
+      if (firstChild[node] != NO_NODE) {
+        node = firstChild[node] + quadrant(node, bx, by);
+        depth++;
+        continue;
+      }
+
+      if (leafHead[node] == NO_NODE) {
+        leafHead[node] = body;
+        nextInLeaf[body] = NO_NODE;
+        return;
+      }
+
+      if (depth >= MAX_DEPTH) {
+        nextInLeaf[body] = leafHead[node];
+        leafHead[node] = body;
+        return;
+      }
+
+      // occupied leaf => split it and push its body one level down; then keep on descending
+      final int resident = leafHead[node];
+      leafHead[node] = NO_NODE;
+      subdivide(node);
+      final int residentChild = firstChild[node] + quadrant(node, x[resident], y[resident]);
+      leafHead[residentChild] = resident;
+      nextInLeaf[resident] = NO_NODE;
+    }
+  }
+
+  private int quadrant(final int node, final double bx, final double by) {
+    return (bx >= centerX[node] ? 1 : 0) + (by >= centerY[node] ? 2 : 0);
+  }
+
+  private boolean contains(final int node, final double bx, final double by) {
+    return abs(bx - centerX[node]) <= halfSize[node] && abs(by - centerY[node]) <= halfSize[node];
+  }
+
+  private void subdivide(final int node) {
+    final double half = halfSize[node] / 2;
+    final double cx = centerX[node];
+    final double cy = centerY[node];
+    // same order as quadrant(): [-x -y], [+x -y], [-x +y], [+x +y]
+    firstChild[node] = newNode(cx - half, cy - half, half);
+    newNode(cx + half, cy - half, half);
+    newNode(cx - half, cy + half, half);
+    newNode(cx + half, cy + half, half);
+  }
+
+  private int newNode(final double cx, final double cy, final double half) {
+    if (nNodes == firstChild.length) {
+      growNodes(2 * nNodes);
+    }
+    final int node = nNodes++;
+    firstChild[node] = NO_NODE;
+    leafHead[node] = NO_NODE;
+    centerX[node] = cx;
+    centerY[node] = cy;
+    halfSize[node] = half;
+    nodeMass[node] = 0;
+    return node;
+  }
+
+  private void allocateNodes(final int capacity) {
+    firstChild = new int[capacity];
+    leafHead = new int[capacity];
+    centerX = new double[capacity];
+    centerY = new double[capacity];
+    halfSize = new double[capacity];
+    nodeMass = new double[capacity];
+    comX = new double[capacity];
+    comY = new double[capacity];
+  }
+
+  private void growNodes(final int capacity) {
+    firstChild = Arrays.copyOf(firstChild, capacity);
+    leafHead = Arrays.copyOf(leafHead, capacity);
+    centerX = Arrays.copyOf(centerX, capacity);
+    centerY = Arrays.copyOf(centerY, capacity);
+    halfSize = Arrays.copyOf(halfSize, capacity);
+    nodeMass = Arrays.copyOf(nodeMass, capacity);
+    comX = Arrays.copyOf(comX, capacity);
+    comY = Arrays.copyOf(comY, capacity);
+  }
+}
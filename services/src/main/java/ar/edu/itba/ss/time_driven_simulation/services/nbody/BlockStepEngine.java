@@ -0,0 +1,237 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import java.util.Arrays;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Gravitational N-body engine with block (hierarchical) individual time steps: each body is evolved with its own
+ * kick-drift-kick leapfrog step, {@code maxDt / 2^level}, picked by an {@link AdaptiveStep} for that body only.
+ * <P>
+ * Levels are powers of two, so the steps of every body end on a common grid of ticks of the finest step, and a body
+ * can only move to a coarser level where both grids meet. Each call evolves the system up to the next tick where a
+ * step ends: every body drifts with its half-step velocity, which predicts the positions of those in the middle of
+ * their steps, and only the bodies whose steps end there are active: their forces are calculated, with the current
+ * positions of all the bodies, and they are kicked. So the Sun and the planets run on coarse levels, and most of the
+ * force work goes to the ship while it is close to a planet.
+ * <P>
+ * Velocities are the ones at the middle of each body's step, as the leapfrog's drift uses them, and forces are the
+ * ones of its last evaluation. The positions before the last call are kept as r(t-dt).
+ * The amount of steps run on each level, i.e., of force evaluations over a single body, is kept,
+ * see {@link #stepsPerLevel()}.
+ */
+public class BlockStepEngine implements NBodyIntegrator {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  private static final int MAX_LEVELS = 40;
+
+  private final NBodyState state;
+  private final AdaptiveStep steps;
+  private final double g;
+  private final int levels;
+  private final double tickDt; // step of the finest level
+
+  private long now; // current time, in ticks since the engine was built
+  private int bodies; // amount of bodies that were announced
+  private int[] level = new int[0];
+  private long[] stepEnd = new long[0]; // tick where the current step of each body ends
+  private final long[] stepsPerLevel;
+
+  /**
+   * @param state the system to be evolved
+   * @param steps the criterion used to pick the step of each body; its {@code maxDt} is the step of level 0, and
+   *              its {@code minDt} bounds the one of the finest level
+   * @param g the gravitational constant
+   */
+  public BlockStepEngine(final NBodyState state, final AdaptiveStep steps, final double g) {
+    this.state = state;
+    this.steps = steps;
+    this.g = g;
+    final int finest = (int) Math.ceil(Math.log(steps.maxDt() / steps.minDt()) / Math.log(2));
+    if (finest >= MAX_LEVELS) {
+      throw new IllegalArgumentException("Max dt / min dt should be < 2^" + MAX_LEVELS);
+    }
+    this.levels = finest + 1;
+    this.tickDt = steps.maxDt() / (1L << finest);
+    this.stepsPerLevel = new long[levels];
+  }
+
+  private BlockStepEngine(final NBodyState state, final BlockStepEngine other) {
+    this.state = state;
+    this.steps = other.steps;
+    this.g = other.g;
+    this.levels = other.levels;
+    this.tickDt = other.tickDt;
+    this.now = other.now;
+    this.bodies = other.bodies;
+    this.level = other.level.clone();
+    this.stepEnd = other.stepEnd.clone();
+    this.stepsPerLevel = other.stepsPerLevel.clone();
+  }
+
+  @Override
+  public NBodyState state() {
+    return state;
+  }
+
+  @Override
+  public BlockStepEngine fork(final NBodyState state) {
+    return new BlockStepEngine(state, this);
+  }
+
+  /**
+   * @return the amount of levels; level {@code l} steps {@code maxDt / 2^l} seconds
+   */
+  public int levels() {
+    return levels;
+  }
+
+  /**
+   * @return a copy of the amount of steps run on each level, by level
+   */
+  public long[] stepsPerLevel() {
+    return stepsPerLevel.clone();
+  }
+
+  /**
+   * Each new body starts a step at the current tick, on the level picked for it, with the forces caused by the
+   * current positions of the rest
+   */
+  @Override
+  public void bodiesAdded(final int firstTestParticle) {
+    final int n = state.size();
+    if (level.length < n) {
+      level = Arrays.copyOf(level, n);
+      stepEnd = Arrays.copyOf(stepEnd, n);
+    }
+    for (int i = Math.max(bodies, firstTestParticle); i < n; i++) {
+      computeForce(i, firstTestParticle);
+      startStep(i);
+    }
+    bodies = n;
+  }
+
+  /**
+   * Evolves the system up to the next tick where the step of any body ends. Steps are never shortened
+   * @return the time evolved, in seconds
+   */
+  @Override
+  public double evolve(final double maxDt) {
+    return evolve(0, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The ephemeris is looked up at the time of the engine's ticks, which started at 0. Steps are never shortened
+   */
+  @Override
+  public double evolveTestParticles(final int firstTestParticle, final PlanetaryEphemeris ephemeris,
+                                    final double time, final double maxDt) {
+    return evolve(firstTestParticle, ephemeris);
+  }
+
+  // private methods
+
+  private double evolve(final int firstMoving, final PlanetaryEphemeris ephemeris) {
+    final int n = state.size();
+    long next = Long.MAX_VALUE;
+    for (int i = firstMoving; i < n; i++) {
+      next = Math.min(next, stepEnd[i]);
+    }
+    if (next == Long.MAX_VALUE) { // nothing to evolve => up to the next step of level 0
+      next = (now / stride(0) + 1) * stride(0);
+    }
+    final double h = (next - now) * tickDt;
+
+    // drift every body, which predicts the ones in the middle of their steps
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] ageInDays = state.ageInDays();
+    final double days = h / SECONDS_PER_DAY;
+    for (int i = firstMoving; i < n; i++) {
+      state.prevX()[i] = x[i];
+      state.prevY()[i] = y[i];
+      x[i] += vx[i] * h;
+      y[i] += vy[i] * h;
+      ageInDays[i] += days;
+    }
+    now = next;
+    if (ephemeris != null) {
+      ephemeris.stateAt(now * tickDt, state);
+    }
+
+    // the active bodies close their steps and start the next ones
+    for (int i = firstMoving; i < n; i++) {
+      if (stepEnd[i] == now) {
+        computeForce(i, firstMoving);
+      }
+    }
+    for (int i = firstMoving; i < n; i++) {
+      if (stepEnd[i] == now) {
+        kick(i, levelDt(level[i]) / 2);
+        stepsPerLevel[level[i]]++;
+        startStep(i);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Picks the level of the body at slot i for a step starting at the current tick, and kicks it for half of it
+   */
+  private void startStep(final int i) {
+    final double dt = steps.bodyStepSize(state, g, i);
+    int l = dt >= steps.maxDt() ? 0 : (int) Math.ceil(Math.log(steps.maxDt() / dt) / Math.log(2));
+    l = Math.min(l, levels - 1);
+    while (now % stride(l) != 0) { // coarser levels can only start where their grid meets the finer ones'
+      l++;
+    }
+    level[i] = l;
+    stepEnd[i] = now + stride(l);
+    kick(i, levelDt(l) / 2);
+  }
+
+  private void kick(final int i, final double h) {
+    state.vx()[i] += state.fx()[i] / state.mass()[i] * h;
+    state.vy()[i] += state.fy()[i] / state.mass()[i] * h;
+  }
+
+  private long stride(final int level) {
+    return 1L << (levels - 1 - level);
+  }
+
+  private double levelDt(final int level) {
+    return stride(level) * tickDt;
+  }
+
+  /**
+   * Calculates the force over the body at slot i caused by every other body, or only by the ones at slots
+   * [0, firstTestParticle) if it is a test particle
+   */
+  private void computeForce(final int i, final int firstTestParticle) {
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+    final double gMi = g * mass[i];
+    final int to = firstTestParticle == 0 ? state.size() : firstTestParticle;
+    double forceX = 0;
+    double forceY = 0;
+
+    for (int j = 0; j < to; j++) {
+      if (j == i) {
+        continue;
+      }
+      final double dx = x[j] - x[i];
+      final double dy = y[j] - y[i];
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * mass[j] / distancePow2;
+      final double distance = sqrt(distancePow2);
+      forceX += forceModule * (dx / distance);
+      forceY += forceModule * (dy / distance);
+    }
+
+    state.fx()[i] = forceX;
+    state.fy()[i] = forceY;
+  }
+}
@@ -0,0 +1,85 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs loops over body slots split into chunks, on a fork-join pool of a configurable parallelism.
+ * <P>
+ * Loops shorter than the given threshold are run on the calling thread, so small systems do not pay for the
+ * synchronization. Chunk boundaries do not depend on the parallelism level, and each chunk only writes to its own
+ * slots, so results are the same regardless of the amount of threads used.
+ */
+public class ChunkExecutor {
+  /**
+   * Default amount of bodies from which loops are run in parallel
+   */
+  public static final int DEFAULT_THRESHOLD = 512;
+  private static final int CHUNK_SIZE = 64;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /**
+   * @param parallelism the amount of threads to be used
+   * @param threshold the minimum amount of slots from which loops are run in parallel
+   */
+  public ChunkExecutor(final int parallelism, final int threshold) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism should be >= 1");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.threshold = threshold;
+  }
+
+  public int parallelism() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Runs {@code task} over the slots [0, n), split into chunks
+   * @param n the amount of slots
+   * @param task the work to be done over each chunk
+   */
+  public void forEachChunk(final int n, final ChunkTask task) {
+    if (n < threshold || pool.getParallelism() == 1) {
+      task.run(0, n);
+      return;
+    }
+    pool.invoke(new ChunkAction(task, 0, n));
+  }
+
+  /**
+   * Work to be done over the slots [from, to)
+   */
+  @FunctionalInterface
+  public interface ChunkTask {
+    void run(int from, int to);
+  }
+
+  private static class ChunkAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final ChunkTask task;
+    private final int from;
+    private final int to;
+
+    private ChunkAction(final ChunkTask task, final int from, final int to) {
+      this.task = task;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK_SIZE) {
+        task.run(from, to);
+        return;
+      }
+      // split at a chunk boundary, so chunks are always the same
+      final int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      final int middle = from + (chunks / 2) * CHUNK_SIZE;
+      invokeAll(new ChunkAction(task, from, middle), new ChunkAction(task, middle, to));
+    }
+  }
+}
@@ -0,0 +1,531 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import java.util.Arrays;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+/**
+ * O(N) fast multipole method (FMM) approximation of the gravitational forces over a uniform quadtree.
+ * <P>
+ * Bodies move on a plane but interact with the Newtonian 1/r potential, which is not harmonic in 2D, so the
+ * classic complex-analytic expansions of the logarithmic potential can not be used. Instead, with z = x + iy,
+ * the kernel is split as 1/|z| = z^(-1/2) * conj(z)^(-1/2), and each factor is expanded as a power series.
+ * This leads to complex multipole and local expansions with two indexes:
+ * <pre>
+ *   multipole: phi(z) = Σ_(k,l) a_k * a_l * M_kl * z^(-1/2-k) * conj(z)^(-1/2-l),  M_kl = Σ_j m_j * w_j^k * conj(w_j)^l
+ *   local:     phi(z) = Σ_(n,m) L_nm * u^n * conj(u)^m
+ * </pre>
+ * with {@code a_k = (2k)! / (4^k * k!^2)} and {@code 0 <= k, l, n, m <= order}.
+ * Every translation (M2M, M2L, L2L) is then a product {@code A * X * A^H} of (order+1) x (order+1) matrices,
+ * whose operators only depend on the level and relative position of the boxes, so they are precomputed once
+ * per step.
+ * <P>
+ * The error decreases geometrically with the {@code order} of the expansions.
+ */
+public class FastMultipoleGravityForce implements GravityForceProvider {
+  /**
+   * Mean amount of bodies per leaf the tree's depth is chosen for
+   */
+  private static final int LEAF_TARGET = 12;
+  private static final int MAX_LEVEL = 10;
+  /**
+   * M2L offsets go from -3 to 3 boxes in each direction
+   */
+  private static final int OFFSETS = 7;
+
+  private final int order;
+  private final int p1; // order + 1
+  private final int pp; // (order + 1)^2, size of each expansion
+
+  private final double[] a; // a_k
+  private final double[] halfBinomial; // binom(-1/2 - k, n), flattened as [k][n]
+  private final double[] binomial; // binom(n, k), flattened as [n][k]
+
+  // tree
+  private int levels; // leaves are at level 'levels'
+  private double minX;
+  private double minY;
+  private double rootSize;
+  private int[] count; // bodies per box, all levels
+  private int[] leafStart; // start of each leaf in 'sorted'
+  private int[] sorted; // bodies sorted by leaf
+  // positions and masses copied in leaf order, so the near field walks contiguous memory
+  private double[] sortedX;
+  private double[] sortedY;
+  private double[] sortedMass;
+  private int[] leafOf;
+  private int[] leafCursor;
+
+  // expansions of all boxes, all levels
+  private double[] mRe;
+  private double[] mIm;
+  private double[] lRe;
+  private double[] lIm;
+
+  // translation operators, by level
+  private double[] m2lRe; // [level][offset][pp]
+  private double[] m2lIm;
+  private double[] m2lScale; // 1/|D|, [level][offset]
+  private double[] m2mRe; // [level][child][pp]
+  private double[] m2mIm;
+  private double[] l2lRe; // [level][child][pp]
+  private double[] l2lIm;
+
+  // temporary values
+  private final double[] tmpRe;
+  private final double[] tmpIm;
+  private final double[] powRe;
+  private final double[] powIm;
+
+  /**
+   * @param order the order of the multipole and local expansions. The greater it is, the slower and more accurate
+   *              the approximation
+   */
+  public FastMultipoleGravityForce(final int order) {
+    if (order < 1) {
+      throw new IllegalArgumentException("Order should be >= 1");
+    }
+    this.order = order;
+    this.p1 = order + 1;
+    this.pp = p1 * p1;
+
+    this.a = new double[p1];
+    this.halfBinomial = new double[pp];
+    this.binomial = new double[pp];
+    for (int k = 0; k <= order; k++) {
+      a[k] = k == 0 ? 1 : a[k - 1] * (2 * k - 1) / (2.0 * k);
+      double b = 1;
+      for (int n = 0; n <= order; n++) {
+        halfBinomial[k * p1 + n] = b;
+        b *= (-0.5 - k - n) / (n + 1);
+      }
+    }
+    for (int n = 0; n <= order; n++) {
+      binomial[n * p1] = 1;
+      for (int k = 1; k <= n; k++) {
+        binomial[n * p1 + k] = binomial[n * p1 + k - 1] * (n - k + 1) / k;
+      }
+    }
+
+    this.tmpRe = new double[pp];
+    this.tmpIm = new double[pp];
+    this.powRe = new double[2 * p1];
+    this.powIm = new double[2 * p1];
+
+    this.levels = -1;
+    this.leafOf = new int[0];
+    this.sorted = new int[0];
+    this.sortedX = new double[0];
+    this.sortedY = new double[0];
+    this.sortedMass = new double[0];
+  }
+
+  public int order() {
+    return order;
+  }
+
+  @Override
+  public void computeForces(final NBodyState state, final double g) {
+    final int n = state.size();
+    if (n == 0) {
+      return;
+    }
+
+    build(state);
+
+    if (levels >= 2) {
+      upwardPass();
+      interactions();
+      downwardPass();
+    }
+
+    evaluate(state, g);
+  }
+
+  @Override
+  public GravityForceProvider fork() {
+    // expansions and leaf buffers are reused between evaluations => each copy needs its own
+    return new FastMultipoleGravityForce(order);
+  }
+
+  // private methods
+
+  private void build(final NBodyState state) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+
+    final int newLevels = (int) min(MAX_LEVEL, max(0, floor(log((double) n / LEAF_TARGET) / log(4))));
+    if (newLevels != levels) {
+      allocateTree(newLevels);
+    }
+    if (leafOf.length < n) {
+      leafOf = new int[x.length];
+      sorted = new int[x.length];
+      sortedX = new double[x.length];
+      sortedY = new double[x.length];
+      sortedMass = new double[x.length];
+    }
+
+    double maxX, maxY;
+    minX = maxX = x[0];
+    minY = maxY = y[0];
+    for (int i = 1; i < n; i++) {
+      if (x[i] < minX) minX = x[i];
+      if (x[i] > maxX) maxX = x[i];
+      if (y[i] < minY) minY = y[i];
+      if (y[i] > maxY) maxY = y[i];
+    }
+    rootSize = max(maxX - minX, maxY - minY);
+    rootSize = rootSize > 0 ? rootSize * (1 + 1e-9) : 1;
+
+    // bin bodies into leaves with a counting sort
+    final int side = 1 << levels;
+    final int leafOffset = levelOffset(levels);
+    final int nLeaves = side * side;
+    Arrays.fill(count, 0);
+    for (int i = 0; i < n; i++) {
+      final int ix = min(side - 1, (int) ((x[i] - minX) / rootSize * side));
+      final int iy = min(side - 1, (int) ((y[i] - minY) / rootSize * side));
+      leafOf[i] = iy * side + ix;
+      count[leafOffset + leafOf[i]]++;
+    }
+    leafStart[0] = 0;
+    for (int leaf = 0; leaf < nLeaves; leaf++) {
+      leafStart[leaf + 1] = leafStart[leaf] + count[leafOffset + leaf];
+    }
+    System.arraycopy(leafStart, 0, leafCursor, 0, nLeaves);
+    final double[] mass = state.mass();
+    for (int i = 0; i < n; i++) {
+      final int s = leafCursor[leafOf[i]]++;
+      sorted[s] = i;
+      sortedX[s] = x[i];
+      sortedY[s] = y[i];
+      sortedMass[s] = mass[i];
+    }
+
+    // box counts of the upper levels
+    for (int level = levels - 1; level >= 0; level--) {
+      final int levelSide = 1 << level;
+      for (int iy = 0; iy < levelSide; iy++) {
+        for (int ix = 0; ix < levelSide; ix++) {
+          int c = 0;
+          for (int q = 0; q < 4; q++) {
+            c += count[box(level + 1, 2 * ix + (q & 1), 2 * iy + (q >> 1))];
+          }
+          count[box(level, ix, iy)] = c;
+        }
+      }
+    }
+
+    precomputeOperators();
+  }
+
+  private void allocateTree(final int newLevels) {
+    levels = newLevels;
+    final int boxes = levelOffset(levels + 1);
+    final int nLeaves = 1 << (2 * levels);
+    count = new int[boxes];
+    leafStart = new int[nLeaves + 1];
+    leafCursor = new int[nLeaves];
+    mRe = new double[boxes * pp];
+    mIm = new double[boxes * pp];
+    lRe = new double[boxes * pp];
+    lIm = new double[boxes * pp];
+    m2lRe = new double[(levels + 1) * OFFSETS * OFFSETS * pp];
+    m2lIm = new double[(levels + 1) * OFFSETS * OFFSETS * pp];
+    m2lScale = new double[(levels + 1) * OFFSETS * OFFSETS];
+    m2mRe = new double[(levels + 1) * 4 * pp];
+    m2mIm = new double[(levels + 1) * 4 * pp];
+    l2lRe = new double[(levels + 1) * 4 * pp];
+    l2lIm = new double[(levels + 1) * 4 * pp];
+  }
+
+  private void precomputeOperators() {
+    for (int level = 0; level <= levels; level++) {
+      final double size = rootSize / (1 << level);
+
+      // M2L: T_nk = a_k * binom(-1/2-k, n) * D^-(k+n), with D = target's center - source's center
+      for (int ox = -3; ox <= 3; ox++) {
+        for (int oy = -3; oy <= 3; oy++) {
+          final int offset = (level * OFFSETS + ox + 3) * OFFSETS + oy + 3;
+          if (Math.abs(ox) <= 1 && Math.abs(oy) <= 1) {
+            continue;
+          }
+          final double dRe = ox * size;
+          final double dIm = oy * size;
+          final double d2 = dRe * dRe + dIm * dIm;
+          m2lScale[offset] = 1 / sqrt(d2);
+          powers(dRe / d2, -dIm / d2, 2 * order); // powers of 1/D
+          for (int n = 0; n <= order; n++) {
+            for (int k = 0; k <= order; k++) {
+              final double c = a[k] * halfBinomial[k * p1 + n];
+              m2lRe[offset * pp + n * p1 + k] = c * powRe[k + n];
+              m2lIm[offset * pp + n * p1 + k] = c * powIm[k + n];
+            }
+          }
+        }
+      }
+
+      // M2M from the children at this level: S_ka = binom(k, a) * d^(k-a), with d = child's center - parent's center.
+      // L2L to the children uses its transpose: R_an = binom(n, a) * d^(n-a)
+      if (level == 0) {
+        continue;
+      }
+      for (int q = 0; q < 4; q++) {
+        final double dRe = ((q & 1) - 0.5) * size;
+        final double dIm = ((q >> 1) - 0.5) * size;
+        powers(dRe, dIm, order);
+        final int base = (level * 4 + q) * pp;
+        for (int k = 0; k <= order; k++) {
+          for (int j = 0; j <= k; j++) {
+            m2mRe[base + k * p1 + j] = binomial[k * p1 + j] * powRe[k - j];
+            m2mIm[base + k * p1 + j] = binomial[k * p1 + j] * powIm[k - j];
+            l2lRe[base + j * p1 + k] = m2mRe[base + k * p1 + j];
+            l2lIm[base + j * p1 + k] = m2mIm[base + k * p1 + j];
+          }
+        }
+      }
+    }
+  }
+
+  private void upwardPass() {
+    Arrays.fill(mRe, 0);
+    Arrays.fill(mIm, 0);
+
+    // P2M
+    final int side = 1 << levels;
+    final double leafSize = rootSize / side;
+    for (int iy = 0; iy < side; iy++) {
+      for (int ix = 0; ix < side; ix++) {
+        final int leaf = iy * side + ix;
+        final int box = box(levels, ix, iy);
+        if (count[box] == 0) {
+          continue;
+        }
+        final double cx = minX + (ix + 0.5) * leafSize;
+        final double cy = minY + (iy + 0.5) * leafSize;
+        final int base = box * pp;
+        for (int s = leafStart[leaf]; s < leafStart[leaf + 1]; s++) {
+          powers(sortedX[s] - cx, sortedY[s] - cy, order);
+          for (int k = 0; k <= order; k++) {
+            final double wkRe = sortedMass[s] * powRe[k];
+            final double wkIm = sortedMass[s] * powIm[k];
+            for (int l = 0; l <= order; l++) {
+              // w^k * conj(w)^l
+              mRe[base + k * p1 + l] += wkRe * powRe[l] + wkIm * powIm[l];
+              mIm[base + k * p1 + l] += wkIm * powRe[l] - wkRe * powIm[l];
+            }
+          }
+        }
+      }
+    }
+
+    // M2M
+    for (int level = levels; level > 2; level--) {
+      final int levelSide = 1 << level;
+      for (int iy = 0; iy < levelSide; iy++) {
+        for (int ix = 0; ix < levelSide; ix++) {
+          final int child = box(level, ix, iy);
+          if (count[child] == 0) {
+            continue;
+          }
+          final int q = (ix & 1) + 2 * (iy & 1);
+          final int parent = box(level - 1, ix >> 1, iy >> 1);
+          sandwich(m2mRe, m2mIm, (level * 4 + q) * pp,
+                  mRe, mIm, child * pp, 1, mRe, mIm, parent * pp);
+        }
+      }
+    }
+  }
+
+  private void interactions() {
+    Arrays.fill(lRe, 0);
+    Arrays.fill(lIm, 0);
+
+    for (int level = 2; level <= levels; level++) {
+      final int levelSide = 1 << level;
+      for (int ty = 0; ty < levelSide; ty++) {
+        for (int tx = 0; tx < levelSide; tx++) {
+          final int target = box(level, tx, ty);
+          if (count[target] == 0) {
+            continue;
+          }
+          // children of the parent's neighbours that are not neighbours of the target
+          final int fromX = max(0, 2 * ((tx >> 1) - 1));
+          final int toX = min(levelSide - 1, 2 * ((tx >> 1) + 1) + 1);
+          final int fromY = max(0, 2 * ((ty >> 1) - 1));
+          final int toY = min(levelSide - 1, 2 * ((ty >> 1) + 1) + 1);
+          for (int sy = fromY; sy <= toY; sy++) {
+            for (int sx = fromX; sx <= toX; sx++) {
+              if (Math.abs(sx - tx) <= 1 && Math.abs(sy - ty) <= 1) {
+                continue;
+              }
+              final int source = box(level, sx, sy);
+              if (count[source] == 0) {
+                continue;
+              }
+              final int offset = (level * OFFSETS + tx - sx + 3) * OFFSETS + ty - sy + 3;
+              sandwich(m2lRe, m2lIm, offset * pp,
+                      mRe, mIm, source * pp, m2lScale[offset], lRe, lIm, target * pp);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void downwardPass() {
+    for (int level = 3; level <= levels; level++) {
+      final int levelSide = 1 << level;
+      for (int iy = 0; iy < levelSide; iy++) {
+        for (int ix = 0; ix < levelSide; ix++) {
+          final int child = box(level, ix, iy);
+          if (count[child] == 0) {
+            continue;
+          }
+          final int q = (ix & 1) + 2 * (iy & 1);
+          final int parent = box(level - 1, ix >> 1, iy >> 1);
+          sandwich(l2lRe, l2lIm, (level * 4 + q) * pp,
+                  lRe, lIm, parent * pp, 1, lRe, lIm, child * pp);
+        }
+      }
+    }
+  }
+
+  private void evaluate(final NBodyState state, final double g) {
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+
+    final int side = 1 << levels;
+    final double leafSize = rootSize / side;
+    for (int iy = 0; iy < side; iy++) {
+      for (int ix = 0; ix < side; ix++) {
+        final int leaf = iy * side + ix;
+        final int box = box(levels, ix, iy);
+        if (count[box] == 0) {
+          continue;
+        }
+        final double cx = minX + (ix + 0.5) * leafSize;
+        final double cy = minY + (iy + 0.5) * leafSize;
+        final int base = box * pp;
+
+        for (int s = leafStart[leaf]; s < leafStart[leaf + 1]; s++) {
+          final double xi = sortedX[s];
+          final double yi = sortedY[s];
+          double gradX = 0;
+          double gradY = 0;
+
+          // L2P: d(phi)/du = Σ n * L_nm * u^(n-1) * conj(u)^m; grad(phi) = (2 Re(d(phi)/du), -2 Im(d(phi)/du))
+          if (levels >= 2) {
+            powers(xi - cx, yi - cy, order);
+            double duRe = 0;
+            double duIm = 0;
+            for (int nn = 1; nn <= order; nn++) {
+              for (int m = 0; m <= order; m++) {
+                // u^(n-1) * conj(u)^m
+                final double tRe = powRe[nn - 1] * powRe[m] + powIm[nn - 1] * powIm[m];
+                final double tIm = powIm[nn - 1] * powRe[m] - powRe[nn - 1] * powIm[m];
+                final double cRe = lRe[base + nn * p1 + m];
+                final double cIm = lIm[base + nn * p1 + m];
+                duRe += nn * (cRe * tRe - cIm * tIm);
+                duIm += nn * (cRe * tIm + cIm * tRe);
+              }
+            }
+            gradX = 2 * duRe;
+            gradY = -2 * duIm;
+          }
+
+          // P2P with the bodies of the neighbour leaves, including its own
+          for (int ny = max(0, iy - 1); ny <= min(side - 1, iy + 1); ny++) {
+            for (int nx = max(0, ix - 1); nx <= min(side - 1, ix + 1); nx++) {
+              final int neighbour = ny * side + nx;
+              for (int t = leafStart[neighbour]; t < leafStart[neighbour + 1]; t++) {
+                if (t == s) {
+                  continue;
+                }
+                final double dx = sortedX[t] - xi;
+                final double dy = sortedY[t] - yi;
+                final double inverseDistance = 1 / sqrt(dx * dx + dy * dy);
+                final double factor = sortedMass[t] * inverseDistance * inverseDistance * inverseDistance;
+                gradX += factor * dx;
+                gradY += factor * dy;
+              }
+            }
+          }
+
+          final double gMi = g * sortedMass[s];
+          fx[sorted[s]] = gMi * gradX;
+          fy[sorted[s]] = gMi * gradY;
+        }
+      }
+    }
+  }
+
+  /**
+   * Y += scale * A * X * A^H, with all matrices of (order+1) x (order+1) complex values.
+   */
+  private void sandwich(final double[] aRe, final double[] aIm, final int aBase,
+                        final double[] xRe, final double[] xIm, final int xBase, final double scale,
+                        final double[] yRe, final double[] yIm, final int yBase) {
+    // tmp = X * A^H => tmp_km = Σ_l X_kl * conj(A_ml)
+    for (int k = 0; k <= order; k++) {
+      for (int m = 0; m <= order; m++) {
+        double re = 0;
+        double im = 0;
+        for (int l = 0; l <= order; l++) {
+          final double cRe = aRe[aBase + m * p1 + l];
+          final double cIm = aIm[aBase + m * p1 + l];
+          final double vRe = xRe[xBase + k * p1 + l];
+          final double vIm = xIm[xBase + k * p1 + l];
+          re += vRe * cRe + vIm * cIm;
+          im += vIm * cRe - vRe * cIm;
+        }
+        tmpRe[k * p1 + m] = re;
+        tmpIm[k * p1 + m] = im;
+      }
+    }
+
+    // Y += scale * A * tmp
+    for (int nn = 0; nn <= order; nn++) {
+      for (int m = 0; m <= order; m++) {
+        double re = 0;
+        double im = 0;
+        for (int k = 0; k <= order; k++) {
+          final double cRe = aRe[aBase + nn * p1 + k];
+          final double cIm = aIm[aBase + nn * p1 + k];
+          final double vRe = tmpRe[k * p1 + m];
+          final double vIm = tmpIm[k * p1 + m];
+          re += cRe * vRe - cIm * vIm;
+          im += cRe * vIm + cIm * vRe;
+        }
+        yRe[yBase + nn * p1 + m] += scale * re;
+        yIm[yBase + nn * p1 + m] += scale * im;
+      }
+    }
+  }
+
+  /**
+   * Saves z^k, for k from 0 to {@code maxPower}, in powRe and powIm
+   */
+  private void powers(final double re, final double im, final int maxPower) {
+    powRe[0] = 1;
+    powIm[0] = 0;
+    for (int k = 1; k <= maxPower; k++) {
+      powRe[k] = powRe[k - 1] * re - powIm[k - 1] * im;
+      powIm[k] = powRe[k - 1] * im + powIm[k - 1] * re;
+    }
+  }
+
+  private static int levelOffset(final int level) {
+    return ((1 << (2 * level)) - 1) / 3;
+  }
+
+  private static int box(final int level, final int ix, final int iy) {
+    return levelOffset(level) + (iy << level) + ix;
+  }
+}
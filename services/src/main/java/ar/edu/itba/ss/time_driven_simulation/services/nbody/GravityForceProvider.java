@@ -0,0 +1,25 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+/**
+ * Strategy used by the N-body engines to calculate the gravitational force over every body of a system
+ */
+public interface GravityForceProvider {
+  /**
+   * Calculates the total gravitational force over each body of the given {@code state},
+   * using its current positions r(t).
+   * <P>
+   * Results are saved in the state's {@code fx} and {@code fy} arrays, overwriting their previous values.
+   *
+   * @param state the system whose forces are going to be calculated
+   * @param g the gravitational constant to be used
+   */
+  void computeForces(NBodyState state, double g);
+
+  /**
+   * @return a provider equivalent to this one, to be used by an independent copy of the system.
+   * Providers without any state between evaluations may return themselves
+   */
+  default GravityForceProvider fork() {
+    return this;
+  }
+}
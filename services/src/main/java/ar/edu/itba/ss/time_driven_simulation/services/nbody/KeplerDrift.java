@@ -0,0 +1,128 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.cosh;
+import static java.lang.Math.sin;
+import static java.lang.Math.sinh;
+import static java.lang.Math.sqrt;
+
+/**
+ * Exact two-body drift of a body around a fixed center, with universal variables (Danby, 1992), so that elliptic,
+ * parabolic and hyperbolic orbits are handled alike.
+ * <P>
+ * The universal anomaly {@code s} of the drift solves Kepler's equation
+ * {@code r0 G1(s) + u G2(s) + mu G3(s) = dt}, where {@code Gk(s) = s^k ck(beta s^2)} are built upon
+ * the Stumpff functions {@code ck}, {@code u = r0 . v0} and {@code beta = 2 mu / r0 - v0^2}. It is solved with
+ * Laguerre-Conway iterations, which converge from the crude guess {@code dt / r0} even for long drifts.
+ * The new position and velocity are then given by the f and g functions of the old ones.
+ * Nothing is allocated.
+ */
+final class KeplerDrift {
+  private static final int MAX_ITERATIONS = 50;
+  private static final int LAGUERRE_N = 5;
+  private static final double SERIES_LIMIT = 0.1; // |beta s^2| below which the Stumpff functions are summed
+  private static final int SERIES_TERMS = 12;
+
+  private KeplerDrift() {
+  }
+
+  /**
+   * Drifts the body at slot {@code i} of the given arrays, which hold positions and velocities relative to
+   * the center, along its Kepler orbit
+   * @param mu the gravitational parameter of the orbit, i.e., {@code G} times the mass of the center
+   * @param dt the time to drift, in seconds
+   */
+  static void drift(final double mu, final double[] x, final double[] y, final double[] vx, final double[] vy,
+                    final int i, final double dt) {
+    final double x0 = x[i];
+    final double y0 = y[i];
+    final double vx0 = vx[i];
+    final double vy0 = vy[i];
+    final double r0 = sqrt(x0 * x0 + y0 * y0);
+    final double u = x0 * vx0 + y0 * vy0;
+    final double beta = 2 * mu / r0 - (vx0 * vx0 + vy0 * vy0);
+    final double zeta = mu - beta * r0;
+
+    double s = dt / r0;
+    for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      final double z = beta * s * s;
+      final double c0 = c0(z);
+      final double c1 = c1(z);
+      final double g1 = s * c1;
+      final double g2 = s * s * c2(z, c0);
+      final double g3 = s * s * s * c3(z, c1);
+
+      final double f = r0 * g1 + u * g2 + mu * g3 - dt;
+      final double fp = r0 * c0 + u * g1 + mu * g2; // the radius at s
+      final double fpp = zeta * g1 + u * c0;
+
+      final double root = sqrt(abs((LAGUERRE_N - 1) * (LAGUERRE_N - 1) * fp * fp
+              - LAGUERRE_N * (LAGUERRE_N - 1) * f * fpp));
+      final double ds = -LAGUERRE_N * f / (fp + (fp >= 0 ? root : -root));
+      s += ds;
+      if (abs(ds) <= 1e-15 * abs(s)) {
+        break;
+      }
+    }
+
+    final double z = beta * s * s;
+    final double c0 = c0(z);
+    final double c1 = c1(z);
+    final double g1 = s * c1;
+    final double g2 = s * s * c2(z, c0);
+    final double g3 = s * s * s * c3(z, c1);
+    final double r = r0 * c0 + u * g1 + mu * g2;
+
+    final double f = 1 - mu * g2 / r0;
+    final double g = dt - mu * g3;
+    final double fDot = -mu * g1 / (r0 * r);
+    final double gDot = 1 - mu * g2 / r;
+    x[i] = f * x0 + g * vx0;
+    y[i] = f * y0 + g * vy0;
+    vx[i] = fDot * x0 + gDot * vx0;
+    vy[i] = fDot * y0 + gDot * vy0;
+  }
+
+  // Stumpff functions; c2 and c3 are summed as series close to 0, where their closed forms lose precision
+
+  private static double c0(final double z) {
+    if (z > 0) {
+      return cos(sqrt(z));
+    }
+    return z < 0 ? cosh(sqrt(-z)) : 1;
+  }
+
+  private static double c1(final double z) {
+    if (abs(z) < SERIES_LIMIT) {
+      return 1 - z * series(z, 3);
+    }
+    final double root = sqrt(abs(z));
+    return z > 0 ? sin(root) / root : sinh(root) / root;
+  }
+
+  private static double c2(final double z, final double c0) {
+    return abs(z) < SERIES_LIMIT ? series(z, 2) : (1 - c0) / z;
+  }
+
+  private static double c3(final double z, final double c1) {
+    return abs(z) < SERIES_LIMIT ? series(z, 3) : (1 - c1) / z;
+  }
+
+  /**
+   * @return {@code sum_k (-z)^k / (2k + first)!}, i.e., c2 for {@code first = 2} and c3 for {@code first = 3}
+   */
+  private static double series(final double z, final int first) {
+    double term = 1;
+    for (int n = 2; n <= first; n++) {
+      term /= n;
+    }
+    double sum = term;
+    for (int k = 1; k < SERIES_TERMS; k++) {
+      final int n = 2 * k + first;
+      term *= -z / ((n - 1) * n);
+      sum += term;
+    }
+    return sum;
+  }
+}
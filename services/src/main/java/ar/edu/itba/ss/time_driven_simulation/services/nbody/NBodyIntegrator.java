@@ -0,0 +1,43 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+/**
+ * Gravitational N-body engine, other than the {@link VerletNBodyEngine}, that evolves the {@link NBodyState} it was
+ * built with a step at a time, either of a fixed size or of one picked as it is run.
+ * <P>
+ * Bodies are added to the state from outside, e.g., by a {@link VerletNBodyEngine} sharing it, and then announced
+ * to the engine with {@link #bodiesAdded(int)}.
+ */
+public interface NBodyIntegrator {
+  NBodyState state();
+
+  /**
+   * @param state a copy of this engine's state
+   * @return an engine that evolves the given state exactly as this one would evolve its own
+   */
+  NBodyIntegrator fork(NBodyState state);
+
+  /**
+   * Prepares the bodies added to the state since the last call to be evolved, e.g., by calculating their forces
+   * @param firstTestParticle the slot of the first test particle; 0 if there are none
+   */
+  void bodiesAdded(int firstTestParticle);
+
+  /**
+   * Evolves the whole system a single step
+   * @param maxDt the longest step to take, e.g., to stop exactly at a given time. Engines that cannot shorten
+   *              their steps may ignore it
+   * @return the size of the step, in seconds
+   */
+  double evolve(double maxDt);
+
+  /**
+   * Evolves a single step only the bodies at slots [firstTestParticle, n), as test particles, as
+   * {@link VerletNBodyEngine#evolveTestParticles(int)} does. The bodies at slots [0, firstTestParticle) are read
+   * from the given ephemeris, at the end of the step
+   * @param time the current time of the ephemeris, in seconds
+   * @param maxDt the longest step to take, e.g., to stop exactly at a given time. Engines that cannot shorten
+   *              their steps may ignore it
+   * @return the size of the step, in seconds
+   */
+  double evolveTestParticles(int firstTestParticle, PlanetaryEphemeris ephemeris, double time, double maxDt);
+}
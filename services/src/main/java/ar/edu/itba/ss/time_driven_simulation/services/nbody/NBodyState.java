@@ -0,0 +1,229 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Structure-of-arrays storage of an N-body system.
+ * <P>
+ * Each body lives in a slot, and all of its dynamic values are stored in flat primitive arrays indexed by that slot.
+ * {@link Particle} objects are only materialized on demand, i.e., when {@link #particle(int)}
+ * or {@link #particles()} are called, so the integration hot loops never allocate.
+ */
+public class NBodyState {
+  private static final int INITIAL_CAPACITY = 4;
+
+  private int n;
+
+  // body's constant values
+  private long[] ids;
+  private ParticleType[] types;
+  private double[] mass;
+  private double[] radio;
+
+  // body's dynamic values
+  private double[] x;
+  private double[] y;
+  private double[] prevX; // r(t-dt)
+  private double[] prevY;
+  private double[] vx;
+  private double[] vy;
+  private double[] fx;
+  private double[] fy;
+  private double[] ageInDays;
+
+  public NBodyState() {
+    this(INITIAL_CAPACITY);
+  }
+
+  public NBodyState(final int capacity) {
+    this.n = 0;
+    allocate(Math.max(1, capacity));
+  }
+
+  /**
+   * @return an independent deep copy of this state, including r(t-dt) of every body
+   */
+  public NBodyState copy() {
+    final NBodyState copy = new NBodyState(0);
+    copy.n = n;
+    copy.ids = ids.clone();
+    copy.types = types.clone();
+    copy.mass = mass.clone();
+    copy.radio = radio.clone();
+    copy.x = x.clone();
+    copy.y = y.clone();
+    copy.prevX = prevX.clone();
+    copy.prevY = prevY.clone();
+    copy.vx = vx.clone();
+    copy.vy = vy.clone();
+    copy.fx = fx.clone();
+    copy.fy = fy.clone();
+    copy.ageInDays = ageInDays.clone();
+    return copy;
+  }
+
+  /**
+   * Adds the given particle to a new slot of this state.
+   * Position, velocity, force and age are taken from the particle; r(t-dt) is set to the particle's position.
+   * @param particle the particle to be added
+   * @return the slot assigned to the particle
+   */
+  public int add(final Particle particle) {
+    if (n == x.length) {
+      grow(2 * n);
+    }
+    final int slot = n++;
+    ids[slot] = particle.id();
+    types[slot] = particle.type();
+    mass[slot] = particle.mass();
+    radio[slot] = particle.radio();
+    x[slot] = particle.x();
+    y[slot] = particle.y();
+    prevX[slot] = particle.x();
+    prevY[slot] = particle.y();
+    vx[slot] = particle.vx();
+    vy[slot] = particle.vy();
+    fx[slot] = particle.forceX();
+    fy[slot] = particle.forceY();
+    ageInDays[slot] = particle.ageInDays();
+    return slot;
+  }
+
+  /**
+   * Materializes the body at the given slot as an immutable particle.
+   * @param slot the body's slot
+   * @return a particle with the current values of the body
+   */
+  public Particle particle(final int slot) {
+    return Particle.builder(x[slot], y[slot])
+            .id(ids[slot])
+            .type(types[slot])
+            .mass(mass[slot])
+            .radio(radio[slot])
+            .vx(vx[slot])
+            .vy(vy[slot])
+            .forceX(fx[slot])
+            .forceY(fy[slot])
+            .ageInDays(ageInDays[slot])
+            .build();
+  }
+
+  /**
+   * @return a new list with all the bodies materialized as particles, ordered by slot
+   */
+  public List<Particle> particles() {
+    final List<Particle> particles = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      particles.add(particle(i));
+    }
+    return particles;
+  }
+
+  /**
+   * @param type the type to look for
+   * @return the first slot whose body is of the given type; -1 if none
+   */
+  public int slotOf(final ParticleType type) {
+    for (int i = 0; i < n; i++) {
+      if (types[i] == type) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public int size() {
+    return n;
+  }
+
+  public long[] ids() {
+    return ids;
+  }
+
+  public ParticleType[] types() {
+    return types;
+  }
+
+  public double[] mass() {
+    return mass;
+  }
+
+  public double[] radio() {
+    return radio;
+  }
+
+  public double[] x() {
+    return x;
+  }
+
+  public double[] y() {
+    return y;
+  }
+
+  public double[] prevX() {
+    return prevX;
+  }
+
+  public double[] prevY() {
+    return prevY;
+  }
+
+  public double[] vx() {
+    return vx;
+  }
+
+  public double[] vy() {
+    return vy;
+  }
+
+  public double[] fx() {
+    return fx;
+  }
+
+  public double[] fy() {
+    return fy;
+  }
+
+  public double[] ageInDays() {
+    return ageInDays;
+  }
+
+  // private methods
+
+  private void allocate(final int capacity) {
+    ids = new long[capacity];
+    types = new ParticleType[capacity];
+    mass = new double[capacity];
+    radio = new double[capacity];
+    x = new double[capacity];
+    y = new double[capacity];
+    prevX = new double[capacity];
+    prevY = new double[capacity];
+    vx = new double[capacity];
+    vy = new double[capacity];
+    fx = new double[capacity];
+    fy = new double[capacity];
+    ageInDays = new double[capacity];
+  }
+
+  private void grow(final int capacity) {
+    ids = Arrays.copyOf(ids, capacity);
+    types = Arrays.copyOf(types, capacity);
+    mass = Arrays.copyOf(mass, capacity);
+    radio = Arrays.copyOf(radio, capacity);
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    prevX = Arrays.copyOf(prevX, capacity);
+    prevY = Arrays.copyOf(prevY, capacity);
+    vx = Arrays.copyOf(vx, capacity);
+    vy = Arrays.copyOf(vy, capacity);
+    fx = Arrays.copyOf(fx, capacity);
+    fy = Arrays.copyOf(fy, capacity);
+    ageInDays = Arrays.copyOf(ageInDays, capacity);
+  }
+}
@@ -0,0 +1,51 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Exact O(N^2) direct sum of the gravitational forces.
+ * <P>
+ * Each unordered pair is visited only once: the force caused in i by j is added to i and,
+ * by Newton's third law, subtracted from j; both share the same G * mi * mj / r^3 factor.
+ */
+public class PairwiseGravityForce implements GravityForceProvider {
+  @Override
+  public void computeForces(final NBodyState state, final double g) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+
+    for (int i = 0; i < n; i++) {
+      fx[i] = 0;
+      fy[i] = 0;
+    }
+
+    for (int i = 0; i < n; i++) {
+      final double xi = x[i];
+      final double yi = y[i];
+      final double gMi = g * mass[i];
+      double forceX = 0;
+      double forceY = 0;
+
+      for (int j = i + 1; j < n; j++) {
+        final double dx = x[j] - xi;
+        final double dy = y[j] - yi;
+        final double distancePow2 = dx * dx + dy * dy;
+        final double inverseDistance = 1 / sqrt(distancePow2);
+        final double factor = gMi * mass[j] * inverseDistance * inverseDistance * inverseDistance;
+        final double forceXij = factor * dx;
+        final double forceYij = factor * dy;
+        forceX += forceXij;
+        forceY += forceYij;
+        fx[j] -= forceXij;
+        fy[j] -= forceYij;
+      }
+
+      fx[i] += forceX;
+      fy[i] += forceY;
+    }
+  }
+}
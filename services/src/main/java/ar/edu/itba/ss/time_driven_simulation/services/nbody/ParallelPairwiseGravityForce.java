@@ -0,0 +1,68 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Exact O(N^2) direct sum of the gravitational forces, split by body among the threads of a {@link ChunkExecutor}.
+ * <P>
+ * Unlike {@link PairwiseGravityForce}, each body adds the force of all the others by itself, always in slot order.
+ * This doubles the arithmetic but lets bodies be calculated independently, and keeps the result bit for bit
+ * the same regardless of the amount of threads used.
+ */
+public class ParallelPairwiseGravityForce implements GravityForceProvider {
+  private final ChunkExecutor executor;
+  private final ChunkExecutor.ChunkTask forcesTask = this::computeForces;
+
+  // values of the ongoing evaluation, read by the chunk tasks
+  private NBodyState state;
+  private double g;
+
+  public ParallelPairwiseGravityForce(final ChunkExecutor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void computeForces(final NBodyState state, final double g) {
+    this.state = state;
+    this.g = g;
+    executor.forEachChunk(state.size(), forcesTask);
+  }
+
+  @Override
+  public GravityForceProvider fork() {
+    // the ongoing evaluation is kept on fields => each copy needs its own; the executor can be shared
+    return new ParallelPairwiseGravityForce(executor);
+  }
+
+  private void computeForces(final int from, final int to) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+
+    for (int i = from; i < to; i++) {
+      final double xi = x[i];
+      final double yi = y[i];
+      double forceX = 0;
+      double forceY = 0;
+
+      for (int j = 0; j < n; j++) {
+        if (j == i) {
+          continue;
+        }
+        final double dx = x[j] - xi;
+        final double dy = y[j] - yi;
+        final double inverseDistance = 1 / sqrt(dx * dx + dy * dy);
+        final double factor = mass[j] * inverseDistance * inverseDistance * inverseDistance;
+        forceX += factor * dx;
+        forceY += factor * dy;
+      }
+
+      final double gMi = g * mass[i];
+      fx[i] = gMi * forceX;
+      fy[i] = gMi * forceY;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+
+/**
+ * In-memory table of the positions, velocities and forces of a set of massive bodies over time.
+ * <P>
+ * The bodies are integrated once with a {@link VerletNBodyEngine}, and a sample is stored every
+ * {@code sampleSteps} steps. Values between samples are obtained with cubic Hermite interpolation of the positions
+ * (using the velocities as derivatives) and linear interpolation of the forces. Up to a sample interval before the
+ * initial conditions, values are extrapolated from the first samples, for integrators whose substeps go back in time.
+ * <P>
+ * Once built, the table is never modified, so it can be shared among any amount of threads.
+ */
+public class PlanetaryEphemeris {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  // x, y, vx, vy, fx, fy
+  private static final int VALUES = 6;
+
+  private final int bodies;
+  private final double dt;
+  private final double sampleInterval;
+  private final int samples;
+  private final double[] table; // [sample][body][value]
+
+  /**
+   * @param dt the time step used to integrate the bodies
+   * @param span the time, in seconds, that the table should cover since the bodies' initial conditions
+   * @param sampleSteps the amount of integration steps between stored samples
+   * @param g the gravitational constant
+   * @param particles the bodies' initial conditions
+   */
+  public PlanetaryEphemeris(final double dt, final double span, final int sampleSteps, final double g,
+                            final Particle... particles) {
+    if (dt <= 0) {
+      throw new IllegalArgumentException("dt should be > 0");
+    }
+    if (span < 0) {
+      throw new IllegalArgumentException("Span should be >= 0");
+    }
+    if (sampleSteps < 1) {
+      throw new IllegalArgumentException("Sample steps should be >= 1");
+    }
+
+    this.bodies = particles.length;
+    this.dt = dt;
+    this.sampleInterval = dt * sampleSteps;
+    // one extra sample so that the whole span can be interpolated
+    this.samples = (int) Math.ceil(span / sampleInterval) + 2;
+    this.table = new double[samples * bodies * VALUES];
+
+    final VerletNBodyEngine engine = new VerletNBodyEngine(dt, g);
+    engine.addBodies(particles);
+    final NBodyState state = engine.state();
+
+    final double[] x = new double[bodies];
+    final double[] y = new double[bodies];
+    final long steps = (long) (samples - 1) * sampleSteps;
+    for (long step = 0; step <= steps; step++) {
+      System.arraycopy(state.x(), 0, x, 0, bodies);
+      System.arraycopy(state.y(), 0, y, 0, bodies);
+
+      // after evolving, the engine holds f(t) and v(t) of the positions r(t) saved above
+      engine.evolve();
+
+      if (step % sampleSteps == 0) {
+        int k = (int) (step / sampleSteps) * bodies * VALUES;
+        for (int i = 0; i < bodies; i++) {
+          table[k++] = x[i];
+          table[k++] = y[i];
+          table[k++] = state.vx()[i];
+          table[k++] = state.vy()[i];
+          table[k++] = state.fx()[i];
+          table[k++] = state.fy()[i];
+        }
+      }
+    }
+  }
+
+  public int bodies() {
+    return bodies;
+  }
+
+  public double dt() {
+    return dt;
+  }
+
+  /**
+   * @return the last time, in seconds, that can be looked up
+   */
+  public double span() {
+    return (samples - 1) * sampleInterval;
+  }
+
+  /**
+   * @return the first time, in seconds, that can be looked up; values before 0 are extrapolated
+   */
+  public double start() {
+    return -sampleInterval;
+  }
+
+  /**
+   * Writes the values of the bodies at the given time on the slots [0, bodies) of {@code state}.
+   * Only dynamic values are written: position, velocity, force and age.
+   * @param time the time, in seconds, since the bodies' initial conditions; between {@link #start()} and
+   *             {@link #span()}
+   * @param state the state to be written. Its first slots should hold the bodies in the same order as given
+   *              when building this ephemeris
+   */
+  public void stateAt(final double time, final NBodyState state) {
+    if (time < start() || time > span()) {
+      throw new IllegalArgumentException("Time should be between " + start() + " and " + span() + " seconds");
+    }
+
+    // times before 0 truncate to the first sample, i.e., s < 0 extrapolates its interval
+    final int sample = Math.min((int) (time / sampleInterval), samples - 2);
+    final double h = sampleInterval;
+    final double s = (time - sample * h) / h;
+    final double s2 = s * s;
+    final double s3 = s2 * s;
+
+    // Hermite basis and their derivatives over s
+    final double h00 = 2 * s3 - 3 * s2 + 1;
+    final double h10 = s3 - 2 * s2 + s;
+    final double h01 = -2 * s3 + 3 * s2;
+    final double h11 = s3 - s2;
+    final double dh00 = 6 * s2 - 6 * s;
+    final double dh10 = 3 * s2 - 4 * s + 1;
+    final double dh11 = 3 * s2 - 2 * s;
+
+    final double ageInDays = time / SECONDS_PER_DAY;
+    int a = sample * bodies * VALUES;
+    int b = a + bodies * VALUES;
+    for (int i = 0; i < bodies; i++, a += VALUES, b += VALUES) {
+      final double x0 = table[a], y0 = table[a + 1], vx0 = table[a + 2], vy0 = table[a + 3];
+      final double x1 = table[b], y1 = table[b + 1], vx1 = table[b + 2], vy1 = table[b + 3];
+
+      state.x()[i] = h00 * x0 + h10 * h * vx0 + h01 * x1 + h11 * h * vx1;
+      state.y()[i] = h00 * y0 + h10 * h * vy0 + h01 * y1 + h11 * h * vy1;
+      state.vx()[i] = dh00 * (x0 - x1) / h + dh10 * vx0 + dh11 * vx1;
+      state.vy()[i] = dh00 * (y0 - y1) / h + dh10 * vy0 + dh11 * vy1;
+      state.fx()[i] = table[a + 4] + s * (table[b + 4] - table[a + 4]);
+      state.fy()[i] = table[a + 5] + s * (table[b + 5] - table[a + 5]);
+      state.ageInDays()[i] = ageInDays;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Gravitational N-body engine that evolves a {@link NBodyState} with a fixed step, using a {@link SymplecticScheme}.
+ * <P>
+ * Velocities are synchronized with positions: after a step, both hold their values at its end, and so do the forces.
+ * The step's start positions are kept as r(t-dt).
+ * All the step's work is done over the state's primitive arrays, so evolving the system does not allocate.
+ */
+public class SymplecticNBodyEngine implements NBodyIntegrator {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+
+  private final NBodyState state;
+  private final SymplecticScheme scheme;
+  private final double[] weights;
+  private final double dt;
+  private final double g;
+  private final GravityForceProvider forceProvider;
+
+  /**
+   * @param state the system to be evolved
+   * @param scheme the composition of leapfrog steps run at each step
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   * @param forceProvider the strategy used to calculate the forces at each substep
+   */
+  public SymplecticNBodyEngine(final NBodyState state, final SymplecticScheme scheme, final double dt,
+                               final double g, final GravityForceProvider forceProvider) {
+    if (dt <= 0) {
+      throw new IllegalArgumentException("dt should be > 0");
+    }
+    this.state = state;
+    this.scheme = scheme;
+    this.weights = scheme.weights();
+    this.dt = dt;
+    this.g = g;
+    this.forceProvider = forceProvider;
+  }
+
+  @Override
+  public NBodyState state() {
+    return state;
+  }
+
+  public SymplecticScheme scheme() {
+    return scheme;
+  }
+
+  @Override
+  public SymplecticNBodyEngine fork(final NBodyState state) {
+    return new SymplecticNBodyEngine(state, scheme, dt, g, forceProvider.fork());
+  }
+
+  /**
+   * The first kick needs the exact forces, including the new bodies' pull on the other ones,
+   * so they are calculated again for every body
+   */
+  @Override
+  public void bodiesAdded(final int firstTestParticle) {
+    computeForces(firstTestParticle);
+  }
+
+  /**
+   * Evolves the whole system a {@code dt} time interval. Steps are never shortened
+   */
+  @Override
+  public double evolve(final double maxDt) {
+    return evolve(0, null, 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   * Substeps that go back in time look up the ephemeris before {@code time}. Steps are never shortened
+   */
+  @Override
+  public double evolveTestParticles(final int firstTestParticle, final PlanetaryEphemeris ephemeris,
+                                    final double time, final double maxDt) {
+    return evolve(firstTestParticle, ephemeris, time);
+  }
+
+  // private methods
+
+  private double evolve(final int firstMoving, final PlanetaryEphemeris ephemeris, final double time) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+
+    for (int i = firstMoving; i < n; i++) {
+      state.prevX()[i] = x[i];
+      state.prevY()[i] = y[i];
+    }
+
+    double substepTime = time;
+    for (final double weight : weights) {
+      final double h = weight * dt;
+      final double halfH = h / 2;
+      for (int i = firstMoving; i < n; i++) {
+        vx[i] += fx[i] / mass[i] * halfH;
+        vy[i] += fy[i] / mass[i] * halfH;
+        x[i] += vx[i] * h;
+        y[i] += vy[i] * h;
+      }
+
+      substepTime += h;
+      if (ephemeris != null) {
+        ephemeris.stateAt(substepTime, state);
+      }
+      computeForces(firstMoving);
+
+      for (int i = firstMoving; i < n; i++) {
+        vx[i] += fx[i] / mass[i] * halfH;
+        vy[i] += fy[i] / mass[i] * halfH;
+      }
+    }
+
+    final double days = dt / SECONDS_PER_DAY;
+    for (int i = firstMoving; i < n; i++) {
+      state.ageInDays()[i] += days;
+    }
+    return dt;
+  }
+
+  /**
+   * Calculates the forces at the current positions: the exact ones among all the bodies, or, if
+   * {@code firstTestParticle > 0}, only the ones caused by the bodies at slots [0, firstTestParticle) on the rest
+   */
+  private void computeForces(final int firstTestParticle) {
+    if (firstTestParticle == 0) {
+      forceProvider.computeForces(state, g);
+      return;
+    }
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+    for (int i = firstTestParticle; i < state.size(); i++) {
+      final double gMi = g * mass[i];
+      double forceX = 0;
+      double forceY = 0;
+      for (int j = 0; j < firstTestParticle; j++) {
+        final double dx = x[j] - x[i];
+        final double dy = y[j] - y[i];
+        final double distancePow2 = dx * dx + dy * dy;
+        final double forceModule = gMi * mass[j] / distancePow2;
+        final double distance = sqrt(distancePow2);
+        forceX += forceModule * (dx / distance);
+        forceY += forceModule * (dy / distance);
+      }
+      state.fx()[i] = forceX;
+      state.fy()[i] = forceY;
+    }
+  }
+}
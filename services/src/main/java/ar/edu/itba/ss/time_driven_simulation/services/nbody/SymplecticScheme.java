@@ -0,0 +1,98 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+/**
+ * Symplectic integrators built as symmetric compositions of leapfrog steps: a step of size {@code h} runs a
+ * kick-drift-kick leapfrog step of size {@code w_k h} for each of the scheme's weights, which add up to 1.
+ * <P>
+ * Each leapfrog step takes one force evaluation, so higher orders cost more per step, but their error falls much
+ * faster as the step shrinks, and they reach the same accuracy with far longer steps. Some weights are negative:
+ * the substeps go back in time within the step.
+ */
+public enum SymplecticScheme {
+  /**
+   * Velocity Verlet, i.e., the kick-drift-kick leapfrog; 2nd order
+   */
+  LEAPFROG("leapfrog", 2, 1),
+  /**
+   * Forest and Ruth (1990); 4th order, 3 force evaluations per step
+   */
+  FOREST_RUTH("forest-ruth", 4, symmetric(
+          -Math.cbrt(2) / (2 - Math.cbrt(2)),
+          1 / (2 - Math.cbrt(2)))),
+  /**
+   * Yoshida (1990), solution A of the 6th order composition; 7 force evaluations per step
+   */
+  YOSHIDA_6("yoshida6", 6, symmetricWithMiddle(
+          -1.17767998417887,
+          0.235573213359357,
+          0.784513610477560)),
+  /**
+   * Yoshida (1990), solution D of the 8th order composition; 15 force evaluations per step
+   */
+  YOSHIDA_8("yoshida8", 8, symmetricWithMiddle(
+          0.102799849391985E0,
+          -0.196061023297549E1,
+          0.193813913762276E1,
+          -0.158240635368243E0,
+          -0.144485223686048E1,
+          0.253693336566229E0,
+          0.914844246229740E0));
+
+  private final String name;
+  private final int order;
+  private final double[] weights;
+
+  SymplecticScheme(final String name, final int order, final double... weights) {
+    this.name = name;
+    this.order = order;
+    this.weights = weights;
+  }
+
+  /**
+   * @return the scheme with the given name, e.g., {@code yoshida6}
+   * @throws IllegalArgumentException if there is none
+   */
+  public static SymplecticScheme fromName(final String name) {
+    for (final SymplecticScheme scheme : values()) {
+      if (scheme.name.equalsIgnoreCase(name)) {
+        return scheme;
+      }
+    }
+    throw new IllegalArgumentException("Unknown integrator '" + name + "'");
+  }
+
+  public int order() {
+    return order;
+  }
+
+  /**
+   * @return the fraction of the step taken by each leapfrog substep, in order
+   */
+  public double[] weights() {
+    return weights.clone();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  // {w1, w0, w1}, with w0 the given middle weight
+  private static double[] symmetric(final double middle, final double outer) {
+    return new double[]{outer, middle, outer};
+  }
+
+  // {wn, ..., w1, w0, w1, ..., wn}, with w0 = 1 - 2 (w1 + ... + wn)
+  private static double[] symmetricWithMiddle(final double... inner) {
+    final int n = inner.length;
+    final double[] weights = new double[2 * n + 1];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      weights[n - 1 - i] = inner[i];
+      weights[n + 1 + i] = inner[i];
+      sum += inner[i];
+    }
+    weights[n] = 1 - 2 * sum;
+    return weights;
+  }
+}
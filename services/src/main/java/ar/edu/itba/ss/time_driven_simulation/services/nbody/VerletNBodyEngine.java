@@ -0,0 +1,192 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import ar.edu.itba.ss.time_driven_simulation.models.Particle;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Gravitational N-body engine that evolves a {@link NBodyState} with the position Verlet algorithm.
+ * <P>
+ * All the step's work is done over the state's primitive arrays, so evolving the system does not allocate.
+ */
+public class VerletNBodyEngine {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+
+  private final NBodyState state;
+  private final double dt;
+  private final double g;
+  private final GravityForceProvider forceProvider;
+  private final ChunkExecutor executor; // null when running on the calling thread only
+  private final ChunkExecutor.ChunkTask updateTask = this::update;
+
+  public VerletNBodyEngine(final double dt, final double g) {
+    this(dt, g, new PairwiseGravityForce());
+  }
+
+  /**
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   * @param forceProvider the strategy used to calculate the forces at each step
+   */
+  public VerletNBodyEngine(final double dt, final double g, final GravityForceProvider forceProvider) {
+    this(dt, g, forceProvider, null);
+  }
+
+  /**
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   * @param forceProvider the strategy used to calculate the forces at each step
+   * @param executor executor used to split the position and velocity update among threads; null to use
+   *                 the calling thread only
+   */
+  public VerletNBodyEngine(final double dt, final double g, final GravityForceProvider forceProvider,
+                           final ChunkExecutor executor) {
+    this(new NBodyState(), dt, g, forceProvider, executor);
+  }
+
+  private VerletNBodyEngine(final NBodyState state, final double dt, final double g,
+                            final GravityForceProvider forceProvider, final ChunkExecutor executor) {
+    this.state = state;
+    this.dt = dt;
+    this.g = g;
+    this.forceProvider = forceProvider;
+    this.executor = executor;
+  }
+
+  public NBodyState state() {
+    return state;
+  }
+
+  public double dt() {
+    return dt;
+  }
+
+  /**
+   * Snapshots this engine: the returned one starts from a copy of the current state, including r(t-dt),
+   * so both evolve exactly the same way but independently of each other
+   * @return a new engine with a copy of this one's state
+   */
+  public VerletNBodyEngine fork() {
+    return new VerletNBodyEngine(state.copy(), dt, g, forceProvider.fork(), executor);
+  }
+
+  /**
+   * Adds the given particles to the system.
+   * <P>
+   * The initial force of each new body is calculated with the bodies that were already in the system,
+   * and r(-dt) is estimated with Euler (Same as in Verlet's Algorithm).
+   * @param particles the particles to be added
+   */
+  public void addBodies(final Particle... particles) {
+    final int prevLength = state.size();
+    for (final Particle particle : particles) {
+      state.add(particle);
+    }
+
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] prevX = state.prevX();
+    final double[] prevY = state.prevY();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    for (int i = prevLength; i < state.size(); i++) {
+      fx[i] = 0;
+      fy[i] = 0;
+      accumulateForce(i, 0, prevLength);
+      prevX[i] = x[i] - vx[i] * dt; // prev: r(t-dt)
+      prevY[i] = y[i] - vy[i] * dt;
+    }
+  }
+
+  /**
+   * Evolves the system a {@code dt} time interval
+   */
+  public void evolve() {
+    // f(t) of every body is calculated with the positions r(t) of all the other ones
+    forceProvider.computeForces(state, g);
+
+    if (executor == null) {
+      update(0, state.size());
+    } else {
+      executor.forEachChunk(state.size(), updateTask);
+    }
+  }
+
+  /**
+   * Evolves a {@code dt} time interval only the bodies at slots [firstTestParticle, n), as test particles:
+   * they feel the bodies at slots [0, firstTestParticle) but neither those bodies nor each other.
+   * The bodies at slots [0, firstTestParticle) are left untouched, so they can be driven from outside,
+   * e.g., by a {@link PlanetaryEphemeris}.
+   * @param firstTestParticle the slot of the first test particle
+   */
+  public void evolveTestParticles(final int firstTestParticle) {
+    final int n = state.size();
+    for (int i = firstTestParticle; i < n; i++) {
+      state.fx()[i] = 0;
+      state.fy()[i] = 0;
+      accumulateForce(i, 0, firstTestParticle);
+    }
+    update(firstTestParticle, n);
+  }
+
+  // Verlet's position and velocity update of the bodies at slots [from, to)
+  private void update(final int from, final int to) {
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] prevX = state.prevX();
+    final double[] prevY = state.prevY();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+    final double[] ageInDays = state.ageInDays();
+
+    final double dt2 = dt * dt;
+    final double twoDt = 2 * dt;
+    final double daysPerStep = dt / SECONDS_PER_DAY;
+    for (int i = from; i < to; i++) {
+      final double prevXi = prevX[i]; // r(t-dt)
+      final double prevYi = prevY[i];
+      prevX[i] = x[i]; // prev: r(t)
+      prevY[i] = y[i];
+
+      final double forceFactor = dt2 / mass[i];
+      x[i] = 2 * x[i] - prevXi + fx[i] * forceFactor; // r(t+dt)
+      y[i] = 2 * y[i] - prevYi + fy[i] * forceFactor;
+
+      vx[i] = (x[i] - prevXi) / twoDt;
+      vy[i] = (y[i] - prevYi) / twoDt;
+
+      ageInDays[i] += daysPerStep;
+    }
+  }
+
+  // Add to the force of the body at slot i the gravitational force caused by the bodies at slots [from, to)
+  private void accumulateForce(final int i, final int from, final int to) {
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] mass = state.mass();
+    final double gMi = g * mass[i];
+    double forceX = state.fx()[i];
+    double forceY = state.fy()[i];
+
+    for (int j = from; j < to; j++) {
+      if (j == i) {
+        continue;
+      }
+      final double dx = x[j] - x[i];
+      final double dy = y[j] - y[i];
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * mass[j] / distancePow2;
+      final double distance = sqrt(distancePow2);
+      forceX += forceModule * (dx / distance);
+      forceY += forceModule * (dy / distance);
+    }
+
+    state.fx()[i] = forceX;
+    state.fy()[i] = forceY;
+  }
+}
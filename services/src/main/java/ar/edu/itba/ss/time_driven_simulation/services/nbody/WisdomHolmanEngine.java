@@ -0,0 +1,305 @@
+package ar.edu.itba.ss.time_driven_simulation.services.nbody;
+
+import java.util.Arrays;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Gravitational N-body engine that evolves a {@link NBodyState} with the Wisdom-Holman mixed-variable method:
+ * the Sun's pull, which governs most of each body's motion, is integrated exactly as a Kepler orbit
+ * (see {@link KeplerDrift}), and only the interactions among the other bodies are kicks. So the bodies can take
+ * steps of days, as long as none of them gets close to another one, and the energy error stays bounded as with
+ * any other symplectic integrator.
+ * <P>
+ * The body at slot 0 is the central one. Bodies are evolved in democratic heliocentric coordinates
+ * (Duncan, Levison and Lee, 1998): heliocentric positions and barycentric velocities. Each step is
+ * a half kick of the interactions, a half jump of the positions with the central body's momentum, the Kepler drift,
+ * another half jump and another half kick. In restricted mode, where the bodies at slots [0, firstTestParticle)
+ * are read from an ephemeris, the test particles are evolved in heliocentric coordinates, and the kicks include the
+ * central body's own acceleration, since that frame is not inertial.
+ * <P>
+ * Velocities are synchronized with positions: after a step, both hold their values at its end, and so do the forces.
+ * The step's start positions are kept as r(t-dt).
+ * All the step's work is done over primitive arrays, so evolving the system does not allocate.
+ */
+public class WisdomHolmanEngine implements NBodyIntegrator {
+  private static final int SECONDS_PER_DAY = 3600 * 24;
+  private static final int CENTER = 0;
+
+  private final NBodyState state;
+  private final double dt;
+  private final double g;
+
+  // forces over each body other than the central body's, i.e., the ones kicked
+  private double[] interactionFx = new double[0];
+  private double[] interactionFy = new double[0];
+  // heliocentric positions and barycentric (heliocentric in restricted mode) velocities, by slot
+  private double[] qx = new double[0];
+  private double[] qy = new double[0];
+  private double[] wx = new double[0];
+  private double[] wy = new double[0];
+
+  /**
+   * @param state the system to be evolved; its central body at slot 0
+   * @param dt the time step used to evolve the system
+   * @param g the gravitational constant
+   */
+  public WisdomHolmanEngine(final NBodyState state, final double dt, final double g) {
+    if (dt <= 0) {
+      throw new IllegalArgumentException("dt should be > 0");
+    }
+    this.state = state;
+    this.dt = dt;
+    this.g = g;
+  }
+
+  @Override
+  public NBodyState state() {
+    return state;
+  }
+
+  @Override
+  public WisdomHolmanEngine fork(final NBodyState state) {
+    final WisdomHolmanEngine fork = new WisdomHolmanEngine(state, dt, g);
+    fork.interactionFx = interactionFx.clone();
+    fork.interactionFy = interactionFy.clone();
+    fork.ensureCapacity(state.size());
+    return fork;
+  }
+
+  /**
+   * The first kick needs the exact forces, including the new bodies' pull on the other ones,
+   * so they are calculated again for every body
+   */
+  @Override
+  public void bodiesAdded(final int firstTestParticle) {
+    ensureCapacity(state.size());
+    computeForces(firstTestParticle);
+  }
+
+  /**
+   * Evolves the whole system a {@code dt} time interval. Steps are never shortened
+   */
+  @Override
+  public double evolve(final double maxDt) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] mass = state.mass();
+    final double centerMass = mass[CENTER];
+    final double mu = g * centerMass;
+
+    double totalMass = 0;
+    double cmX = 0, cmY = 0, cmVx = 0, cmVy = 0;
+    for (int i = 0; i < n; i++) {
+      totalMass += mass[i];
+      cmX += mass[i] * x[i];
+      cmY += mass[i] * y[i];
+      cmVx += mass[i] * vx[i];
+      cmVy += mass[i] * vy[i];
+    }
+    cmX /= totalMass;
+    cmY /= totalMass;
+    cmVx /= totalMass;
+    cmVy /= totalMass;
+
+    for (int i = 0; i < n; i++) {
+      state.prevX()[i] = x[i];
+      state.prevY()[i] = y[i];
+    }
+    for (int i = CENTER + 1; i < n; i++) {
+      qx[i] = x[i] - x[CENTER];
+      qy[i] = y[i] - y[CENTER];
+      wx[i] = vx[i] - cmVx;
+      wy[i] = vy[i] - cmVy;
+    }
+
+    final double halfDt = dt / 2;
+    kick(CENTER + 1, halfDt, 0, 0);
+    jump(centerMass, halfDt);
+    for (int i = CENTER + 1; i < n; i++) {
+      KeplerDrift.drift(mu, qx, qy, wx, wy, i, dt);
+    }
+    jump(centerMass, halfDt);
+
+    // back to the inertial frame: the barycenter moves uniformly
+    double massQx = 0, massQy = 0;
+    for (int i = CENTER + 1; i < n; i++) {
+      massQx += mass[i] * qx[i];
+      massQy += mass[i] * qy[i];
+    }
+    x[CENTER] = cmX + cmVx * dt - massQx / totalMass;
+    y[CENTER] = cmY + cmVy * dt - massQy / totalMass;
+    for (int i = CENTER + 1; i < n; i++) {
+      x[i] = x[CENTER] + qx[i];
+      y[i] = y[CENTER] + qy[i];
+    }
+
+    computeForces(0);
+    kick(CENTER + 1, halfDt, 0, 0);
+
+    double massWx = 0, massWy = 0;
+    for (int i = CENTER + 1; i < n; i++) {
+      vx[i] = wx[i] + cmVx;
+      vy[i] = wy[i] + cmVy;
+      massWx += mass[i] * wx[i];
+      massWy += mass[i] * wy[i];
+    }
+    vx[CENTER] = cmVx - massWx / centerMass;
+    vy[CENTER] = cmVy - massWy / centerMass;
+
+    age(0);
+    return dt;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Steps are never shortened
+   */
+  @Override
+  public double evolveTestParticles(final int firstTestParticle, final PlanetaryEphemeris ephemeris,
+                                    final double time, final double maxDt) {
+    final int n = state.size();
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] vx = state.vx();
+    final double[] vy = state.vy();
+    final double[] mass = state.mass();
+    final double mu = g * mass[CENTER];
+
+    for (int i = firstTestParticle; i < n; i++) {
+      state.prevX()[i] = x[i];
+      state.prevY()[i] = y[i];
+      qx[i] = x[i] - x[CENTER];
+      qy[i] = y[i] - y[CENTER];
+      wx[i] = vx[i] - vx[CENTER];
+      wy[i] = vy[i] - vy[CENTER];
+    }
+
+    final double halfDt = dt / 2;
+    kick(firstTestParticle, halfDt, state.fx()[CENTER] / mass[CENTER], state.fy()[CENTER] / mass[CENTER]);
+    for (int i = firstTestParticle; i < n; i++) {
+      KeplerDrift.drift(mu, qx, qy, wx, wy, i, dt);
+    }
+
+    ephemeris.stateAt(time + dt, state);
+    for (int i = firstTestParticle; i < n; i++) {
+      x[i] = x[CENTER] + qx[i];
+      y[i] = y[CENTER] + qy[i];
+    }
+    computeForces(firstTestParticle);
+    kick(firstTestParticle, halfDt, state.fx()[CENTER] / mass[CENTER], state.fy()[CENTER] / mass[CENTER]);
+
+    for (int i = firstTestParticle; i < n; i++) {
+      vx[i] = vx[CENTER] + wx[i];
+      vy[i] = vy[CENTER] + wy[i];
+    }
+    age(firstTestParticle);
+    return dt;
+  }
+
+  // private methods
+
+  /**
+   * Kicks the velocities of the bodies at slots [first, n) with the interactions, minus the given acceleration
+   * of the frame
+   */
+  private void kick(final int first, final double h, final double frameAx, final double frameAy) {
+    final double[] mass = state.mass();
+    for (int i = first; i < state.size(); i++) {
+      wx[i] += (interactionFx[i] / mass[i] - frameAx) * h;
+      wy[i] += (interactionFy[i] / mass[i] - frameAy) * h;
+    }
+  }
+
+  /**
+   * Moves the heliocentric positions with the momentum of the central body, which they do not include
+   */
+  private void jump(final double centerMass, final double h) {
+    final double[] mass = state.mass();
+    double px = 0, py = 0;
+    for (int i = CENTER + 1; i < state.size(); i++) {
+      px += mass[i] * wx[i];
+      py += mass[i] * wy[i];
+    }
+    final double dx = px / centerMass * h;
+    final double dy = py / centerMass * h;
+    for (int i = CENTER + 1; i < state.size(); i++) {
+      qx[i] += dx;
+      qy[i] += dy;
+    }
+  }
+
+  private void age(final int first) {
+    final double days = dt / SECONDS_PER_DAY;
+    for (int i = first; i < state.size(); i++) {
+      state.ageInDays()[i] += days;
+    }
+  }
+
+  /**
+   * Calculates the forces at the current positions: the exact ones among all the bodies, or, if
+   * {@code firstTestParticle > 0}, only the ones caused by the bodies at slots [0, firstTestParticle) on the rest.
+   * The interactions are summed apart from the central body's pull, so that the kicks do not lose precision
+   * to a difference against it
+   */
+  private void computeForces(final int firstTestParticle) {
+    final double[] x = state.x();
+    final double[] y = state.y();
+    final double[] fx = state.fx();
+    final double[] fy = state.fy();
+    final double[] mass = state.mass();
+    final int to = firstTestParticle == 0 ? state.size() : firstTestParticle;
+    if (firstTestParticle == 0) {
+      fx[CENTER] = 0;
+      fy[CENTER] = 0;
+    }
+
+    for (int i = Math.max(CENTER + 1, firstTestParticle); i < state.size(); i++) {
+      final double gMi = g * mass[i];
+      double forceX = 0;
+      double forceY = 0;
+      for (int j = CENTER + 1; j < to; j++) {
+        if (j == i) {
+          continue;
+        }
+        final double dx = x[j] - x[i];
+        final double dy = y[j] - y[i];
+        final double distancePow2 = dx * dx + dy * dy;
+        final double forceModule = gMi * mass[j] / distancePow2;
+        final double distance = sqrt(distancePow2);
+        forceX += forceModule * (dx / distance);
+        forceY += forceModule * (dy / distance);
+      }
+      interactionFx[i] = forceX;
+      interactionFy[i] = forceY;
+
+      final double dx = x[CENTER] - x[i];
+      final double dy = y[CENTER] - y[i];
+      final double distancePow2 = dx * dx + dy * dy;
+      final double forceModule = gMi * mass[CENTER] / distancePow2;
+      final double distance = sqrt(distancePow2);
+      final double centerFx = forceModule * (dx / distance);
+      final double centerFy = forceModule * (dy / distance);
+      fx[i] = forceX + centerFx;
+      fy[i] = forceY + centerFy;
+      if (firstTestParticle == 0) {
+        fx[CENTER] -= centerFx;
+        fy[CENTER] -= centerFy;
+      }
+    }
+  }
+
+  private void ensureCapacity(final int n) {
+    if (qx.length < n) {
+      interactionFx = Arrays.copyOf(interactionFx, n);
+      interactionFy = Arrays.copyOf(interactionFy, n);
+      qx = new double[n];
+      qy = new double[n];
+      wx = new double[n];
+      wy = new double[n];
+    }
+  }
+}
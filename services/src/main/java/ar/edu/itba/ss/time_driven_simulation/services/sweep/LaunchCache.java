@@ -0,0 +1,290 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk memo of launch results, so that overlapping sweeps do not run the same launch twice.
+ * <P>
+ * Launches are keyed by their whole configuration: dt, ft, take off day, speed, angle, target and integrator.
+ * Values are compared rounded to 32 bits of mantissa, i.e., about 10 significant digits, so that a launch is found
+ * even if its values were computed in a slightly different way.
+ * For each one, the closest approach to the target, the time it was reached and the body where the ship landed
+ * are stored. The file starts with a small header, followed by fixed-size binary records that are only appended.
+ * A record that was half written, e.g., because the program was killed, is dropped.
+ * <P>
+ * Records stay on the file: only a 64-bit fingerprint of each key and the number of its record are kept in memory,
+ * on an open addressing table of primitive arrays, i.e., at most 24 bytes per launch of the cache's integrator.
+ * The record of a matching fingerprint is read back from the file to check its whole key.
+ * <P>
+ * Only exact results are stored: launches that were pruned are not.
+ */
+public class LaunchCache implements Closeable {
+  private static final int MAGIC = 0x4C43_4348; // "LCCH"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+  // dt, ft, days, speed, angle, integrator, target, landed to, min distance, time to min distance
+  private static final int RECORD_BYTES = 6 * Long.BYTES + 2 + 2 * Double.BYTES;
+  private static final int RECORDS_PER_READ = 1024; // when indexing the file
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final ParticleType[] TYPES = ParticleType.values();
+
+  private final long integrator;
+  private final FileChannel channel;
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+  private long records; // on the file, of any integrator
+
+  // open addressing index, with linear probing and a load factor of at most 1/2
+  private long[] fingerprints = new long[INITIAL_CAPACITY];
+  private int[] recordNumbers = new int[INITIAL_CAPACITY]; // the record's number + 1; 0 when the slot is empty
+  private int size;
+
+  /**
+   * Opens the cache at the given file, creating it if it does not exist
+   * @param file the cache's file
+   * @param integrator the name of the integrator that runs the launches, e.g., {@code verlet/full}.
+   *                   Launches of other integrators on the same file are ignored
+   * @throws IOException if the file could not be read or written
+   * @throws IllegalArgumentException if the file is not a launch cache
+   */
+  public LaunchCache(final Path file, final String integrator) throws IOException {
+    this.integrator = hash(integrator);
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      if (channel.size() == 0) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        write(header, 0);
+      } else {
+        index(file);
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the amount of launches of this cache's integrator
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return the cached result of the given launch, or null if it was never run.
+   * The result has no system state nor take off direction; see {@link LaunchSweep#replay}
+   * @throws IOException if the launch's record could not be read
+   */
+  public synchronized LaunchResult get(final int index, final double dt, final double ft, final ParticleType target,
+                                       final double daysTakeOff, final double initialSpeed, final double angle)
+          throws IOException {
+    if (find(dt, ft, daysTakeOff, initialSpeed, angle, target) < 0) {
+      return null;
+    }
+    // the record was left on the buffer by find
+    return new LaunchResult(index, daysTakeOff, initialSpeed, angle, type(record.get(6 * Long.BYTES + 1)),
+            record.getDouble(6 * Long.BYTES + 2), record.getDouble(7 * Long.BYTES + 2), 0, 0);
+  }
+
+  /**
+   * Stores the given result, unless it was pruned or it is already stored
+   * @throws IOException if the result could not be written
+   */
+  public synchronized void put(final double dt, final double ft, final ParticleType target,
+                               final LaunchResult result) throws IOException {
+    if (result.getPrunedSteps() > 0 || find(dt, ft, result.getDaysTakeOff(), result.getInitialSpeed(),
+            result.getAngle(), target) >= 0) {
+      return;
+    }
+    record.clear();
+    record.putDouble(dt).putDouble(ft).putDouble(result.getDaysTakeOff()).putDouble(result.getInitialSpeed())
+            .putDouble(result.getAngle()).putLong(integrator)
+            .put((byte) target.ordinal()).put((byte) ParticleType.valueOf(result.getLandedTo()).ordinal())
+            .putDouble(result.getMinDistance()).putDouble(result.getTimeToMinDistance());
+    record.flip();
+    write(record, HEADER_BYTES + records * RECORD_BYTES);
+    add(fingerprint(dt, ft, result.getDaysTakeOff(), result.getInitialSpeed(), result.getAngle(), integrator,
+            target.ordinal()), records);
+    records++;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  // private methods
+
+  /**
+   * Indexes the records of this cache's integrator, and drops a half written record at the end, if any,
+   * so that new ones are aligned
+   */
+  private void index(final Path file) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    if (channel.size() < HEADER_BYTES || !read(header, 0) || header.getInt(0) != MAGIC
+            || header.getInt(Integer.BYTES) != VERSION) {
+      throw new IllegalArgumentException("'" + file + "' is not a launch cache");
+    }
+    records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+    channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+
+    final ByteBuffer chunk = ByteBuffer.allocate(RECORDS_PER_READ * RECORD_BYTES);
+    for (long first = 0; first < records; first += RECORDS_PER_READ) {
+      chunk.clear();
+      chunk.limit((int) Math.min(RECORDS_PER_READ, records - first) * RECORD_BYTES);
+      if (!read(chunk, HEADER_BYTES + first * RECORD_BYTES)) {
+        throw new IllegalArgumentException("Truncated launch cache");
+      }
+      for (int offset = 0; offset < chunk.limit(); offset += RECORD_BYTES) {
+        type(chunk.get(offset + 6 * Long.BYTES));
+        type(chunk.get(offset + 6 * Long.BYTES + 1));
+        if (chunk.getLong(offset + 5 * Long.BYTES) == integrator) {
+          add(fingerprint(chunk, offset), first + offset / RECORD_BYTES);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of the record of the given launch, which is left on {@link #record}; or -1 if it is not
+   * stored
+   */
+  private long find(final double dt, final double ft, final double daysTakeOff, final double initialSpeed,
+                    final double angle, final ParticleType target) throws IOException {
+    final long fingerprint = fingerprint(dt, ft, daysTakeOff, initialSpeed, angle, integrator, target.ordinal());
+    final int mask = fingerprints.length - 1;
+    for (int i = (int) fingerprint & mask; recordNumbers[i] != 0; i = (i + 1) & mask) {
+      if (fingerprints[i] != fingerprint) {
+        continue;
+      }
+      final long number = recordNumbers[i] - 1;
+      record.clear();
+      if (!read(record, HEADER_BYTES + number * RECORD_BYTES)) {
+        throw new IllegalArgumentException("Truncated launch cache");
+      }
+      if (sameKey(record, dt, ft, daysTakeOff, initialSpeed, angle, target)) {
+        return number;
+      }
+    }
+    return -1;
+  }
+
+  private boolean sameKey(final ByteBuffer buffer, final double dt, final double ft, final double daysTakeOff,
+                          final double initialSpeed, final double angle, final ParticleType target) {
+    return quantized(buffer.getDouble(0)) == quantized(dt)
+            && quantized(buffer.getDouble(Long.BYTES)) == quantized(ft)
+            && quantized(buffer.getDouble(2 * Long.BYTES)) == quantized(daysTakeOff)
+            && quantized(buffer.getDouble(3 * Long.BYTES)) == quantized(initialSpeed)
+            && quantized(buffer.getDouble(4 * Long.BYTES)) == quantized(angle)
+            && buffer.getLong(5 * Long.BYTES) == integrator
+            && buffer.get(6 * Long.BYTES) == target.ordinal();
+  }
+
+  private void add(final long fingerprint, final long number) {
+    if (number >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The launch cache is full");
+    }
+    if (2 * (size + 1) > fingerprints.length) {
+      final long[] oldFingerprints = fingerprints;
+      final int[] oldRecordNumbers = recordNumbers;
+      fingerprints = new long[2 * oldFingerprints.length];
+      recordNumbers = new int[2 * oldRecordNumbers.length];
+      size = 0;
+      for (int i = 0; i < oldFingerprints.length; i++) {
+        if (oldRecordNumbers[i] != 0) {
+          add(oldFingerprints[i], oldRecordNumbers[i] - 1);
+        }
+      }
+    }
+    final int mask = fingerprints.length - 1;
+    int i = (int) fingerprint & mask;
+    while (recordNumbers[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    fingerprints[i] = fingerprint;
+    recordNumbers[i] = (int) number + 1;
+    size++;
+  }
+
+  /**
+   * @return whether the buffer could be filled from the given position of the file
+   */
+  private boolean read(final ByteBuffer buffer, final long position) throws IOException {
+    long at = position;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, at);
+      if (read < 0) {
+        return false;
+      }
+      at += read;
+    }
+    return true;
+  }
+
+  private void write(final ByteBuffer buffer, final long position) throws IOException {
+    long at = position;
+    while (buffer.hasRemaining()) {
+      at += channel.write(buffer, at);
+    }
+  }
+
+  private static ParticleType type(final byte ordinal) {
+    if (ordinal < 0 || ordinal >= TYPES.length) {
+      throw new IllegalArgumentException("Corrupted launch cache: unknown body " + ordinal);
+    }
+    return TYPES[ordinal];
+  }
+
+  // 64-bit FNV-1a of the given name
+  static long hash(final String name) {
+    long hash = 0xcbf29ce484222325L;
+    for (final byte b : name.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * @return the given value rounded to 32 bits of mantissa; 0 for both 0 and -0
+   */
+  static double quantized(final double value) {
+    if (value == 0) {
+      return 0;
+    }
+    final long rounding = 1L << 20; // of the 52 bits of mantissa, drop 20
+    return Double.longBitsToDouble((Double.doubleToLongBits(value) + rounding / 2) & -rounding);
+  }
+
+  private static long fingerprint(final ByteBuffer buffer, final int offset) {
+    return fingerprint(buffer.getDouble(offset), buffer.getDouble(offset + Long.BYTES),
+            buffer.getDouble(offset + 2 * Long.BYTES), buffer.getDouble(offset + 3 * Long.BYTES),
+            buffer.getDouble(offset + 4 * Long.BYTES), buffer.getLong(offset + 5 * Long.BYTES),
+            buffer.get(offset + 6 * Long.BYTES));
+  }
+
+  private static long fingerprint(final double dt, final double ft, final double daysTakeOff,
+                                  final double initialSpeed, final double angle, final long integrator,
+                                  final int target) {
+    long fingerprint = mix(integrator, target);
+    fingerprint = mix(fingerprint, Double.doubleToLongBits(quantized(dt)));
+    fingerprint = mix(fingerprint, Double.doubleToLongBits(quantized(ft)));
+    fingerprint = mix(fingerprint, Double.doubleToLongBits(quantized(daysTakeOff)));
+    fingerprint = mix(fingerprint, Double.doubleToLongBits(quantized(initialSpeed)));
+    return mix(fingerprint, Double.doubleToLongBits(quantized(angle)));
+  }
+
+  private static long mix(final long hash, final long value) {
+    final long mixed = (hash ^ value) * 0x9E3779B97F4A7C15L;
+    return mixed ^ (mixed >>> 32);
+  }
+}
@@ -0,0 +1,141 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.SolarSystem;
+
+/**
+ * Outcome of a single launch configuration of a {@link LaunchSweep}
+ */
+public class LaunchResult {
+  private final int index;
+  private final double daysTakeOff;
+  private final double initialSpeed;
+  private final double angle;
+  private final Vector2D takeOffAngle;
+  private final String landedTo;
+  private final double minDistance;
+  private final double timeToMinDistance;
+  private final SolarSystem.SolarSystemState minDistanceState;
+  private final long steps;
+  private final long prunedSteps;
+
+  LaunchResult(final int index,
+               final double daysTakeOff,
+               final double initialSpeed,
+               final double angle,
+               final Vector2D takeOffAngle,
+               final String landedTo,
+               final double minDistance,
+               final SolarSystem.SolarSystemState minDistanceState,
+               final long steps,
+               final long prunedSteps) {
+    this.index = index;
+    this.daysTakeOff = daysTakeOff;
+    this.initialSpeed = initialSpeed;
+    this.angle = angle;
+    this.takeOffAngle = takeOffAngle;
+    this.landedTo = landedTo;
+    this.minDistance = minDistance;
+    this.timeToMinDistance = minDistanceState.getSimulationTime();
+    this.minDistanceState = minDistanceState;
+    this.steps = steps;
+    this.prunedSteps = prunedSteps;
+  }
+
+  /**
+   * Result restored from a {@link LaunchCache} or a {@link SweepJournal}, without take off direction nor system state
+   */
+  LaunchResult(final int index,
+               final double daysTakeOff,
+               final double initialSpeed,
+               final double angle,
+               final ParticleType landedTo,
+               final double minDistance,
+               final double timeToMinDistance,
+               final long steps,
+               final long prunedSteps) {
+    this.index = index;
+    this.daysTakeOff = daysTakeOff;
+    this.initialSpeed = initialSpeed;
+    this.angle = angle;
+    this.takeOffAngle = null;
+    this.landedTo = landedTo.toString();
+    this.minDistance = minDistance;
+    this.timeToMinDistance = timeToMinDistance;
+    this.minDistanceState = null;
+    this.steps = steps;
+    this.prunedSteps = prunedSteps;
+  }
+
+  /**
+   * @return the position of this launch on the sweep, in (days, speed, angle) order
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  public double getDaysTakeOff() {
+    return daysTakeOff;
+  }
+
+  public double getInitialSpeed() {
+    return initialSpeed;
+  }
+
+  public double getAngle() {
+    return angle;
+  }
+
+  /**
+   * @return the direction of the ship's take off velocity;
+   * null if restored from a {@link LaunchCache} or a {@link SweepJournal}
+   */
+  public Vector2D getTakeOffAngle() {
+    return takeOffAngle;
+  }
+
+  /**
+   * @return the body where the ship landed, or {@code COMMON} if it did not land
+   */
+  public String getLandedTo() {
+    return landedTo;
+  }
+
+  /**
+   * @return the closest approach of the ship to the sweep's target
+   */
+  public double getMinDistance() {
+    return minDistance;
+  }
+
+  /**
+   * @return the time, since the system's initial conditions, of the closest approach of the ship to the target
+   */
+  public double getTimeToMinDistance() {
+    return timeToMinDistance;
+  }
+
+  /**
+   * @return the system at the closest approach of the ship to the sweep's target;
+   * null if restored from a {@link LaunchCache} or a {@link SweepJournal}
+   */
+  public SolarSystem.SolarSystemState getMinDistanceState() {
+    return minDistanceState;
+  }
+
+  /**
+   * @return the amount of flight steps that were simulated; 0 if restored from a {@link LaunchCache}
+   */
+  public long getSteps() {
+    return steps;
+  }
+
+  /**
+   * @return the amount of flight steps that were skipped because the launch could no longer beat the best one.
+   * If greater than 0, the minimum distance is the one reached until then
+   */
+  public long getPrunedSteps() {
+    return prunedSteps;
+  }
+}
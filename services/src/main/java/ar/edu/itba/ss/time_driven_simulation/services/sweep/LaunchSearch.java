@@ -0,0 +1,283 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.services.SolarSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static ar.edu.itba.ss.time_driven_simulation.services.sweep.LaunchSweep.SECONDS_PER_DAY;
+
+/**
+ * Looks for the launch (take off day, speed and angle) that gets closest to the target, without running
+ * a whole grid.
+ * <P>
+ * The spec's grid, usually a coarse one, is run first with a {@link LaunchSweep}. Its best launch is then refined
+ * with the Nelder-Mead method, over the box given by the spec's ranges. Each Nelder-Mead iteration evaluates
+ * at once, in parallel, all of its candidates (reflection, expansion and both contractions), and only keeps the
+ * one the method would have picked; so results do not depend on the amount of threads.
+ * <P>
+ * The search stops as soon as a launch reaches the target, when the simplex collapses, or when the spec's
+ * maximum amount of evaluations would be exceeded.
+ */
+public class LaunchSearch {
+  private static final int DIMENSIONS = 3; // take off day, speed and angle
+  // size of the initial simplex and minimum one, as fractions of the spec's ranges
+  private static final double INITIAL_STEP = 0.1;
+  private static final double TOLERANCE = 1e-6;
+
+  private final SolarSystem base;
+  private final SweepSpec spec;
+  private final double[] lower;
+  private final double[] width;
+  private final boolean toMars;
+
+  private int evaluations;
+  private LaunchResult best;
+
+  /**
+   * @param base the system at day 0, without ship. It is not modified by the search
+   * @param spec the grid of the first stage, the ranges of the search, and its maximum amount of evaluations
+   */
+  public LaunchSearch(final SolarSystem base, final SweepSpec spec) {
+    this.base = base;
+    this.spec = spec;
+    this.lower = spec.lowerBounds();
+    this.width = new double[DIMENSIONS];
+    final double[] upper = spec.upperBounds();
+    for (int d = 0; d < DIMENSIONS; d++) {
+      width[d] = Math.max(0, upper[d] - lower[d]);
+    }
+    this.toMars = spec.target() == ParticleType.MARS;
+  }
+
+  /**
+   * @param onResult called with each launch once it is evaluated, always from the calling thread of the search
+   *                 when refining, and from the sweep's threads when running the grid
+   * @return the launch that got closest to the target
+   */
+  public LaunchResult search(final Consumer<LaunchResult> onResult) {
+    evaluations = 0;
+    best = null;
+
+    new LaunchSweep(base.fork(), spec.ft(), spec.target(), spec.threads(), spec.prune(), spec.batch())
+            .run(spec.days(), spec.speeds(), spec.angles(), result -> {
+              synchronized (this) {
+                onResult.accept(result);
+                evaluations++;
+                keepIfBest(result);
+              }
+            });
+
+    if (best == null || reached(best)) {
+      return best;
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(spec.threads());
+    try {
+      refine(pool, onResult);
+    } finally {
+      pool.shutdownNow();
+    }
+    return best;
+  }
+
+  /**
+   * @return the amount of launches run by the last search
+   */
+  public int evaluations() {
+    return evaluations;
+  }
+
+  // private methods
+
+  private void refine(final ForkJoinPool pool, final Consumer<LaunchResult> onResult) {
+    // simplex of DIMENSIONS + 1 vertices, in coordinates normalized to the spec's ranges
+    final double[][] simplex = new double[DIMENSIONS + 1][];
+    final LaunchResult[] values = new LaunchResult[DIMENSIONS + 1];
+    simplex[0] = normalize(best);
+    values[0] = best;
+
+    final List<double[]> initial = new ArrayList<>();
+    for (int d = 0; d < DIMENSIONS; d++) {
+      final double[] vertex = simplex[0].clone();
+      vertex[d] += vertex[d] + INITIAL_STEP <= 1 ? INITIAL_STEP : -INITIAL_STEP;
+      initial.add(vertex);
+    }
+    if (!fitsBudget(initial.size())) {
+      return;
+    }
+    final LaunchResult[] initialValues = evaluate(pool, initial, onResult);
+    for (int d = 0; d < DIMENSIONS; d++) {
+      simplex[d + 1] = initial.get(d);
+      values[d + 1] = initialValues[d];
+    }
+
+    while (!reached(best)) {
+      sort(simplex, values);
+      if (collapsed(simplex)) {
+        return;
+      }
+
+      final double[] centroid = new double[DIMENSIONS];
+      for (int v = 0; v < DIMENSIONS; v++) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+          centroid[d] += simplex[v][d] / DIMENSIONS;
+        }
+      }
+      final double[] worst = simplex[DIMENSIONS];
+
+      final List<double[]> candidates = new ArrayList<>();
+      candidates.add(along(centroid, worst, 1)); // reflection
+      candidates.add(along(centroid, worst, 2)); // expansion
+      candidates.add(along(centroid, worst, 0.5)); // outside contraction
+      candidates.add(along(centroid, worst, -0.5)); // inside contraction
+      if (!fitsBudget(candidates.size())) {
+        return;
+      }
+      final LaunchResult[] candidateValues = evaluate(pool, candidates, onResult);
+
+      final LaunchResult reflection = candidateValues[0];
+      int accepted = -1;
+      if (better(reflection, values[0])) {
+        accepted = better(candidateValues[1], reflection) ? 1 : 0;
+      } else if (better(reflection, values[DIMENSIONS - 1])) {
+        accepted = 0;
+      } else if (better(reflection, values[DIMENSIONS])) {
+        accepted = !better(reflection, candidateValues[2]) ? 2 : -1;
+      } else if (better(candidateValues[3], values[DIMENSIONS])) {
+        accepted = 3;
+      }
+
+      if (accepted >= 0) {
+        simplex[DIMENSIONS] = candidates.get(accepted);
+        values[DIMENSIONS] = candidateValues[accepted];
+        continue;
+      }
+
+      // no candidate is good enough => shrink towards the best vertex
+      final List<double[]> shrunk = new ArrayList<>();
+      for (int v = 1; v <= DIMENSIONS; v++) {
+        shrunk.add(along(simplex[0], simplex[v], -0.5));
+      }
+      if (!fitsBudget(shrunk.size())) {
+        return;
+      }
+      final LaunchResult[] shrunkValues = evaluate(pool, shrunk, onResult);
+      for (int v = 1; v <= DIMENSIONS; v++) {
+        simplex[v] = shrunk.get(v - 1);
+        values[v] = shrunkValues[v - 1];
+      }
+    }
+  }
+
+  /**
+   * Runs the launches at the given normalized points in parallel
+   * @return their results, in the same order as the points
+   */
+  private LaunchResult[] evaluate(final ForkJoinPool pool, final List<double[]> points,
+                                  final Consumer<LaunchResult> onResult) {
+    final List<Callable<LaunchResult>> launches = new ArrayList<>();
+    for (final double[] point : points) {
+      final int index = evaluations++;
+      final double days = lower[0] + point[0] * width[0];
+      final double initialSpeed = lower[1] + point[1] * width[1];
+      final double angle = lower[2] + point[2] * width[2];
+      launches.add(() -> {
+        final SolarSystem solarSystem = base.fork();
+        LaunchSweep.evolveUntil(solarSystem, 0, days * SECONDS_PER_DAY);
+        // never pruned, since Nelder-Mead compares against the worst vertices and not only against the best one
+        return LaunchSweep.launch(solarSystem, spec.target(), spec.ft(), index, days, initialSpeed, angle,
+                () -> Double.MAX_VALUE);
+      });
+    }
+
+    final LaunchResult[] results = new LaunchResult[points.size()];
+    try {
+      final List<Future<LaunchResult>> futures = pool.invokeAll(launches);
+      for (int i = 0; i < results.length; i++) {
+        results[i] = futures.get(i).get();
+        onResult.accept(results[i]);
+        keepIfBest(results[i]);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Search interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A launch of the search failed", e.getCause());
+    }
+    return results;
+  }
+
+  private boolean fitsBudget(final int launches) {
+    return evaluations + launches <= spec.evaluations();
+  }
+
+  private void keepIfBest(final LaunchResult result) {
+    if (best == null || better(result, best)) {
+      best = result;
+    }
+  }
+
+  /**
+   * @return true if {@code a} got closer to the target than {@code b}; ties are broken by the evaluation order
+   */
+  private static boolean better(final LaunchResult a, final LaunchResult b) {
+    return a.getMinDistance() < b.getMinDistance()
+            || (a.getMinDistance() == b.getMinDistance() && a.getIndex() < b.getIndex());
+  }
+
+  private boolean reached(final LaunchResult result) {
+    return result.getLandedTo().equals((toMars ? ParticleType.MARS : ParticleType.EARTH).toString());
+  }
+
+  private double[] normalize(final LaunchResult result) {
+    final double[] values = {result.getDaysTakeOff(), result.getInitialSpeed(), result.getAngle()};
+    final double[] point = new double[DIMENSIONS];
+    for (int d = 0; d < DIMENSIONS; d++) {
+      point[d] = width[d] > 0 ? (values[d] - lower[d]) / width[d] : 0;
+    }
+    return point;
+  }
+
+  /**
+   * @return {@code from + factor * (from - to)}, clamped to the spec's ranges
+   */
+  private static double[] along(final double[] from, final double[] to, final double factor) {
+    final double[] point = new double[DIMENSIONS];
+    for (int d = 0; d < DIMENSIONS; d++) {
+      point[d] = Math.min(1, Math.max(0, from[d] + factor * (from[d] - to[d])));
+    }
+    return point;
+  }
+
+  // insertion sort of the vertices, from the best to the worst one
+  private static void sort(final double[][] simplex, final LaunchResult[] values) {
+    for (int i = 1; i < values.length; i++) {
+      for (int j = i; j > 0 && better(values[j], values[j - 1]); j--) {
+        final double[] vertex = simplex[j];
+        simplex[j] = simplex[j - 1];
+        simplex[j - 1] = vertex;
+        final LaunchResult value = values[j];
+        values[j] = values[j - 1];
+        values[j - 1] = value;
+      }
+    }
+  }
+
+  private static boolean collapsed(final double[][] simplex) {
+    for (int v = 1; v < simplex.length; v++) {
+      for (int d = 0; d < DIMENSIONS; d++) {
+        if (Math.abs(simplex[v][d] - simplex[0][d]) > TOLERANCE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
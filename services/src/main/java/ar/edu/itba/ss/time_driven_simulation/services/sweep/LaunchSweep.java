@@ -0,0 +1,436 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.models.Vector2D;
+import ar.edu.itba.ss.time_driven_simulation.services.ShipBatch;
+import ar.edu.itba.ss.time_driven_simulation.services.SolarSystem;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+
+/**
+ * Runs a grid of launches between Earth and Mars, each one as an independent task of a work-stealing pool.
+ * <P>
+ * The system before take off is the same for every speed and angle, so a base system is evolved only once,
+ * through the take off days in ascending order, and each launch is forked from it. Launches do not share any
+ * mutable state nor write any file, other than the optional cache and journal, and flights of very different
+ * lengths (e.g. early crashes) are balanced among the threads by the pool.
+ * <P>
+ * Results are handed over as soon as each launch finishes, and only a few launches per thread are queued at a time,
+ * so memory does not grow with the size of the sweep.
+ * <P>
+ * When pruning, a flight is aborted as soon as {@link SolarSystem#closestApproachBound} shows it can no longer get
+ * closer to the target than the best finished launch so far, or than the k-th best one when the best k launches
+ * have to be exact. Flights that may still reach the target are never aborted.
+ * <P>
+ * Launches of the same day can also be run in batches, all the ships of a batch flying at once in a single system
+ * as test particles of a {@link ShipBatch}; so the planets are integrated once per batch instead of once per launch.
+ */
+public class LaunchSweep {
+  static final int SECONDS_PER_DAY = 3600 * 24;
+  // launches queued per thread, enough to keep the pool busy while the base system is evolved
+  private static final int QUEUED_PER_THREAD = 4;
+
+  private final SolarSystem base;
+  private final double ft;
+  private final ParticleType target;
+  private final int parallelism;
+  private final boolean prune;
+  private final int batch;
+  private final int keep;
+
+  /**
+   * @param base the system at day 0, without ship. It is evolved by the sweep
+   * @param ft the maximum flight time of each launch, in seconds
+   * @param target the ship's destination, {@code MARS} or {@code EARTH}. It takes off from the other one
+   * @param parallelism the amount of threads to be used
+   */
+  public LaunchSweep(final SolarSystem base, final double ft, final ParticleType target, final int parallelism) {
+    this(base, ft, target, parallelism, false);
+  }
+
+  /**
+   * @param base the system at day 0, without ship. It is evolved by the sweep
+   * @param ft the maximum flight time of each launch, in seconds
+   * @param target the ship's destination, {@code MARS} or {@code EARTH}. It takes off from the other one
+   * @param parallelism the amount of threads to be used
+   * @param prune whether to abort flights that can no longer beat the best finished launch
+   */
+  public LaunchSweep(final SolarSystem base, final double ft, final ParticleType target, final int parallelism,
+                     final boolean prune) {
+    this(base, ft, target, parallelism, prune, 1);
+  }
+
+  /**
+   * @param base the system at day 0, without ship. It is evolved by the sweep
+   * @param ft the maximum flight time of each launch, in seconds
+   * @param target the ship's destination, {@code MARS} or {@code EARTH}. It takes off from the other one
+   * @param parallelism the amount of threads to be used
+   * @param prune whether to abort flights that can no longer beat the best finished launch
+   * @param batch the maximum amount of launches of the same day flown at once by a {@link ShipBatch};
+   *              1 to fly each launch on its own system
+   */
+  public LaunchSweep(final SolarSystem base, final double ft, final ParticleType target, final int parallelism,
+                     final boolean prune, final int batch) {
+    this(base, ft, target, parallelism, prune, batch, 1);
+  }
+
+  /**
+   * @param base the system at day 0, without ship. It is evolved by the sweep
+   * @param ft the maximum flight time of each launch, in seconds
+   * @param target the ship's destination, {@code MARS} or {@code EARTH}. It takes off from the other one
+   * @param parallelism the amount of threads to be used
+   * @param prune whether to abort flights that can no longer beat the {@code keep}-th best finished launch
+   * @param batch the maximum amount of launches of the same day flown at once by a {@link ShipBatch};
+   *              1 to fly each launch on its own system. Only systems evolved with position Verlet can be batched
+   * @param keep the amount of best launches whose results have to be exact when pruning
+   */
+  public LaunchSweep(final SolarSystem base, final double ft, final ParticleType target, final int parallelism,
+                     final boolean prune, final int batch, final int keep) {
+    if (target != ParticleType.MARS && target != ParticleType.EARTH) {
+      throw new IllegalArgumentException("Target should be MARS or EARTH");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism should be >= 1");
+    }
+    if (batch < 1) {
+      throw new IllegalArgumentException("Batch should be >= 1");
+    }
+    if (batch > 1 && !base.isPositionVerlet()) {
+      throw new IllegalArgumentException("Launches can only be batched on systems evolved with position Verlet");
+    }
+    if (keep < 1) {
+      throw new IllegalArgumentException("Keep should be >= 1");
+    }
+    this.base = base;
+    this.ft = ft;
+    this.target = target;
+    this.parallelism = parallelism;
+    this.prune = prune;
+    this.batch = batch;
+    this.keep = keep;
+  }
+
+  /**
+   * Runs every (days, speed, angle) combination of the given values, and returns once all of them finished.
+   * @param daysTakeOff the take off days, in ascending order
+   * @param initialSpeeds the take off speeds, in m/s
+   * @param angles the take off angles, measured as 0 when tangential to the planet's orbit and positive outwards
+   * @param onResult called as soon as each launch finishes, from the thread that ran it.
+   *                 Results arrive in any order; {@link LaunchResult#getIndex()} tells their position on the sweep
+   */
+  public void run(final double[] daysTakeOff, final double[] initialSpeeds, final double[] angles,
+                  final Consumer<LaunchResult> onResult) {
+    run(daysTakeOff, initialSpeeds, angles, null, onResult);
+  }
+
+  /**
+   * Same as {@link #run(double[], double[], double[], Consumer)}, but launches already stored on the given cache are
+   * not run again: their cached results are handed over instead, from the calling thread. New results are stored
+   * on the cache as soon as they finish.
+   * @param cache the results of previous sweeps run with the same integrator; null to run every launch
+   */
+  public void run(final double[] daysTakeOff, final double[] initialSpeeds, final double[] angles,
+                  final LaunchCache cache, final Consumer<LaunchResult> onResult) {
+    run(daysTakeOff, initialSpeeds, angles, cache, null, onResult);
+  }
+
+  /**
+   * Same as {@link #run(double[], double[], double[], LaunchCache, Consumer)}, but resuming the sweep from the
+   * given journal: the launches that had finished are handed over first, from the calling thread, and are not run
+   * again. Every launch is added to the journal as soon as it finishes.
+   * @param journal the checkpoint journal of this same sweep; null to run without one
+   */
+  public void run(final double[] daysTakeOff, final double[] initialSpeeds, final double[] angles,
+                  final LaunchCache cache, final SweepJournal journal, final Consumer<LaunchResult> onResult) {
+    for (int d = 1; d < daysTakeOff.length; d++) {
+      if (daysTakeOff[d] < daysTakeOff[d - 1]) {
+        throw new IllegalArgumentException("Take off days should be in ascending order");
+      }
+    }
+
+    final double dt = base.getDt();
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    final int maxQueued = QUEUED_PER_THREAD * parallelism;
+    final Semaphore queued = new Semaphore(maxQueued);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final PruneThreshold best = new PruneThreshold(keep);
+    final DoubleSupplier pruneAbove = prune ? best : () -> Double.MAX_VALUE;
+    try {
+      if (journal != null) {
+        journal.restore(daysTakeOff, initialSpeeds, angles, result -> {
+          lowerBest(best, result);
+          onResult.accept(result);
+        });
+      }
+
+      double currentTime = 0;
+      int index = 0;
+      sweep:
+      for (final double days : daysTakeOff) {
+        // (speed, angle) combinations of the day that neither finished nor were cached, in sweep order
+        final int launches = initialSpeeds.length * angles.length;
+        final int[] pending = new int[launches];
+        int pendingCount = 0;
+        for (int k = 0; k < launches; k++) {
+          if (journal != null && journal.isCompleted(index + k)) {
+            continue;
+          }
+          final LaunchResult cached = cache == null ? null : cache.get(index + k, dt, ft, target, days,
+                  initialSpeeds[k / angles.length], angles[k % angles.length]);
+          if (cached == null) {
+            pending[pendingCount++] = k;
+          } else {
+            lowerBest(best, cached);
+            if (journal != null) {
+              journal.append(cached);
+            }
+            onResult.accept(cached);
+          }
+        }
+        if (pendingCount == 0) {
+          index += launches;
+          continue;
+        }
+
+        // Run the base system until the ship is ready to take off
+        currentTime = evolveUntil(base, currentTime, days * SECONDS_PER_DAY);
+        // tasks fork from a frozen copy, since the base keeps on evolving meanwhile
+        final SolarSystem snapshot = base.fork();
+
+        // grouped in tasks of up to batch launches
+        for (int first = 0; first < pendingCount; first += batch) {
+          final int[] indices = new int[Math.min(batch, pendingCount - first)];
+          final double[] speeds = new double[indices.length];
+          final double[] batchAngles = new double[indices.length];
+          for (int k = 0; k < indices.length; k++) {
+            final int launch = pending[first + k];
+            indices[k] = index + launch;
+            speeds[k] = initialSpeeds[launch / angles.length];
+            batchAngles[k] = angles[launch % angles.length];
+          }
+          queued.acquire();
+          if (failure.get() != null) { // no point on going on
+            queued.release();
+            break sweep;
+          }
+          pool.execute(() -> {
+            try {
+              final LaunchResult[] results = indices.length == 1 ?
+                      new LaunchResult[]{launch(snapshot.fork(), target, ft, indices[0], days, speeds[0],
+                              batchAngles[0], pruneAbove)} :
+                      launchBatch(snapshot.fork(), target, ft, indices, days, speeds, batchAngles, pruneAbove);
+              for (final LaunchResult result : results) {
+                lowerBest(best, result);
+                if (cache != null) {
+                  cache.put(dt, ft, target, result);
+                }
+                if (journal != null) {
+                  journal.append(result);
+                }
+                onResult.accept(result);
+              }
+            } catch (Throwable t) {
+              failure.compareAndSet(null, t);
+            } finally {
+              queued.release();
+            }
+          });
+        }
+        index += launches;
+      }
+      // every launch has finished once all the permits are back
+      queued.acquire(maxQueued);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Sweep interrupted", e);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not use the sweep's journal", e);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    if (failure.get() != null) {
+      throw new IllegalStateException("A launch of the sweep failed", failure.get());
+    }
+  }
+
+  /**
+   * Runs again, without pruning, a launch of this sweep, e.g., to get the system state of a cached result
+   * @param dayZero the system at day 0, without ship. It is not modified
+   * @param result the launch to be run again
+   * @return the new result of the launch
+   */
+  public LaunchResult replay(final SolarSystem dayZero, final LaunchResult result) {
+    final SolarSystem solarSystem = dayZero.fork();
+    evolveUntil(solarSystem, 0, result.getDaysTakeOff() * SECONDS_PER_DAY);
+    final DoubleSupplier noPruning = () -> Double.MAX_VALUE;
+    // flown the same way as in the sweep, since batches of ships do not pull on the planets
+    return batch == 1 ?
+            launch(solarSystem, target, ft, result.getIndex(), result.getDaysTakeOff(), result.getInitialSpeed(),
+                    result.getAngle(), noPruning) :
+            launchBatch(solarSystem, target, ft, new int[]{result.getIndex()}, result.getDaysTakeOff(),
+                    new double[]{result.getInitialSpeed()}, new double[]{result.getAngle()}, noPruning)[0];
+  }
+
+  private static void lowerBest(final PruneThreshold best, final LaunchResult result) {
+    best.offer(result.getMinDistance());
+  }
+
+  /**
+   * Evolves the given system from {@code currentTime} while it is before {@code time}
+   * @return the time reached, i.e., the first multiple of dt since {@code currentTime} not before {@code time}
+   */
+  static double evolveUntil(final SolarSystem solarSystem, double currentTime, final double time) {
+    while (currentTime < time) {
+      solarSystem.evolveSystem();
+      currentTime += solarSystem.getDt();
+    }
+    return currentTime;
+  }
+
+  /**
+   * Launches the ship from the given system, which should be at the take off day, and flies it
+   * until it crashes, {@code ft} is reached, or it can no longer get closer to the target than {@code pruneAbove}
+   */
+  static LaunchResult launch(final SolarSystem solarSystem, final ParticleType target, final double ft,
+                             final int index, final double daysTakeOff, final double initialSpeed,
+                             final double angle, final DoubleSupplier pruneAbove) {
+    final boolean toMars = target == ParticleType.MARS;
+    final Vector2D origin = toMars ? solarSystem.getEarthPosition() : solarSystem.getMarsPosition();
+    final Vector2D takeOffAngle = takeOffAngle(angle, origin, solarSystem.getSunPosition());
+    if (toMars) {
+      solarSystem.takeOff(initialSpeed, takeOffAngle);
+    } else {
+      solarSystem.takeOffFromMars(initialSpeed, takeOffAngle);
+    }
+
+    // Once the ship takes off, run until limit time is reached or ship crashes
+    final double dt = solarSystem.getDt();
+    long steps = 0;
+    long prunedSteps = 0;
+    for (double systemTime = 0; systemTime < ft; systemTime += dt) {
+      final double threshold = pruneAbove.getAsDouble();
+      // no threshold yet, or no pruning at all => not worth bounding the approach
+      if (threshold < Double.MAX_VALUE && solarSystem.closestApproachBound(target, ft - systemTime, threshold)
+              > threshold) {
+        // hopeless => count the steps that would have been run
+        for (; systemTime < ft; systemTime += dt) {
+          prunedSteps++;
+        }
+        break;
+      }
+      solarSystem.evolveSystem();
+      steps++;
+      if (toMars ? solarSystem.shipCrashed() : solarSystem.shipCrashedEarth()) {
+        break;
+      }
+    }
+
+    final SolarSystem.SolarSystemState minState = solarSystem.getMinDistanceToMarsSSState();
+    return new LaunchResult(index, daysTakeOff, initialSpeed, angle, takeOffAngle, solarSystem.shipLandedTo(),
+            toMars ? minState.getDistanceToMars() : minState.getDistanceToEarth(), minState, steps, prunedSteps);
+  }
+
+  /**
+   * Launches one ship per given speed and angle from the given system, which should be at the take off day, and flies
+   * all of them at once, as a {@link ShipBatch}, until each one crashes, {@code ft} is reached, or it can no longer
+   * get closer to the target than {@code pruneAbove}
+   * @param indices the position of each launch on the sweep
+   * @return the result of each ship, in the same order as the speeds and angles
+   */
+  static LaunchResult[] launchBatch(final SolarSystem solarSystem, final ParticleType target, final double ft,
+                                    final int[] indices, final double daysTakeOff, final double[] initialSpeeds,
+                                    final double[] angles, final DoubleSupplier pruneAbove) {
+    final boolean toMars = target == ParticleType.MARS;
+    final Vector2D origin = toMars ? solarSystem.getEarthPosition() : solarSystem.getMarsPosition();
+    final Vector2D sun = solarSystem.getSunPosition();
+    final ShipBatch ships = new ShipBatch(solarSystem, target, initialSpeeds.length);
+    final Vector2D[] takeOffAngles = new Vector2D[initialSpeeds.length];
+    for (int k = 0; k < initialSpeeds.length; k++) {
+      takeOffAngles[k] = takeOffAngle(angles[k], origin, sun);
+      ships.takeOff(initialSpeeds[k], takeOffAngles[k]);
+    }
+
+    // Same steps as a single launch, while any ship is still flying
+    final double dt = solarSystem.getDt();
+    long flightSteps = 0;
+    for (double systemTime = 0; systemTime < ft; systemTime += dt) {
+      flightSteps++;
+      final double threshold = pruneAbove.getAsDouble();
+      if (ships.flying() > 0 && threshold < Double.MAX_VALUE) {
+        ships.prune(threshold, ft - systemTime);
+      }
+      if (ships.flying() > 0) {
+        ships.evolveSystem();
+      }
+    }
+
+    final LaunchResult[] results = new LaunchResult[initialSpeeds.length];
+    for (int k = 0; k < results.length; k++) {
+      results[k] = new LaunchResult(indices[k], daysTakeOff, initialSpeeds[k], angles[k], takeOffAngles[k],
+              ships.landedTo(k), ships.minDistance(k), ships.minDistanceState(k), ships.steps(k),
+              ships.pruned(k) ? flightSteps - ships.steps(k) : 0);
+    }
+    return results;
+  }
+
+  /**
+   * @param angle the initial angle for the ship take off, measured as 0 when tangential to the planet's orbit and
+   * positive outwards
+   * @param planet the position of the planet the ship takes off from
+   * @param sun the position of the Sun
+   * @return a vector representing the direction given by the angle
+   */
+  public static Vector2D takeOffAngle(final double angle, final Vector2D planet, final Vector2D sun) {
+    final double distance = sqrt(Math.pow(planet.x() - sun.x(), 2) + Math.pow(planet.y() - sun.y(), 2));
+    final Vector2D normalVersor = new Vector2D(planet.x() - sun.x(), planet.y() - sun.y());
+    normalVersor.div(distance); // Normalize Vector
+    final Vector2D tgVersor = new Vector2D(-normalVersor.y(), normalVersor.x());
+
+    tgVersor.times(cos(angle));
+    normalVersor.times(sin(angle));
+
+    return new Vector2D(tgVersor.x() + normalVersor.x(), tgVersor.y() + normalVersor.y());
+  }
+
+  /**
+   * The k-th closest approach among the finished launches, never below 0; so that flights which may still land,
+   * or beat any of the best k launches, are not pruned
+   */
+  private static class PruneThreshold implements DoubleSupplier {
+    private final double[] best; // the k closest approaches, in ascending order
+    private volatile double threshold = Double.MAX_VALUE;
+
+    private PruneThreshold(final int k) {
+      best = new double[k];
+      Arrays.fill(best, Double.MAX_VALUE);
+    }
+
+    private synchronized void offer(final double distance) {
+      int i = best.length - 1;
+      if (distance >= best[i]) {
+        return;
+      }
+      for (; i > 0 && best[i - 1] > distance; i--) {
+        best[i] = best[i - 1];
+      }
+      best[i] = distance;
+      threshold = Math.max(0, best[best.length - 1]);
+    }
+
+    @Override
+    public double getAsDouble() {
+      return threshold;
+    }
+  }
+}
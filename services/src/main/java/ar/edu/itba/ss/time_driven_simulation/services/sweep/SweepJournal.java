@@ -0,0 +1,234 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Checkpoint journal of a {@link LaunchSweep}, so that a sweep that died can be resumed without running again
+ * the launches that had finished.
+ * <P>
+ * The file starts with a header identifying the sweep, followed by one fixed-size binary record per finished
+ * launch, with its position on the sweep and its outcome. Records are written and synced to disk in batches of
+ * 256, and a background thread also syncs the pending ones every second, even if no launch
+ * finishes meanwhile. So at most the last batch, or the last second of results, is lost on a crash, and a record
+ * that was half written is dropped. When opened, the journal
+ * is read once to build a bitmap of the finished grid cells, which is all that is kept in memory.
+ * <P>
+ * A journal of another sweep is discarded, and the sweep starts over.
+ */
+public class SweepJournal implements Closeable {
+  private static final int MAGIC = 0x534A_524E; // "SJRN"
+  private static final int VERSION = 1;
+  // magic, version, fingerprint, cells
+  private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+  // index, landed to, min distance, time to min distance, steps, pruned steps
+  private static final int RECORD_BYTES = Integer.BYTES + 1 + 2 * Double.BYTES + 2 * Long.BYTES;
+  // records written between syncs, and maximum time between them
+  private static final int SYNC_RECORDS = 256;
+  private static final long SYNC_MILLIS = 1000;
+  private static final ParticleType[] TYPES = ParticleType.values();
+
+  private final Path file;
+  private final int cells;
+  private final BitSet completed;
+  private final long records; // whole records when the journal was opened
+  private final int restored;
+  private final FileChannel channel;
+  private final ByteBuffer pending = ByteBuffer.allocate(SYNC_RECORDS * RECORD_BYTES);
+  private long lastSync = System.currentTimeMillis();
+  private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "sweep-journal-sync");
+    thread.setDaemon(true); // a sweep that dies should not be kept alive by its journal
+    return thread;
+  });
+  private IOException syncFailure; // of the background syncs; thrown by the next append or close
+
+  /**
+   * Opens the journal at the given file, creating it if it does not exist or if it belongs to another sweep
+   * @param file the journal's file
+   * @param fingerprint a description of the sweep, with every value that changes its results
+   * @param cells the amount of launches of the sweep
+   * @throws IOException if the file could not be read or written
+   */
+  public SweepJournal(final Path file, final String fingerprint, final int cells) throws IOException {
+    this.file = file;
+    this.cells = cells;
+    this.completed = new BitSet(cells);
+
+    final long hash = LaunchCache.hash(fingerprint);
+    final long records = readCompleted(hash);
+    this.records = Math.max(0, records);
+    this.restored = completed.cardinality();
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    if (records < 0) { // new journal
+      channel.truncate(0);
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(VERSION).putLong(hash).putInt(cells);
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      channel.force(false);
+    } else {
+      // drop a half written record, if any, so that new ones are aligned
+      channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+    }
+    channel.position(channel.size());
+    syncer.scheduleWithFixedDelay(this::syncIfDue, SYNC_MILLIS, SYNC_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return true if the launch at the given position of the sweep already finished
+   */
+  public synchronized boolean isCompleted(final int index) {
+    return completed.get(index);
+  }
+
+  /**
+   * @return the amount of finished launches found when the journal was opened
+   */
+  public int restored() {
+    return restored;
+  }
+
+  /**
+   * Hands over the results of the launches that had finished when the journal was opened.
+   * They have no take off direction nor system state; see {@link LaunchSweep#replay}
+   */
+  void restore(final double[] daysTakeOff, final double[] initialSpeeds, final double[] angles,
+               final Consumer<LaunchResult> onResult) throws IOException {
+    if (restored == 0) {
+      return;
+    }
+    try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      input.skipBytes(HEADER_BYTES);
+      final BitSet handed = new BitSet(cells);
+      for (long r = 0; r < records; r++) {
+        final int index = input.readInt();
+        final ParticleType landedTo = TYPES[input.readByte()];
+        final double minDistance = input.readDouble();
+        final double timeToMinDistance = input.readDouble();
+        final long steps = input.readLong();
+        final long prunedSteps = input.readLong();
+
+        if (handed.get(index)) {
+          continue;
+        }
+        handed.set(index);
+        final int launches = initialSpeeds.length * angles.length;
+        final int launch = index % launches;
+        onResult.accept(new LaunchResult(index, daysTakeOff[index / launches],
+                initialSpeeds[launch / angles.length], angles[launch % angles.length], landedTo, minDistance,
+                timeToMinDistance, steps, prunedSteps));
+      }
+    }
+  }
+
+  /**
+   * Adds the given result to the journal. It is synced to disk along with the rest of its batch, or within a second
+   * @throws IOException if the result, or any of the pending ones, could not be written
+   */
+  synchronized void append(final LaunchResult result) throws IOException {
+    throwSyncFailure();
+    pending.putInt(result.getIndex());
+    pending.put((byte) ParticleType.valueOf(result.getLandedTo()).ordinal());
+    pending.putDouble(result.getMinDistance());
+    pending.putDouble(result.getTimeToMinDistance());
+    pending.putLong(result.getSteps());
+    pending.putLong(result.getPrunedSteps());
+    completed.set(result.getIndex());
+    if (!pending.hasRemaining() || System.currentTimeMillis() - lastSync >= SYNC_MILLIS) {
+      sync();
+    }
+  }
+
+  /**
+   * Writes and syncs to disk the pending records
+   */
+  public synchronized void sync() throws IOException {
+    pending.flip();
+    while (pending.hasRemaining()) {
+      channel.write(pending);
+    }
+    pending.clear();
+    channel.force(false);
+    lastSync = System.currentTimeMillis();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    syncer.shutdown();
+    try {
+      throwSyncFailure();
+      sync();
+    } finally {
+      channel.close();
+    }
+  }
+
+  // private methods
+
+  /**
+   * Syncs the pending records, if any, when the last sync was at least {@link #SYNC_MILLIS} ago
+   */
+  private synchronized void syncIfDue() {
+    if (syncFailure != null || !channel.isOpen() || pending.position() == 0
+            || System.currentTimeMillis() - lastSync < SYNC_MILLIS) {
+      return;
+    }
+    try {
+      sync();
+    } catch (IOException e) {
+      syncFailure = e;
+    }
+  }
+
+  private void throwSyncFailure() throws IOException {
+    if (syncFailure != null) {
+      throw syncFailure;
+    }
+  }
+
+  /**
+   * Marks as completed the launches of the journal's file, if it belongs to the same sweep
+   * @return the amount of whole records of the file; -1 if there is no journal of this sweep
+   */
+  private long readCompleted(final long hash) throws IOException {
+    if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+      return -1;
+    }
+    final long records = (Files.size(file) - HEADER_BYTES) / RECORD_BYTES;
+    try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != hash
+              || input.readInt() != cells) {
+        return -1;
+      }
+      for (long r = 0; r < records; r++) {
+        final int index = input.readInt();
+        final byte landedTo = input.readByte();
+        if (index < 0 || index >= cells || landedTo < 0 || landedTo >= TYPES.length) {
+          // not a record written by this class => the rest of the file cannot be trusted
+          completed.clear();
+          return -1;
+        }
+        completed.set(index);
+        input.skipBytes(RECORD_BYTES - Integer.BYTES - 1);
+      }
+    }
+    return records;
+  }
+}
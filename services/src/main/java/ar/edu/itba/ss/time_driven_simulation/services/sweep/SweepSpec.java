@@ -0,0 +1,335 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+import ar.edu.itba.ss.time_driven_simulation.services.SolarSystem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative definition of a {@link LaunchSweep}, also used as the bounds of a {@link LaunchSearch}.
+ * <P>
+ * A spec file has one {@code key: value} entry per line; empty lines and everything after a {@code #} are ignored.
+ * Missing entries keep their default value. Supported entries are:
+ * <ul>
+ *   <li>{@code dt: <seconds>} time step of the simulation. Default: 100</li>
+ *   <li>{@code ft: <seconds>} maximum flight time of each launch. Default: 1 year</li>
+ *   <li>{@code target: MARS|EARTH} destination of the ship; it takes off from the other planet. Default: MARS</li>
+ *   <li>{@code days: <min> <step> <max>} take off days since the initial conditions. Default: 0 100 366</li>
+ *   <li>{@code speed: <min> <step> <max>} take off speeds, in m/s. Default: 10000 1000 11000</li>
+ *   <li>{@code angle: <min> <step> <max>} take off angles; 0 is tangential to the planet's orbit.
+ *   Default: 50 30 100</li>
+ *   <li>{@code mode: full|restricted} whether each launch integrates the whole system or only the ship.
+ *   Default: full</li>
+ *   <li>{@code integrator: <name>} the fixed step integrator of the launches, one of
+ *   {@link SolarSystem#INTEGRATORS}. Batches need {@code verlet}. Default: verlet</li>
+ *   <li>{@code threads: <n>} amount of threads to be used. Default: all the available processors</li>
+ *   <li>{@code prune: true|false} whether to abort flights that can no longer beat the best finished launch.
+ *   Default: true</li>
+ *   <li>{@code batch: <n>} maximum amount of launches of the same day flown at once, as test particles of a
+ *   single system. Default: 1, i.e., each launch on its own system</li>
+ *   <li>{@code reports: <k>} amount of best launches saved as reports. Default: 10</li>
+ *   <li>{@code rank: distance|time} how the best launches are ranked: by closest approach, or those that reached
+ *   the target first, by arrival time. Default: distance</li>
+ *   <li>{@code cache: <path>} file of a {@link LaunchCache} whose launches are not run again. Default: none</li>
+ *   <li>{@code evaluations: <n>} maximum amount of launches of a {@link LaunchSearch}. Default: 300</li>
+ * </ul>
+ * Ranges go from {@code min} (inclusive) to {@code max} (exclusive), every {@code step}.
+ */
+public class SweepSpec {
+  private double dt = 100;
+  private double ft = 3600 * 24 * 365;
+  private ParticleType target = ParticleType.MARS;
+  private double[] days = {0, 100, 366};
+  private double[] speed = {10000, 1000, 11000};
+  private double[] angle = {50, 30, 100};
+  private boolean restricted = false;
+  private String integrator = "verlet";
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int evaluations = 300;
+  private boolean prune = true;
+  private int batch = 1;
+  private String cache = null;
+  private int reports = 10;
+  private TopLaunches.Ranking rank = TopLaunches.Ranking.DISTANCE;
+
+  private SweepSpec() {
+  }
+
+  /**
+   * @return a spec with all the default values
+   */
+  public static SweepSpec defaults() {
+    return new SweepSpec();
+  }
+
+  /**
+   * @param lines the lines of a spec file
+   * @return the parsed spec
+   * @throws IllegalArgumentException if any line is malformed
+   */
+  public static SweepSpec parse(final List<String> lines) {
+    final SweepSpec spec = new SweepSpec();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      final int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+
+      final int colon = line.indexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": expected '<key>: <value>'");
+      }
+      final String key = line.substring(0, colon).trim();
+      final String value = line.substring(colon + 1).trim();
+      try {
+        spec.set(key, value);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    if (spec.batch > 1 && !spec.integrator.equals("verlet")) {
+      throw new IllegalArgumentException("batch > 1 needs the verlet integrator");
+    }
+    return spec;
+  }
+
+  public double dt() {
+    return dt;
+  }
+
+  public double ft() {
+    return ft;
+  }
+
+  public ParticleType target() {
+    return target;
+  }
+
+  public boolean restricted() {
+    return restricted;
+  }
+
+  public String integrator() {
+    return integrator;
+  }
+
+  public int threads() {
+    return threads;
+  }
+
+  public boolean prune() {
+    return prune;
+  }
+
+  public int batch() {
+    return batch;
+  }
+
+  /**
+   * @return the path of the launch cache; null if none
+   */
+  public String cache() {
+    return cache;
+  }
+
+  public int reports() {
+    return reports;
+  }
+
+  public TopLaunches.Ranking rank() {
+    return rank;
+  }
+
+  public int evaluations() {
+    return evaluations;
+  }
+
+  /**
+   * @return the minimum take off day, speed and angle, in that order
+   */
+  public double[] lowerBounds() {
+    return new double[]{days[0], speed[0], angle[0]};
+  }
+
+  /**
+   * @return the maximum take off day, speed and angle, in that order
+   */
+  public double[] upperBounds() {
+    return new double[]{days[2], speed[2], angle[2]};
+  }
+
+  public double[] days() {
+    return values(days);
+  }
+
+  public double[] speeds() {
+    return values(speed);
+  }
+
+  public double[] angles() {
+    return values(angle);
+  }
+
+  /**
+   * @return the amount of launches of the sweep
+   */
+  public long size() {
+    return (long) days().length * speeds().length * angles().length;
+  }
+
+  // private methods
+
+  private void set(final String key, final String value) {
+    switch (key) {
+      case "dt":
+        dt = positive(key, number(value));
+        break;
+      case "ft":
+        ft = positive(key, number(value));
+        break;
+      case "target":
+        target = parseTarget(value);
+        break;
+      case "days":
+        days = range(value);
+        break;
+      case "speed":
+        speed = range(value);
+        break;
+      case "angle":
+        angle = range(value);
+        break;
+      case "mode":
+        restricted = parseMode(value);
+        break;
+      case "integrator":
+        if (!SolarSystem.INTEGRATORS.contains(value)) {
+          throw new IllegalArgumentException("integrator must be one of " + SolarSystem.INTEGRATORS);
+        }
+        integrator = value;
+        break;
+      case "threads":
+        threads = (int) positive(key, number(value));
+        break;
+      case "prune":
+        prune = parseBoolean(value);
+        break;
+      case "batch":
+        batch = (int) positive(key, number(value));
+        break;
+      case "cache":
+        if (value.isEmpty()) {
+          throw new IllegalArgumentException("Expected a path");
+        }
+        cache = value;
+        break;
+      case "reports":
+        reports = (int) positive(key, number(value));
+        break;
+      case "rank":
+        rank = parseRank(value);
+        break;
+      case "evaluations":
+        evaluations = (int) positive(key, number(value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown key '" + key + "'");
+    }
+  }
+
+  private static ParticleType parseTarget(final String value) {
+    switch (value) {
+      case "MARS":
+        return ParticleType.MARS;
+      case "EARTH":
+        return ParticleType.EARTH;
+      default:
+        throw new IllegalArgumentException("target must be MARS or EARTH");
+    }
+  }
+
+  private static boolean parseMode(final String value) {
+    switch (value) {
+      case "full":
+        return false;
+      case "restricted":
+        return true;
+      default:
+        throw new IllegalArgumentException("mode must be 'full' or 'restricted'");
+    }
+  }
+
+  private static TopLaunches.Ranking parseRank(final String value) {
+    switch (value) {
+      case "distance":
+        return TopLaunches.Ranking.DISTANCE;
+      case "time":
+        return TopLaunches.Ranking.TIME;
+      default:
+        throw new IllegalArgumentException("rank must be 'distance' or 'time'");
+    }
+  }
+
+  private static boolean parseBoolean(final String value) {
+    switch (value) {
+      case "true":
+        return true;
+      case "false":
+        return false;
+      default:
+        throw new IllegalArgumentException("prune must be 'true' or 'false'");
+    }
+  }
+
+  private static double[] range(final String value) {
+    final String[] parts = value.split("\\s+");
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Expected '<min> <step> <max>'");
+    }
+    final double[] range = {number(parts[0]), number(parts[1]), number(parts[2])};
+    positive("step", range[1]);
+    return range;
+  }
+
+  private static double number(final String value) {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("'" + value + "' is not a number", e);
+    }
+  }
+
+  private static double positive(final String key, final double value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(key + " should be > 0");
+    }
+    return value;
+  }
+
+  /**
+   * @return {@code min + i * step} for each i whose value is below {@code max}. Values are computed on the decimals
+   * of the range instead of adding up doubles, so a point is the very same double whatever range it comes from,
+   * e.g., 0.3 both for {@code 0 0.1 1} and for {@code 0.3 0.1 1}
+   */
+  private static double[] values(final double[] range) {
+    final BigDecimal min = BigDecimal.valueOf(range[0]);
+    final BigDecimal step = BigDecimal.valueOf(range[1]);
+    final BigDecimal max = BigDecimal.valueOf(range[2]);
+    final List<Double> values = new ArrayList<>();
+    for (int i = 0; ; i++) {
+      final BigDecimal value = min.add(step.multiply(BigDecimal.valueOf(i)));
+      if (value.compareTo(max) >= 0) {
+        break;
+      }
+      values.add(value.doubleValue());
+    }
+    return values.stream().mapToDouble(Double::doubleValue).toArray();
+  }
+}
@@ -0,0 +1,216 @@
+package ar.edu.itba.ss.time_driven_simulation.services.sweep;
+
+import ar.edu.itba.ss.time_driven_simulation.models.ParticleType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded ranking of the best launches of a sweep, so that memory does not grow with the amount of launches
+ * that reached the target.
+ * <P>
+ * Only a primitive summary of each launch is kept, on a binary heap of at most {@code k} entries whose root is
+ * the worst of them; so offering a launch takes O(log k) and allocates nothing. The system state of the winners
+ * is not kept either: see {@link LaunchSweep#replay} to materialize it.
+ */
+public class TopLaunches {
+  private static final ParticleType[] TYPES = ParticleType.values();
+
+  public enum Ranking {
+    /**
+     * Closest approach to the target first
+     */
+    DISTANCE,
+    /**
+     * Launches that reached the target first, the earliest arrival first; then the rest, by closest approach
+     */
+    TIME
+  }
+
+  private final int k;
+  private final Ranking ranking;
+  private final ParticleType target;
+  private int n;
+
+  // heap's keys, the worst launch at the root
+  private final double[] primary;
+  private final double[] secondary;
+  private final int[] index;
+  // launch's summary
+  private final double[] daysTakeOff;
+  private final double[] initialSpeed;
+  private final double[] angle;
+  private final byte[] landedTo;
+  private final double[] minDistance;
+  private final double[] timeToMinDistance;
+  private final long[] steps;
+  private final long[] prunedSteps;
+
+  /**
+   * @param k the maximum amount of launches to keep
+   * @param ranking how launches are compared
+   * @param target the sweep's target
+   */
+  public TopLaunches(final int k, final Ranking ranking, final ParticleType target) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k should be >= 1");
+    }
+    this.k = k;
+    this.ranking = ranking;
+    this.target = target;
+    primary = new double[k];
+    secondary = new double[k];
+    index = new int[k];
+    daysTakeOff = new double[k];
+    initialSpeed = new double[k];
+    angle = new double[k];
+    landedTo = new byte[k];
+    minDistance = new double[k];
+    timeToMinDistance = new double[k];
+    steps = new long[k];
+    prunedSteps = new long[k];
+  }
+
+  /**
+   * Keeps the given launch if it is among the best {@code k} ones offered so far
+   */
+  public synchronized void offer(final LaunchResult result) {
+    final boolean reached = result.getLandedTo().equals(target.toString());
+    final double p;
+    final double s;
+    if (ranking == Ranking.DISTANCE) {
+      p = result.getMinDistance();
+      s = 0;
+    } else {
+      p = reached ? 0 : 1;
+      s = reached ? result.getTimeToMinDistance() : result.getMinDistance();
+    }
+
+    final boolean full = n == k;
+    if (full && worse(p, s, result.getIndex(), primary[0], secondary[0], index[0])) {
+      return;
+    }
+    final int slot = full ? 0 : n++; // when full, it replaces the worst one
+    primary[slot] = p;
+    secondary[slot] = s;
+    index[slot] = result.getIndex();
+    daysTakeOff[slot] = result.getDaysTakeOff();
+    initialSpeed[slot] = result.getInitialSpeed();
+    angle[slot] = result.getAngle();
+    landedTo[slot] = (byte) ParticleType.valueOf(result.getLandedTo()).ordinal();
+    minDistance[slot] = result.getMinDistance();
+    timeToMinDistance[slot] = result.getTimeToMinDistance();
+    steps[slot] = result.getSteps();
+    prunedSteps[slot] = result.getPrunedSteps();
+
+    if (full) {
+      siftDown(slot);
+    } else {
+      siftUp(slot);
+    }
+  }
+
+  /**
+   * @return the amount of launches kept
+   */
+  public synchronized int size() {
+    return n;
+  }
+
+  /**
+   * @return the launches kept, from the best to the worst one, without take off direction nor system state
+   */
+  public synchronized List<LaunchResult> best() {
+    final Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> worse(a, b) ? 1 : worse(b, a) ? -1 : 0);
+
+    final List<LaunchResult> best = new ArrayList<>(n);
+    for (final int i : order) {
+      best.add(new LaunchResult(index[i], daysTakeOff[i], initialSpeed[i], angle[i], TYPES[landedTo[i]],
+              minDistance[i], timeToMinDistance[i], steps[i], prunedSteps[i]));
+    }
+    return best;
+  }
+
+  // private methods
+
+  /**
+   * @return true if launch a ranks after launch b; ties are broken by the sweep order
+   */
+  private static boolean worse(final double primaryA, final double secondaryA, final int indexA,
+                               final double primaryB, final double secondaryB, final int indexB) {
+    if (primaryA != primaryB) {
+      return primaryA > primaryB;
+    }
+    if (secondaryA != secondaryB) {
+      return secondaryA > secondaryB;
+    }
+    return indexA > indexB;
+  }
+
+  private boolean worse(final int a, final int b) {
+    return worse(primary[a], secondary[a], index[a], primary[b], secondary[b], index[b]);
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      final int parent = (slot - 1) / 2;
+      if (!worse(slot, parent)) {
+        return;
+      }
+      swap(slot, parent);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      final int left = 2 * slot + 1;
+      final int right = left + 1;
+      int worst = slot;
+      if (left < n && worse(left, worst)) {
+        worst = left;
+      }
+      if (right < n && worse(right, worst)) {
+        worst = right;
+      }
+      if (worst == slot) {
+        return;
+      }
+      swap(slot, worst);
+      slot = worst;
+    }
+  }
+
+  private void swap(final int a, final int b) {
+    swapValues(primary, a, b);
+    swapValues(secondary, a, b);
+    swapValues(daysTakeOff, a, b);
+    swapValues(initialSpeed, a, b);
+    swapValues(angle, a, b);
+    swapValues(minDistance, a, b);
+    swapValues(timeToMinDistance, a, b);
+    final int i = index[a];
+    index[a] = index[b];
+    index[b] = i;
+    final byte l = landedTo[a];
+    landedTo[a] = landedTo[b];
+    landedTo[b] = l;
+    final long st = steps[a];
+    steps[a] = steps[b];
+    steps[b] = st;
+    final long p = prunedSteps[a];
+    prunedSteps[a] = prunedSteps[b];
+    prunedSteps[b] = p;
+  }
+
+  private static void swapValues(final double[] values, final int a, final int b) {
+    final double value = values[a];
+    values[a] = values[b];
+    values[b] = value;
+  }
+}